@@ -0,0 +1,53 @@
+package com.aare.analyzer.config;
+
+import com.aare.analyzer.service.ApiEventConsumer;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Registers one listener container per analysis shard, all dispatching to
+ * {@link ApiEventConsumer#receiveApiEvent(Map)}. The containers do not start with the context:
+ * ShardOwnership starts a shard's container once this instance holds the shard's lease and
+ * stops it again when the shard moves to another instance.
+ */
+@Configuration
+public class AnalysisListenerConfigurer implements RabbitListenerConfigurer {
+
+    private final ApiEventConsumer apiEventConsumer;
+    private final AnalysisShards analysisShards;
+
+    public AnalysisListenerConfigurer(ApiEventConsumer apiEventConsumer, AnalysisShards analysisShards) {
+        this.apiEventConsumer = apiEventConsumer;
+        this.analysisShards = analysisShards;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        Method receiveApiEvent;
+        try {
+            receiveApiEvent = ApiEventConsumer.class.getMethod("receiveApiEvent", Map.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("ApiEventConsumer.receiveApiEvent(Map) not found", e);
+        }
+
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.afterPropertiesSet();
+
+        for (int shard = 0; shard < analysisShards.getShardCount(); shard++) {
+            MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+            endpoint.setId(AnalysisShards.listenerId(shard));
+            endpoint.setQueueNames(AnalysisShards.queueName(shard));
+            endpoint.setBean(apiEventConsumer);
+            endpoint.setMethod(receiveApiEvent);
+            endpoint.setAutoStartup(false);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            registrar.registerEndpoint(endpoint);
+        }
+    }
+}
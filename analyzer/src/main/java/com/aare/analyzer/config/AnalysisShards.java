@@ -0,0 +1,49 @@
+package com.aare.analyzer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shard layout of the analyzer's event queues.
+ *
+ * The gateway routes each event to shard hash(endpoint) % shard-count on api.events.exchange;
+ * the analyzer binds its own queue per shard to the same routing keys, so shard-count must match
+ * the gateway's aare.ingest.shard-count. A shard is the unit of ownership between analyzer
+ * instances (see ShardOwnership): every endpoint of a shard lives on the instance owning it.
+ */
+@Component
+public class AnalysisShards {
+
+    private final int shardCount;
+
+    public AnalysisShards(@Value("${aare.analyzer.shards.count:4}") int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("aare.analyzer.shards.count must be >= 1");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() { return shardCount; }
+
+    /**
+     * Same mapping as the gateway's TrafficCaptureFilter#shardFor, applied to the endpoint id
+     * (lower-cased "method:path"). AnalysisShardsTest and TrafficCaptureFilterTest pin both to
+     * the same expected shards.
+     */
+    public int shardFor(String endpointId) {
+        int h = endpointId.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    public static String queueName(int shard) {
+        return RabbitConfig.API_ANALYSIS_QUEUE_PREFIX + shard;
+    }
+
+    public static String routingKey(int shard) {
+        return RabbitConfig.API_EVENTS_SHARD_ROUTING_KEY_PREFIX + shard;
+    }
+
+    public static String listenerId(int shard) {
+        return RabbitConfig.ANALYSIS_LISTENER_ID_PREFIX + shard;
+    }
+}
@@ -1,6 +1,8 @@
 package com.aare.analyzer.config;
 
+import com.aare.analyzer.model.IncidentSeverity;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
@@ -8,39 +10,85 @@ import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class RabbitConfig {
 
-    // For consuming events from Collector
-    public static final String API_ANALYSIS_EXCHANGE = "api.analysis.exchange";
-    public static final String API_ANALYSIS_QUEUE = "api.analysis.queue";
-    public static final String API_ANALYSIS_ROUTING_KEY = "api.analysis.routingkey";
+    // Events published by the gateway, sharded by endpoint: routing key "api.events.shard.i"
+    public static final String API_EVENTS_EXCHANGE = "api.events.exchange";
+    public static final String API_EVENTS_SHARD_ROUTING_KEY_PREFIX = "api.events.shard.";
+
+    // Analyzer's copy of each shard: queue "api.analysis.queue.i" (see AnalysisShards)
+    public static final String API_ANALYSIS_QUEUE_PREFIX = "api.analysis.queue.";
+    public static final String ANALYSIS_LISTENER_ID_PREFIX = "apiEventAnalysis-";
+
+    // Incident status changes published by incident-api (ack / resolve)
+    public static final String INCIDENT_STATUS_EXCHANGE = "incident.status.exchange";
+    public static final String INCIDENT_STATUS_ROUTING_KEY = "incident.status.#";
 
     // For publishing RCA requests
     public static final String RCA_REQUESTED_EXCHANGE = "rca.requested.exchange";
-    public static final String RCA_REQUESTED_QUEUE = "rca.requested.queue";
+    // Not the baseline's plain rca.requested.queue: a queue's arguments can't change once declared,
+    // so redeclaring that name with x-max-priority fails on existing brokers
+    public static final String RCA_REQUESTED_QUEUE = "rca.requested.priority.queue";
     public static final String RCA_REQUESTED_ROUTING_KEY = "rca.requested.routingkey";
+    public static final String RCA_CONTAINER_FACTORY = "rcaListenerContainerFactory";
+    // Priority queue: one level per IncidentSeverity, CRITICAL highest
+    public static final int RCA_MAX_PRIORITY = IncidentSeverity.values().length;
+
+    // Consume from api.events (one queue per shard)
+    @Bean
+    public TopicExchange apiEventsExchange() {
+        return new TopicExchange(API_EVENTS_EXCHANGE, true, false);
+    }
 
-    // Consume from api.analysis
+    /**
+     * One durable queue per shard, bound next to the collector's ingest queue so every event
+     * reaches both. Single-active-consumer keeps a shard on one analyzer even while ownership
+     * is moving between instances.
+     */
     @Bean
-    public TopicExchange apiAnalysisExchange() {
-        return new TopicExchange(API_ANALYSIS_EXCHANGE);
+    public Declarables apiAnalysisShardQueues(
+            @Qualifier("apiEventsExchange") TopicExchange apiEventsExchange,
+            AnalysisShards analysisShards
+    ) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int shard = 0; shard < analysisShards.getShardCount(); shard++) {
+            Queue queue = QueueBuilder.durable(AnalysisShards.queueName(shard))
+                    .singleActiveConsumer()
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(apiEventsExchange)
+                    .with(AnalysisShards.routingKey(shard)));
+        }
+        return new Declarables(declarables);
     }
 
+    // Consume incident.status: every analyzer instance needs every change, so each gets its own
+    // auto-deleted queue; anything missed while it was down is covered by the startup load
     @Bean
-    public Queue apiAnalysisQueue() {
-        return new Queue(API_ANALYSIS_QUEUE, true);
+    public TopicExchange incidentStatusExchange() {
+        return new TopicExchange(INCIDENT_STATUS_EXCHANGE, true, false);
     }
 
     @Bean
-    public Binding apiAnalysisBinding(
-            @Qualifier("apiAnalysisQueue") Queue apiAnalysisQueue,
-            @Qualifier("apiAnalysisExchange") TopicExchange apiAnalysisExchange
+    public Queue incidentStatusQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding incidentStatusBinding(
+            @Qualifier("incidentStatusQueue") Queue incidentStatusQueue,
+            @Qualifier("incidentStatusExchange") TopicExchange incidentStatusExchange
     ) {
-        return BindingBuilder.bind(apiAnalysisQueue)
-                .to(apiAnalysisExchange)
-                .with(API_ANALYSIS_ROUTING_KEY);
+        return BindingBuilder.bind(incidentStatusQueue)
+                .to(incidentStatusExchange)
+                .with(INCIDENT_STATUS_ROUTING_KEY);
     }
 
     // Publish to rca.requested
@@ -51,7 +99,9 @@ public class RabbitConfig {
 
     @Bean
     public Queue rcaRequestedQueue() {
-        return new Queue(RCA_REQUESTED_QUEUE, true);
+        return QueueBuilder.durable(RCA_REQUESTED_QUEUE)
+                .maxPriority(RCA_MAX_PRIORITY)
+                .build();
     }
 
     @Bean
@@ -64,6 +114,31 @@ public class RabbitConfig {
                 .with(RCA_REQUESTED_ROUTING_KEY);
     }
 
+    public static int rcaPriorityOf(IncidentSeverity severity) {
+        return severity == null ? 1 : severity.ordinal() + 1;
+    }
+
+    /**
+     * RCA worker pool: a fixed number of consumers, each holding one job at a time so the
+     * broker can keep handing out the highest-priority job next. Failed jobs are dropped rather
+     * than redelivered in a loop (OpenAIService already records its own failures as a FAILED report).
+     */
+    @Bean(name = RCA_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory rcaListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter jsonMessageConverter,
+            @Value("${aare.rca.worker.concurrency:2}") int concurrency
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        factory.setPrefetchCount(1);
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -8,7 +8,8 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "endpoint_baseline")
+@Table(name = "endpoint_baseline",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"endpoint_id", "metric_window"}))
 public class EndpointBaseline {
 
     @Id
@@ -39,4 +40,8 @@ public class EndpointBaseline {
 
     @Column(name = "last_computed")
     private LocalDateTime lastComputed;
+
+    // Encoded SeasonalBaseline (EWMA level + hour-of-week offsets), TWENTY_FOUR_HOURS rows only
+    @Column(name = "seasonal_state")
+    private byte[] seasonalState;
 }
\ No newline at end of file
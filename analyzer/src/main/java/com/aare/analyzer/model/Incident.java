@@ -32,6 +32,14 @@ public class Incident {
     @Column(name = "detected_at")
     private LocalDateTime detectedAt;
 
+    // Last time the condition was still detected while the incident stayed open
+    @Column(name = "last_detected_at")
+    private LocalDateTime lastDetectedAt;
+
+    // Set on incidents folded into a correlated incident on another endpoint
+    @Column(name = "parent_incident_id")
+    private UUID parentIncidentId;
+
     @Column(name = "acknowledged_at")
     private LocalDateTime acknowledgedAt;
 
@@ -2,6 +2,7 @@ package com.aare.analyzer.model;
 
 public enum IncidentStatus {
     OPEN,
+    ACKNOWLEDGED,
     INVESTIGATING,
     MITIGATED,
     RESOLVED,
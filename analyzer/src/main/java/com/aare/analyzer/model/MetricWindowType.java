@@ -1,7 +1,28 @@
 package com.aare.analyzer.model;
 
+/**
+ * Rolling views kept per endpoint. Each view is a ring of buckets of the given width, all fed
+ * from the same 10s recording intervals, so adding a view costs no per-event work.
+ * Bucket widths must be multiples of 10s.
+ */
 public enum MetricWindowType {
-    FIVE_MINUTES,
-    THIRTY_MINUTES,
-    TWENTY_FOUR_HOURS
+    FIVE_MINUTES(5 * 60 * 1000L, 10 * 1000L),
+    THIRTY_MINUTES(30 * 60 * 1000L, 60 * 1000L),
+    TWENTY_FOUR_HOURS(24 * 60 * 60 * 1000L, 5 * 60 * 1000L);
+
+    private final long durationMillis;
+    private final long bucketMillis;
+
+    MetricWindowType(long durationMillis, long bucketMillis) {
+        this.durationMillis = durationMillis;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
 }
@@ -47,6 +47,14 @@ public class RcaReport {
 
     private BigDecimal confidence;
 
+    // Incident signature the report was generated for (see RcaSignature)
+    @Column(name = "signature", length = 64)
+    private String signature;
+
+    // Set when the report is a copy of an earlier one with the same signature instead of a new analysis
+    @Column(name = "reused_from_report_id")
+    private UUID reusedFromReportId;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
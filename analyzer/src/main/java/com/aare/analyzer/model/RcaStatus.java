@@ -1,6 +1,8 @@
 package com.aare.analyzer.model;
 
 public enum RcaStatus {
+    RULE_BASED,
+    GENERATING,
     GENERATED,
     SKIPPED_NO_KEY,
     FAILED
@@ -3,9 +3,12 @@ package com.aare.analyzer.repository;
 import com.aare.analyzer.model.IncidentEvidence;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface IncidentEvidenceRepository extends JpaRepository<IncidentEvidence, UUID> {
     List<IncidentEvidence> findByIncidentId(UUID incidentId);
+
+    List<IncidentEvidence> findByIncidentIdIn(Collection<UUID> incidentIds);
 }
@@ -2,20 +2,22 @@ package com.aare.analyzer.repository;
 
 import com.aare.analyzer.model.Incident;
 import com.aare.analyzer.model.IncidentStatus;
-import com.aare.analyzer.model.IncidentType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface IncidentRepository extends JpaRepository<Incident, UUID> {
 
-    List<Incident> findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            String endpointId,
-            IncidentType type,
-            IncidentStatus status,
-            LocalDateTime start,
-            LocalDateTime end
-    );
+    List<Incident> findByStatusIn(Collection<IncidentStatus> statuses);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Incident i SET i.parentIncidentId = :parentId WHERE i.id IN :ids")
+    int linkToParent(@Param("parentId") UUID parentId, @Param("ids") Collection<UUID> ids);
 }
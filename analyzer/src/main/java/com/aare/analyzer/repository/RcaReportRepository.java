@@ -1,7 +1,22 @@
 package com.aare.analyzer.repository;
 
 import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface RcaReportRepository extends JpaRepository<RcaReport, Long> {
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RcaReportRepository extends JpaRepository<RcaReport, UUID> {
+
+    Optional<RcaReport> findFirstByIncidentId(UUID incidentId);
+
+    List<RcaReport> findBySignatureIsNotNullAndReusedFromReportIdIsNullAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+            RcaStatus status,
+            LocalDateTime after,
+            Pageable pageable
+    );
 }
@@ -1,12 +1,16 @@
 package com.aare.analyzer.repository;
 
 import com.aare.analyzer.model.SchemaVersion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
-public interface SchemaVersionRepository extends JpaRepository<SchemaVersion, Long> {
+public interface SchemaVersionRepository extends JpaRepository<SchemaVersion, UUID> {
     Optional<SchemaVersion> findTopByEndpointIdOrderByVersionDesc(String endpointId);
     List<SchemaVersion> findByEndpointIdOrderByVersionDesc(String endpointId);
+
+    List<SchemaVersion> findByEndpointIdOrderByVersionDesc(String endpointId, Pageable pageable);
 }
@@ -5,24 +5,35 @@ import com.aare.analyzer.model.*;
 import com.aare.analyzer.repository.*;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 @Service
 @Slf4j
@@ -33,26 +44,74 @@ public class ApiEventConsumer {
     @Autowired
     private IncidentEvidenceRepository incidentEvidenceRepository;
     @Autowired
-    private EndpointBaselineRepository endpointBaselineRepository;
+    private BaselineStore baselineStore;
     @Autowired
-    private SchemaVersionRepository schemaVersionRepository;
+    private OpenIncidentIndex openIncidentIndex;
+    @Autowired
+    private SchemaRegistry schemaRegistry;
     @Autowired
     private RcaReportRepository rcaReportRepository;
     @Autowired
-    private OpenAIService openAIService;
+    private RuleBasedRcaEngine ruleBasedRcaEngine;
+    @Autowired
+    private SignalCorrelator signalCorrelator;
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
     private Tracer tracer;
-
-    // In-memory store for rolling metrics (endpointId -> MetricWindow)
-    private final ConcurrentMap<String, ConcurrentMap<MetricWindowType, MetricWindow>> endpointMetrics = new ConcurrentHashMap<>();
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // In-memory store for rolling metrics (endpointId -> 5m/30m/24h views fed by one recorder)
+    private final ConcurrentMap<String, EndpointMetrics> endpointMetrics = new ConcurrentHashMap<>();
+    // Views the tick reads; the 24h reference comes from the baseline, not the 24h window
+    private static final Set<MetricWindowType> TICK_VIEWS =
+            EnumSet.of(MetricWindowType.FIVE_MINUTES, MetricWindowType.THIRTY_MINUTES);
+
+    // Detection tick: endpoints are evaluated in parallel shards on a dedicated pool
+    @Value("${aare.analyzer.tick.parallelism:0}")
+    private int tickParallelism;
+    @Value("${aare.analyzer.tick.shards:0}")
+    private int tickShards;
+    private final AtomicBoolean tickRunning = new AtomicBoolean();
+    private volatile long tickNumber;
+    private volatile ForkJoinPool tickPool;
+
+    // Event-driven error-spike / latency-regression checks (the tick then only runs the rest)
+    @Value("${aare.incident.detection.streaming.enabled:true}")
+    private boolean streamingDetection;
+    @Value("${aare.incident.detection.streaming.window-ms:30000}")
+    private long streamingWindowMs;
+    @Value("${aare.incident.detection.streaming.dwell-ms:5000}")
+    private long streamingDwellMs;
+    private final ConcurrentMap<String, StreamingDetector> streamingDetectors = new ConcurrentHashMap<>();
+
+    // requestIds already counted by a crash-recovery replay -> expiry (millis); their redeliveries are skipped
+    private final ConcurrentMap<String, Long> replayedRequests = new ConcurrentHashMap<>();
 
     // Store for last received schema fingerprint per endpoint
     private final ConcurrentMap<String, String> lastSchemaFingerprint = new ConcurrentHashMap<>();
 
-    // Temporary map to hold the last ApiEvent received per endpoint for schema processing
-    private final ConcurrentMap<String, ApiEvent> lastApiEventPerEndpoint = new ConcurrentHashMap<>();
+    // Service of each endpoint (from the events), for grouping correlated incidents
+    private final ConcurrentMap<String, String> endpointServices = new ConcurrentHashMap<>();
+
+    // Incidents opened since the last tick; their RCA is requested once per tick, coalesced per service
+    private final Queue<Incident> pendingRca = new ConcurrentLinkedQueue<>();
+    @Value("${aare.rca.coalesce.window-ms:120000}")
+    private long rcaCoalesceWindowMs = 120000;
+    @Value("${aare.rca.coalesce.max-group-size:20}")
+    private int rcaCoalesceMaxGroupSize = 20;
+
+    // Bounded sample requests of each endpoint's 5m window, attached to its incidents as evidence
+    private final ConcurrentMap<String, ExemplarReservoir> exemplars = new ConcurrentHashMap<>();
+    @Value("${aare.analyzer.exemplars.k:5}")
+    private int exemplarsK = 5;
+    @Value("${aare.analyzer.exemplars.max-status-codes:4}")
+    private int exemplarsMaxStatusCodes = 4;
+    @Value("${aare.analyzer.exemplars.body-chars:256}")
+    private int exemplarsBodyChars = 256;
 
     // Configuration from application.yml
     @Value("${aare.incident.detection.error-spike.threshold}")
@@ -72,38 +131,52 @@ public class ApiEventConsumer {
     @Value("${aare.incident.detection.traffic-drop.min-requests-baseline}")
     private int trafficDropMinRequestsBaseline;
 
-    @RabbitListener(queues = RabbitConfig.API_ANALYSIS_QUEUE)
+    /**
+     * Listener for the owned analysis shards; containers are registered by
+     * AnalysisListenerConfigurer and started/stopped by ShardOwnership.
+     */
     public void receiveApiEvent(Map<String, Object> eventMap) {
         Span span = tracer.spanBuilder("receiveApiEvent-analyzer").setSpanKind(SpanKind.CONSUMER).startSpan();
         try (Scope scope = span.makeCurrent()) {
             ApiEvent apiEvent = objectMapper.convertValue(eventMap, ApiEvent.class);
             log.debug("Analyzer received ApiEvent for requestId: {}", apiEvent.getRequestId());
+            if (!replayedRequests.isEmpty() && apiEvent.getRequestId() != null
+                    && replayedRequests.remove(apiEvent.getRequestId()) != null) {
+                log.debug("Skipping redelivered ApiEvent {}, already counted by the shard replay", apiEvent.getRequestId());
+                return;
+            }
 
             String endpointId = generateEndpointId(apiEvent.getMethod(), apiEvent.getPath());
             boolean isError = apiEvent.getStatusCode() >= 400;
+            if (apiEvent.getServiceName() != null) {
+                endpointServices.put(endpointId, apiEvent.getServiceName());
+            }
 
             endpointMetrics
-                    .computeIfAbsent(endpointId, k -> new ConcurrentHashMap<>())
-                    .computeIfAbsent(MetricWindowType.FIVE_MINUTES, k -> new MetricWindow(5 * 60 * 1000))
-                    .addEvent(apiEvent.getLatencyMs(), isError);
-            endpointMetrics
-                    .get(endpointId)
-                    .computeIfAbsent(MetricWindowType.THIRTY_MINUTES, k -> new MetricWindow(30 * 60 * 1000))
-                    .addEvent(apiEvent.getLatencyMs(), isError);
-            endpointMetrics
-                    .get(endpointId)
-                    .computeIfAbsent(MetricWindowType.TWENTY_FOUR_HOURS, k -> new MetricWindow(24 * 60 * 60 * 1000))
+                    .computeIfAbsent(endpointId, k -> new EndpointMetrics())
                     .addEvent(apiEvent.getLatencyMs(), isError);
 
-            if (apiEvent.getSchemaFingerprint() != null && !apiEvent.getSchemaFingerprint().isEmpty()) {
+            if (streamingDetection) {
+                StreamingDetector.Candidate candidate = streamingDetectors
+                        .computeIfAbsent(endpointId, this::newStreamingDetector)
+                        .record(System.currentTimeMillis(), apiEvent.getLatencyMs(), isError);
+                if (candidate != null) {
+                    createIncident(endpointId, candidate.type(), severityOf(candidate.type()), LocalDateTime.now(),
+                            candidate.evidence());
+                }
+            }
+
+            // only success bodies describe the contract; an error body ({error,message}) is not a new version
+            boolean success = apiEvent.getStatusCode() / 100 == 2;
+            if (success && apiEvent.getSchemaFingerprint() != null && !apiEvent.getSchemaFingerprint().isEmpty()) {
                 String oldFingerprint = lastSchemaFingerprint.put(endpointId, apiEvent.getSchemaFingerprint());
-                if (oldFingerprint != null && !oldFingerprint.equals(apiEvent.getSchemaFingerprint())) {
-                    log.info("Schema fingerprint changed for endpoint {}. Old: {}, New: {}",
-                            endpointId, oldFingerprint, apiEvent.getSchemaFingerprint());
+                if (!apiEvent.getSchemaFingerprint().equals(oldFingerprint)) {
+                    // compared against the endpoint's known versions on the next tick
+                    schemaRegistry.offer(endpointId, apiEvent.getSchemaFingerprint(), apiEvent.getResBodySample());
                 }
             }
 
-            lastApiEventPerEndpoint.put(endpointId, apiEvent);
+            exemplars.computeIfAbsent(endpointId, k -> newExemplarReservoir()).record(apiEvent, isError);
 
         } catch (Exception e) {
             span.recordException(e);
@@ -113,123 +186,292 @@ public class ApiEventConsumer {
         }
     }
 
+    /**
+     * Live view of this instance's endpoint metrics (owned shards only).
+     */
+    public Map<String, EndpointMetrics> getEndpointMetrics() {
+        return Collections.unmodifiableMap(endpointMetrics);
+    }
+
+    /**
+     * Removes the endpoints matching {@code owned} from this instance and returns their encoded
+     * window state, for handing a shard over to its new owner.
+     */
+    public Map<String, byte[]> releaseEndpoints(Predicate<String> owned) {
+        Map<String, byte[]> released = new HashMap<>();
+        for (String endpointId : new ArrayList<>(endpointMetrics.keySet())) {
+            if (!owned.test(endpointId)) continue;
+            EndpointMetrics metrics = endpointMetrics.remove(endpointId);
+            lastSchemaFingerprint.remove(endpointId);
+            schemaRegistry.forget(endpointId);
+            exemplars.remove(endpointId);
+            endpointServices.remove(endpointId);
+            streamingDetectors.remove(endpointId);
+            signalCorrelator.forget(endpointId);
+            if (metrics != null) {
+                released.put(endpointId, metrics.encode());
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Merges window state handed over by the previous owner of the endpoint's shard.
+     */
+    public void adoptEndpoint(String endpointId, byte[] state) {
+        endpointMetrics.computeIfAbsent(endpointId, k -> new EndpointMetrics()).merge(state);
+    }
+
+    /**
+     * Adds events replayed from the event store, aggregated into one recording interval.
+     */
+    public void adoptInterval(String endpointId, long startMillis, long requests, long errors, LatencyHistogram latencies) {
+        endpointMetrics.computeIfAbsent(endpointId, k -> new EndpointMetrics())
+                .addInterval(startMillis, requests, errors, latencies);
+    }
+
+    /**
+     * Marks events already counted from the event store, so their redelivery from the shard's
+     * queue (unacked by a crashed owner, or still in the backlog) is not counted again. Marks
+     * that no redelivery consumed are dropped after {@code ttlMillis}.
+     */
+    public void skipRedeliveries(Collection<String> requestIds, long ttlMillis) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        requestIds.forEach(requestId -> replayedRequests.put(requestId, expiresAt));
+    }
+
     @Scheduled(fixedRateString = "${aare.analyzer.schedule.fixed-rate-ms:60000}")
     public void analyzeMetricsAndDetectIncidents() {
+        // Never let a slow tick overlap the next one; skip instead of piling up
+        if (!tickRunning.compareAndSet(false, true)) {
+            log.warn("Previous detection tick is still running, skipping this one.");
+            meterRegistry.counter("aare.analyzer.tick.skipped").increment();
+            return;
+        }
+        long tickStart = System.nanoTime();
         Span span = tracer.spanBuilder("analyzeMetricsAndDetectIncidents").startSpan();
         try (Scope scope = span.makeCurrent()) {
             log.info("Running scheduled incident detection and baseline update...");
             LocalDateTime now = LocalDateTime.now();
+            tickNumber++;
+            if (!replayedRequests.isEmpty()) {
+                long nowMillis = System.currentTimeMillis();
+                replayedRequests.values().removeIf(expiresAt -> expiresAt < nowMillis);
+            }
 
-            endpointMetrics.forEach((endpointId, metricWindows) -> {
-                MetricWindow fiveMinWindow = metricWindows.get(MetricWindowType.FIVE_MINUTES);
-                MetricWindow thirtyMinWindow = metricWindows.get(MetricWindowType.THIRTY_MINUTES);
-                MetricWindow twentyFourHourWindow = metricWindows.get(MetricWindowType.TWENTY_FOUR_HOURS);
-
-                if (fiveMinWindow == null || fiveMinWindow.getRequestCount() == 0) {
-                    return;
-                }
-
-                updateBaseline(endpointId, fiveMinWindow, MetricWindowType.FIVE_MINUTES, now);
-                updateBaseline(endpointId, thirtyMinWindow, MetricWindowType.THIRTY_MINUTES, now);
-                updateBaseline(endpointId, twentyFourHourWindow, MetricWindowType.TWENTY_FOUR_HOURS, now);
+            List<List<String>> shards = partitionEndpoints();
+            ForkJoinPool pool = tickPool();
+            Context context = Context.current();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(shards.size());
+            for (int shard = 0; shard < shards.size(); shard++) {
+                int shardId = shard;
+                List<String> endpointIds = shards.get(shard);
+                if (endpointIds.isEmpty()) continue;
+                tasks.add(pool.submit(context.wrap(() -> evaluateShard(shardId, endpointIds, now))));
+            }
+            tasks.forEach(ForkJoinTask::join);
 
-                detectErrorSpike(endpointId, fiveMinWindow, now);
-                detectLatencyRegression(endpointId, fiveMinWindow, now);
-                detectTrafficDrop(endpointId, fiveMinWindow, twentyFourHourWindow, now);
-                detectContractBreak(endpointId, now);
-            });
+            // Write-behind: all baselines touched this tick go out in one batched upsert
+            baselineStore.flush();
+            openIncidentIndex.flush();
+            schemaRegistry.flush();
+            requestPendingRca();
 
-            log.info("Finished scheduled incident detection and baseline update.");
+            log.info("Finished scheduled incident detection and baseline update for {} endpoints in {} shards.",
+                    endpointMetrics.size(), tasks.size());
         } finally {
+            meterRegistry.timer("aare.analyzer.tick").record(System.nanoTime() - tickStart, TimeUnit.NANOSECONDS);
             span.end();
+            tickRunning.set(false);
+        }
+    }
+
+    /**
+     * Endpoints are hashed onto a fixed number of shards, so an endpoint stays in the same
+     * shard from tick to tick and per-shard timings are comparable.
+     */
+    private List<List<String>> partitionEndpoints() {
+        int shardCount = tickShards > 0 ? tickShards : 4 * tickPool().getParallelism();
+        List<List<String>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
         }
+        for (String endpointId : endpointMetrics.keySet()) {
+            shards.get(Math.floorMod(endpointId.hashCode(), shardCount)).add(endpointId);
+        }
+        return shards;
     }
 
-    private void updateBaseline(String endpointId, MetricWindow currentWindow, MetricWindowType windowType, LocalDateTime now) {
-        if (currentWindow == null || currentWindow.getRequestCount() == 0) return;
+    private void evaluateShard(int shard, List<String> endpointIds, LocalDateTime now) {
+        long shardStart = System.nanoTime();
+        for (String endpointId : endpointIds) {
+            EndpointMetrics metrics = endpointMetrics.get(endpointId);
+            if (metrics == null) continue;
+            try {
+                evaluateEndpoint(endpointId, metrics, now);
+            } catch (Exception e) {
+                log.error("Detection failed for endpoint {}: {}", endpointId, e.getMessage(), e);
+            }
+        }
+        meterRegistry.timer("aare.analyzer.tick.shard", "shard", String.valueOf(shard))
+                .record(System.nanoTime() - shardStart, TimeUnit.NANOSECONDS);
+    }
 
-        Span span = tracer.spanBuilder("updateBaseline").startSpan();
-        try (Scope scope = span.makeCurrent()) {
-            Optional<EndpointBaseline> existingBaselineOpt =
-                    endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, windowType);
+    private void evaluateEndpoint(String endpointId, EndpointMetrics metrics, LocalDateTime now) {
+        // One harvest per endpoint per tick; each view read is a single sketch merge + quantile pass
+        Map<MetricWindowType, WindowSnapshot> windows = metrics.snapshots(TICK_VIEWS);
+        WindowSnapshot fiveMin = windows.get(MetricWindowType.FIVE_MINUTES);
+        if (fiveMin.requestCount() == 0) {
+            // a silent endpoint is the strongest traffic drop; nothing else to evaluate or learn
+            detectTrafficDrop(endpointId, fiveMin, now);
+            return;
+        }
+        signalCorrelator.record(endpointId, tickNumber, fiveMin.errorRatePct().doubleValue(), fiveMin.p95Latency());
 
-            EndpointBaseline baseline = existingBaselineOpt.orElseGet(EndpointBaseline::new);
+        // Detect against the expected values as of the previous tick, so the current
+        // window is not folded into its own reference before the comparison
+        if (!streamingDetection) {
+            detectErrorSpike(endpointId, fiveMin, now);
+            detectLatencyRegression(endpointId, fiveMin, now);
+        }
+        detectTrafficDrop(endpointId, fiveMin, now);
+        detectContractBreak(endpointId, now);
 
-            baseline.setEndpointId(endpointId);
-            baseline.setMetricWindow(windowType);
-
-            BigDecimal newErrorRate = currentWindow.getErrorRatePct();
-            Integer newP50 = currentWindow.getP50Latency();
-            Integer newP95 = currentWindow.getP95Latency();
-            Integer newP99 = currentWindow.getP99Latency();
-            Integer newRequestCount = (int) currentWindow.getRequestCount();
-
-            if (existingBaselineOpt.isPresent()) {
-                baseline.setErrorRatePct(baseline.getErrorRatePct().add(newErrorRate)
-                        .divide(BigDecimal.valueOf(2), 4, RoundingMode.HALF_UP));
-                baseline.setP50LatencyMs((baseline.getP50LatencyMs() + newP50) / 2);
-                baseline.setP95LatencyMs((baseline.getP95LatencyMs() + newP95) / 2);
-                baseline.setP99LatencyMs((baseline.getP99LatencyMs() + newP99) / 2);
-                baseline.setRequestCount((baseline.getRequestCount() + newRequestCount) / 2);
-            } else {
-                baseline.setErrorRatePct(newErrorRate);
-                baseline.setP50LatencyMs(newP50);
-                baseline.setP95LatencyMs(newP95);
-                baseline.setP99LatencyMs(newP99);
-                baseline.setRequestCount(newRequestCount);
+        updateBaseline(endpointId, fiveMin, now);
+        recordWindow(endpointId, fiveMin, MetricWindowType.FIVE_MINUTES, now);
+        recordWindow(endpointId, windows.get(MetricWindowType.THIRTY_MINUTES), MetricWindowType.THIRTY_MINUTES, now);
+
+        StreamingDetector detector = streamingDetectors.get(endpointId);
+        if (detector != null) {
+            detector.updateBaseline(baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS).orElse(null));
+        }
+    }
+
+    private ForkJoinPool tickPool() {
+        ForkJoinPool pool = tickPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = tickPool;
+                if (pool == null) {
+                    int parallelism = tickParallelism > 0 ? tickParallelism : Runtime.getRuntime().availableProcessors();
+                    pool = new ForkJoinPool(parallelism, p -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("detection-tick-" + thread.getPoolIndex());
+                        return thread;
+                    }, null, false);
+                    tickPool = pool;
+                }
             }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdownTickPool() {
+        if (tickPool != null) {
+            tickPool.shutdown();
+        }
+    }
+
+    /**
+     * Feeds the 5m window into the endpoint's seasonal model and stores the model's expectation
+     * for the current hour-of-week slot as the TWENTY_FOUR_HOURS baseline, which is what the
+     * detectors compare against.
+     */
+    private void updateBaseline(String endpointId, WindowSnapshot fiveMinWindow, LocalDateTime now) {
+        Span span = tracer.spanBuilder("updateBaseline").startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            SeasonalBaseline model = baselineStore.model(endpointId);
+            model.observe(now, fiveMinWindow);
+            SeasonalBaseline.Expected expected = model.expected(now);
 
+            EndpointBaseline baseline = baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS)
+                    .orElseGet(EndpointBaseline::new);
+            baseline.setEndpointId(endpointId);
+            baseline.setMetricWindow(MetricWindowType.TWENTY_FOUR_HOURS);
+            baseline.setErrorRatePct(BigDecimal.valueOf(expected.errorRatePct()).setScale(4, RoundingMode.HALF_UP));
+            baseline.setP50LatencyMs((int) expected.p50Latency());
+            baseline.setP95LatencyMs((int) expected.p95Latency());
+            baseline.setP99LatencyMs((int) expected.p99Latency());
+            baseline.setRequestCount((int) Math.round(expected.requestCount()));
             baseline.setLastComputed(now);
-            endpointBaselineRepository.save(baseline);
+            baselineStore.put(baseline);
         } finally {
             span.end();
         }
     }
 
-    private void detectErrorSpike(String endpointId, MetricWindow fiveMinWindow, LocalDateTime now) {
-        if (fiveMinWindow.getRequestCount() < errorSpikeMinRequests) return;
+    /**
+     * Stores the latest observed 5m / 30m window as-is; these rows are observations, not baselines.
+     */
+    private void recordWindow(String endpointId, WindowSnapshot window, MetricWindowType windowType, LocalDateTime now) {
+        if (window == null || window.requestCount() == 0) return;
+
+        EndpointBaseline row = baselineStore.get(endpointId, windowType).orElseGet(EndpointBaseline::new);
+        row.setEndpointId(endpointId);
+        row.setMetricWindow(windowType);
+        row.setErrorRatePct(window.errorRatePct());
+        row.setP50LatencyMs(window.p50Latency());
+        row.setP95LatencyMs(window.p95Latency());
+        row.setP99LatencyMs(window.p99Latency());
+        row.setRequestCount((int) window.requestCount());
+        row.setLastComputed(now);
+        baselineStore.put(row);
+    }
+
+    private void detectErrorSpike(String endpointId, WindowSnapshot fiveMinWindow, LocalDateTime now) {
+        if (fiveMinWindow.requestCount() < errorSpikeMinRequests) return;
 
-        BigDecimal currentErrorRate = fiveMinWindow.getErrorRatePct();
-        Optional<EndpointBaseline> baselineOpt =
-                endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
+        BigDecimal currentErrorRate = fiveMinWindow.errorRatePct();
+        Optional<EndpointBaseline> baselineOpt = baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
 
-        if (baselineOpt.isPresent() && currentErrorRate.compareTo(errorSpikeThreshold) > 0) {
+        if (baselineOpt.isPresent() && baselineOpt.get().getErrorRatePct() != null
+                && currentErrorRate.compareTo(errorSpikeThreshold) > 0) {
             BigDecimal baselineErrorRate = baselineOpt.get().getErrorRatePct();
             if (currentErrorRate.compareTo(baselineErrorRate.multiply(errorSpikeFactor)) > 0) {
-                createIncident(endpointId, IncidentType.ERROR_SPIKE, IncidentSeverity.HIGH, now,
-                        Map.of("currentErrorRate", currentErrorRate,
-                                "baselineErrorRate", baselineErrorRate,
-                                "factor", errorSpikeFactor));
+                Map<String, Object> evidence = new LinkedHashMap<>();
+                evidence.put("currentErrorRate", currentErrorRate);
+                evidence.put("baselineErrorRate", baselineErrorRate);
+                evidence.put("factor", errorSpikeFactor);
+                // the latency side too, so the RCA can tell timeouts from plain failures
+                if (baselineOpt.get().getP95LatencyMs() != null) {
+                    evidence.put("currentP95Latency", fiveMinWindow.p95Latency());
+                    evidence.put("baselineP95Latency", baselineOpt.get().getP95LatencyMs());
+                }
+                createIncident(endpointId, IncidentType.ERROR_SPIKE, IncidentSeverity.HIGH, now, evidence);
             }
         }
     }
 
-    private void detectLatencyRegression(String endpointId, MetricWindow fiveMinWindow, LocalDateTime now) {
-        if (fiveMinWindow.getRequestCount() < latencyRegressionMinRequests) return;
+    private void detectLatencyRegression(String endpointId, WindowSnapshot fiveMinWindow, LocalDateTime now) {
+        if (fiveMinWindow.requestCount() < latencyRegressionMinRequests) return;
 
-        int currentP95 = fiveMinWindow.getP95Latency();
-        Optional<EndpointBaseline> baselineOpt =
-                endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
+        int currentP95 = fiveMinWindow.p95Latency();
+        Optional<EndpointBaseline> baselineOpt = baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
 
-        if (baselineOpt.isPresent()) {
+        if (baselineOpt.isPresent() && baselineOpt.get().getP95LatencyMs() != null) {
             int baselineP95 = baselineOpt.get().getP95LatencyMs();
             if (currentP95 > (baselineP95 * latencyRegressionP95Factor.doubleValue())) {
-                createIncident(endpointId, IncidentType.LATENCY_REGRESSION, IncidentSeverity.MEDIUM, now,
-                        Map.of("currentP95Latency", currentP95,
-                                "baselineP95Latency", baselineP95,
-                                "factor", latencyRegressionP95Factor));
+                Map<String, Object> evidence = new LinkedHashMap<>();
+                evidence.put("currentP95Latency", currentP95);
+                evidence.put("baselineP95Latency", baselineP95);
+                evidence.put("factor", latencyRegressionP95Factor);
+                // the error side too, so the RCA can tell a slowdown from timeouts
+                if (baselineOpt.get().getErrorRatePct() != null) {
+                    evidence.put("currentErrorRate", fiveMinWindow.errorRatePct());
+                    evidence.put("baselineErrorRate", baselineOpt.get().getErrorRatePct());
+                }
+                createIncident(endpointId, IncidentType.LATENCY_REGRESSION, IncidentSeverity.MEDIUM, now, evidence);
             }
         }
     }
 
-    private void detectTrafficDrop(String endpointId, MetricWindow fiveMinWindow, MetricWindow twentyFourHourWindow, LocalDateTime now) {
-        if (fiveMinWindow.getRequestCount() == 0) return;
+    private void detectTrafficDrop(String endpointId, WindowSnapshot fiveMinWindow, LocalDateTime now) {
+        // baseline request count = expected 5m count for the current hour-of-week slot
+        long currentRequestCount = fiveMinWindow.requestCount();
+        Optional<EndpointBaseline> baselineOpt = baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
 
-        long currentRequestCount = fiveMinWindow.getRequestCount();
-        Optional<EndpointBaseline> baselineOpt =
-                endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS);
-
-        if (baselineOpt.isPresent()) {
+        if (baselineOpt.isPresent() && baselineOpt.get().getRequestCount() != null) {
             long baselineRequestCount = baselineOpt.get().getRequestCount();
             if (baselineRequestCount >= trafficDropMinRequestsBaseline
                     && currentRequestCount < (baselineRequestCount * trafficDropFactor.doubleValue())) {
@@ -241,8 +483,40 @@ public class ApiEventConsumer {
         }
     }
 
+    /**
+     * Raises a contract break for each new breaking schema version of the endpoint since the
+     * last tick; flapping between known versions is absorbed by the registry.
+     */
     private void detectContractBreak(String endpointId, LocalDateTime now) {
-        // keep your existing implementation (no compile issues shown here)
+        for (SchemaRegistry.SchemaChange change : schemaRegistry.process(endpointId, now)) {
+            if (change.breaking()) {
+                createIncident(endpointId, IncidentType.CONTRACT_BREAK, severityOf(IncidentType.CONTRACT_BREAK), now,
+                        change.evidence());
+            }
+        }
+    }
+
+    private StreamingDetector newStreamingDetector(String endpointId) {
+        StreamingDetector detector = new StreamingDetector(new StreamingDetector.Settings(
+                streamingWindowMs, streamingDwellMs,
+                errorSpikeMinRequests, errorSpikeThreshold, errorSpikeFactor,
+                latencyRegressionMinRequests, latencyRegressionP95Factor));
+        detector.updateBaseline(baselineStore.get(endpointId, MetricWindowType.TWENTY_FOUR_HOURS).orElse(null));
+        return detector;
+    }
+
+    private ExemplarReservoir newExemplarReservoir() {
+        return new ExemplarReservoir(new ExemplarReservoir.Settings(exemplarsK, exemplarsMaxStatusCodes,
+                exemplarsBodyChars, MetricWindowType.FIVE_MINUTES.getDurationMillis()));
+    }
+
+    private static IncidentSeverity severityOf(IncidentType type) {
+        return switch (type) {
+            case ERROR_SPIKE -> IncidentSeverity.HIGH;
+            case LATENCY_REGRESSION -> IncidentSeverity.MEDIUM;
+            case TRAFFIC_DROP -> IncidentSeverity.LOW;
+            default -> IncidentSeverity.CRITICAL;
+        };
     }
 
     private void createIncident(String endpointId,
@@ -253,23 +527,9 @@ public class ApiEventConsumer {
         Span span = tracer.spanBuilder("createIncident").startSpan();
         try (Scope scope = span.makeCurrent()) {
 
-            // ✅ Define the window correctly
-            LocalDateTime windowStart = detectedAt.minusMinutes(5);
-            LocalDateTime windowEnd = detectedAt;
-
-            // ✅ Check for existing OPEN incident of same type in the window
-            List<Incident> existing = incidentRepository
-                    .findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-                            endpointId,
-                            type,
-                            IncidentStatus.OPEN,
-                            windowStart,
-                            windowEnd
-                    );
-
-            if (!existing.isEmpty()) {
-                log.info("Active incident of type {} already exists for endpoint {} in last 5 minutes. Skipping.",
-                        type, endpointId);
+            // One incident per (endpoint, type) while it stays open; repeat detections extend it
+            if (!openIncidentIndex.tryOpen(endpointId, type, detectedAt)) {
+                log.debug("Incident of type {} already open for endpoint {}, extending it.", type, endpointId);
                 return;
             }
 
@@ -280,46 +540,138 @@ public class ApiEventConsumer {
             incident.setSeverity(severity);
             incident.setTriggeredAt(detectedAt);
             incident.setDetectedAt(detectedAt);
-
-            Incident savedIncident = incidentRepository.save(incident);
+            incident.setLastDetectedAt(detectedAt);
+
+            Incident savedIncident;
+            try {
+                savedIncident = incidentRepository.save(incident);
+            } catch (RuntimeException e) {
+                openIncidentIndex.abandon(endpointId, type);
+                throw e;
+            }
+            openIncidentIndex.opened(endpointId, type, savedIncident.getId());
             log.warn("INCIDENT DETECTED: Type={}, Endpoint={}, Severity={}", type, endpointId, severity);
 
             IncidentEvidence evidence = new IncidentEvidence();
             evidence.setIncidentId(savedIncident.getId());
-            evidence.setEvidenceType(EvidenceType.METRICS);
+            evidence.setEvidenceType(type == IncidentType.CONTRACT_BREAK ? EvidenceType.SCHEMA_DIFF : EvidenceType.METRICS);
             evidence.setData(evidenceData);
             evidence.setCreatedAt(detectedAt);
             incidentEvidenceRepository.save(evidence);
+            saveExemplars(savedIncident, detectedAt);
 
-            triggerRcaGeneration(savedIncident.getId());
+            saveRuleBasedRca(savedIncident, evidence);
+            pendingRca.add(savedIncident);
 
         } finally {
             span.end();
         }
     }
 
-    @Async
-    public void triggerRcaGeneration(UUID incidentId) {
-        Span span = tracer.spanBuilder("triggerRcaGeneration").setSpanKind(SpanKind.PRODUCER).startSpan();
-        try (Scope scope = span.makeCurrent()) {
-            Optional<Incident> incidentOpt = incidentRepository.findById(incidentId);
-            if (incidentOpt.isEmpty()) {
-                log.warn("Incident {} not found for RCA generation.", incidentId);
-                return;
+    /**
+     * Attaches the endpoint's sample requests (slowest, recent errors per status, uniform sample)
+     * as LOGS evidence. Best effort: the incident stands without them.
+     */
+    private void saveExemplars(Incident incident, LocalDateTime detectedAt) {
+        ExemplarReservoir reservoir = exemplars.get(incident.getEndpointId());
+        Map<String, Object> data = reservoir == null ? Map.of() : reservoir.snapshot();
+        if (data.isEmpty()) return;
+        try {
+            IncidentEvidence evidence = new IncidentEvidence();
+            evidence.setIncidentId(incident.getId());
+            evidence.setEvidenceType(EvidenceType.LOGS);
+            evidence.setData(data);
+            evidence.setCreatedAt(detectedAt);
+            incidentEvidenceRepository.save(evidence);
+        } catch (RuntimeException e) {
+            log.error("Could not save exemplars for incident {}: {}", incident.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stores the rule-based RCA right away, so every incident has a report before the queued
+     * LLM analysis (if any) enriches it. A failure here only delays the report to the worker.
+     */
+    private void saveRuleBasedRca(Incident incident, IncidentEvidence evidence) {
+        try {
+            rcaReportRepository.save(ruleBasedRcaEngine.analyze(incident, List.of(evidence)));
+        } catch (RuntimeException e) {
+            log.error("Could not save rule-based RCA for incident {}: {}", incident.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Handles the incidents opened since the last tick. Incidents on endpoints whose error or
+     * latency signals move together ({@link SignalCorrelator}) are one outage: the most severe
+     * becomes the parent, the others are linked to it in one update, and the cluster shares one
+     * RCA job. The remaining incidents of the same service detected within
+     * aare.rca.coalesce.window-ms of each other also share one job (and so one LLM call).
+     */
+    private void requestPendingRca() {
+        List<Incident> incidents = new ArrayList<>();
+        for (Incident incident; (incident = pendingRca.poll()) != null; ) {
+            incidents.add(incident);
+        }
+        if (incidents.isEmpty()) return;
+
+        List<List<Incident>> groups = new ArrayList<>();
+        List<Incident> uncorrelated = new ArrayList<>();
+        for (List<Incident> cluster : signalCorrelator.cluster(incidents)) {
+            if (cluster.size() == 1) {
+                uncorrelated.add(cluster.get(0));
+                continue;
             }
+            cluster.sort(RcaCoalescer.PRIMARY_FIRST);
+            linkToParent(cluster);
+            groups.add(cluster);
+        }
+        groups.addAll(RcaCoalescer.group(uncorrelated, this::serviceOf,
+                Duration.ofMillis(rcaCoalesceWindowMs), rcaCoalesceMaxGroupSize));
+        meterRegistry.counter("aare.rca.coalesced").increment(incidents.size() - groups.size());
+        groups.forEach(this::requestRca);
+    }
 
-            Incident incident = incidentOpt.get();
-            List<IncidentEvidence> evidences = incidentEvidenceRepository.findByIncidentId(incidentId);
+    private void linkToParent(List<Incident> cluster) {
+        Incident parent = cluster.get(0);
+        List<UUID> children = cluster.subList(1, cluster.size()).stream().map(Incident::getId).toList();
+        try {
+            incidentRepository.linkToParent(parent.getId(), children);
+            cluster.subList(1, cluster.size()).forEach(child -> child.setParentIncidentId(parent.getId()));
+            meterRegistry.counter("aare.incidents.correlated").increment(children.size());
+            log.warn("CORRELATED INCIDENTS: {} incidents linked to {} on {}", children.size(), parent.getId(),
+                    parent.getEndpointId());
+        } catch (RuntimeException e) {
+            log.error("Could not link correlated incidents {} to {}: {}", children, parent.getId(), e.getMessage(), e);
+        }
+    }
 
-            RcaReport rcaReport = openAIService.generateRcaReport(incident, evidences);
-            rcaReportRepository.save(rcaReport);
+    private String serviceOf(String endpointId) {
+        return endpointServices.getOrDefault(endpointId, "unknown");
+    }
 
-            log.info("RCA report generated for incident {}. Status: {}", incidentId, rcaReport.getStatus());
-        } catch (Exception e) {
-            span.recordException(e);
-            log.error("Error triggering RCA generation for incident {}: {}", incidentId, e.getMessage(), e);
-        } finally {
-            span.end();
+    /**
+     * Queues RCA generation for the worker pool (RcaWorker), so neither the detection tick nor
+     * the event listener ever waits on the LLM. Higher severities are picked up first. The first
+     * incident of the group is the primary one; the others share its report.
+     */
+    private void requestRca(List<Incident> group) {
+        Incident primary = group.get(0);
+        Map<String, Object> job = new HashMap<>();
+        job.put("incidentId", primary.getId().toString());
+        job.put("incidentIds", group.stream().map(i -> i.getId().toString()).toList());
+        job.put("endpointId", primary.getEndpointId());
+        job.put("type", primary.getType().name());
+        job.put("severity", primary.getSeverity().name());
+        job.put("requestedAt", System.currentTimeMillis());
+        int priority = RabbitConfig.rcaPriorityOf(primary.getSeverity());
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.RCA_REQUESTED_EXCHANGE, RabbitConfig.RCA_REQUESTED_ROUTING_KEY, job,
+                    message -> {
+                        message.getMessageProperties().setPriority(priority);
+                        return message;
+                    });
+        } catch (AmqpException e) {
+            log.error("Could not queue RCA for incidents {}: {}", job.get("incidentIds"), e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,222 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EndpointBaseline;
+import com.aare.analyzer.model.MetricWindowType;
+import com.aare.analyzer.repository.EndpointBaselineRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy of endpoint_baseline, loaded once at startup and used for every baseline read.
+ *
+ * Updates only mark the entry dirty; {@link #flush()} (called once at the end of each detection
+ * tick) writes all dirty baselines in a single batched upsert, so tick cost no longer grows by
+ * several DB round trips per endpoint.
+ *
+ * It also holds each endpoint's {@link SeasonalBaseline}, persisted in the seasonal_state column
+ * of the endpoint's TWENTY_FOUR_HOURS row.
+ */
+@Service
+@Slf4j
+public class BaselineStore {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO endpoint_baseline (id, endpoint_id, metric_window, error_rate_pct,
+                p50_latency_ms, p95_latency_ms, p99_latency_ms, request_count, last_computed, seasonal_state)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (endpoint_id, metric_window) DO UPDATE SET
+                error_rate_pct = EXCLUDED.error_rate_pct,
+                p50_latency_ms = EXCLUDED.p50_latency_ms,
+                p95_latency_ms = EXCLUDED.p95_latency_ms,
+                p99_latency_ms = EXCLUDED.p99_latency_ms,
+                request_count = EXCLUDED.request_count,
+                last_computed = EXCLUDED.last_computed,
+                seasonal_state = EXCLUDED.seasonal_state
+            """;
+
+    private final EndpointBaselineRepository endpointBaselineRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${aare.analyzer.baseline.flush-batch-size:500}")
+    private int flushBatchSize = 500;
+    @Value("${aare.analyzer.baseline.persist-interval-ms:300000}")
+    private long persistIntervalMs = 300_000;
+    @Value("${aare.analyzer.baseline.level-alpha:0.0005}")
+    private double levelAlpha = 0.0005;
+    @Value("${aare.analyzer.baseline.seasonal-gamma:0.02}")
+    private double seasonalGamma = 0.02;
+    @Value("${aare.analyzer.baseline.latency-alpha:0.01}")
+    private double latencyAlpha = 0.01;
+
+    private final ConcurrentMap<BaselineKey, EndpointBaseline> baselines = new ConcurrentHashMap<>();
+    private final Set<BaselineKey> dirty = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<BaselineKey, Long> lastPersistedMillis = new ConcurrentHashMap<>();
+    // endpointId -> seasonal model behind the TWENTY_FOUR_HOURS row (stored in its seasonal_state)
+    private final ConcurrentMap<String, SeasonalBaseline> models = new ConcurrentHashMap<>();
+
+    public BaselineStore(EndpointBaselineRepository endpointBaselineRepository, JdbcTemplate jdbcTemplate) {
+        this.endpointBaselineRepository = endpointBaselineRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        try {
+            for (EndpointBaseline baseline : endpointBaselineRepository.findAll()) {
+                baselines.put(keyOf(baseline), baseline);
+            }
+            log.info("Loaded {} endpoint baselines into memory", baselines.size());
+        } catch (Exception e) {
+            // start cold rather than not at all; baselines are rebuilt from live traffic
+            log.warn("Could not load endpoint baselines, starting with an empty cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-reads the persisted baselines of the matching endpoints, e.g. after taking over a shard
+     * whose baselines another instance has been updating. Unflushed local changes win.
+     */
+    public int reload(Predicate<String> endpointFilter) {
+        int reloaded = 0;
+        for (EndpointBaseline baseline : endpointBaselineRepository.findAll()) {
+            BaselineKey key = keyOf(baseline);
+            if (endpointFilter.test(baseline.getEndpointId()) && !dirty.contains(key)) {
+                baselines.put(key, baseline);
+                models.remove(baseline.getEndpointId());
+                reloaded++;
+            }
+        }
+        return reloaded;
+    }
+
+    /**
+     * The endpoint's seasonal model, restored from the stored 24h baseline on first use (or seeded
+     * from its plain values when it predates seasonal baselines).
+     */
+    public SeasonalBaseline model(String endpointId) {
+        return models.computeIfAbsent(endpointId, id -> {
+            SeasonalBaseline.Settings settings = new SeasonalBaseline.Settings(levelAlpha, seasonalGamma, latencyAlpha);
+            EndpointBaseline stored = baselines.get(new BaselineKey(id, MetricWindowType.TWENTY_FOUR_HOURS));
+            if (stored == null) {
+                return new SeasonalBaseline(settings);
+            }
+            if (stored.getSeasonalState() != null) {
+                try {
+                    return SeasonalBaseline.decode(stored.getSeasonalState(), settings);
+                } catch (RuntimeException e) {
+                    log.warn("Discarding unreadable seasonal baseline of {}: {}", id, e.getMessage());
+                }
+            }
+            return SeasonalBaseline.seededFrom(stored, settings);
+        });
+    }
+
+    public Optional<EndpointBaseline> get(String endpointId, MetricWindowType window) {
+        return Optional.ofNullable(baselines.get(new BaselineKey(endpointId, window)));
+    }
+
+    /**
+     * Stores (or replaces) a baseline in memory and queues it for the next flush.
+     */
+    public void put(EndpointBaseline baseline) {
+        if (baseline.getId() == null) {
+            baseline.setId(UUID.randomUUID());
+        }
+        BaselineKey key = keyOf(baseline);
+        baselines.put(key, baseline);
+        dirty.add(key);
+    }
+
+    public int size() {
+        return baselines.size();
+    }
+
+    /**
+     * Writes the dirty baselines that were not persisted within the persist interval, with one
+     * batched upsert. The in-memory copy stays current either way; the interval only bounds how
+     * often a constantly changing baseline is rewritten. Entries that fail to write stay dirty.
+     */
+    public int flush() {
+        return flush(false);
+    }
+
+    /**
+     * Writes every dirty baseline now, e.g. before a shard is handed over or on shutdown.
+     */
+    public int flushAll() {
+        return flush(true);
+    }
+
+    private int flush(boolean force) {
+        long now = System.currentTimeMillis();
+        List<BaselineKey> keys = new ArrayList<>();
+        for (Iterator<BaselineKey> it = dirty.iterator(); it.hasNext(); ) {
+            BaselineKey key = it.next();
+            Long persistedAt = lastPersistedMillis.get(key);
+            if (force || persistedAt == null || now - persistedAt >= persistIntervalMs) {
+                keys.add(key);
+                it.remove();
+            }
+        }
+        if (keys.isEmpty()) return 0;
+
+        List<EndpointBaseline> batch = new ArrayList<>(keys.size());
+        for (BaselineKey key : keys) {
+            EndpointBaseline baseline = baselines.get(key);
+            if (baseline == null) continue;
+            SeasonalBaseline model = key.window() == MetricWindowType.TWENTY_FOUR_HOURS ? models.get(key.endpointId()) : null;
+            if (model != null) {
+                baseline.setSeasonalState(model.encode());
+            }
+            batch.add(baseline);
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, flushBatchSize, (ps, b) -> {
+                ps.setObject(1, b.getId());
+                ps.setString(2, b.getEndpointId());
+                ps.setString(3, b.getMetricWindow().name());
+                ps.setBigDecimal(4, b.getErrorRatePct());
+                ps.setInt(5, b.getP50LatencyMs());
+                ps.setInt(6, b.getP95LatencyMs());
+                ps.setInt(7, b.getP99LatencyMs());
+                ps.setInt(8, b.getRequestCount());
+                ps.setTimestamp(9, Timestamp.valueOf(b.getLastComputed()));
+                ps.setBytes(10, b.getSeasonalState());
+            });
+            keys.forEach(key -> lastPersistedMillis.put(key, now));
+            log.debug("Flushed {} endpoint baselines", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            dirty.addAll(keys);
+            log.error("Failed to flush {} endpoint baselines, will retry next tick: {}", batch.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    private static BaselineKey keyOf(EndpointBaseline baseline) {
+        return new BaselineKey(baseline.getEndpointId(), baseline.getMetricWindow());
+    }
+
+    private record BaselineKey(String endpointId, MetricWindowType window) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.aare.analyzer.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Reader-side rolling window: a fixed ring of time buckets, each with primitive counters and
+ * a compact LatencyHistogram. Memory is bounded by the bucket count regardless of traffic, and
+ * expiry is a rotation: a slot whose epoch has left the window is reset when it is reused and
+ * ignored by readers. The window covers the current (partial) bucket plus the preceding full ones.
+ *
+ * Not thread-safe; EndpointMetrics only touches it under the recorder's reader lock.
+ */
+class BucketRing {
+
+    private final long bucketMillis;
+    private final Bucket[] ring;
+
+    BucketRing(long windowMillis, long bucketMillis) {
+        if (bucketMillis <= 0 || windowMillis < bucketMillis) {
+            throw new IllegalArgumentException("windowMillis must be >= bucketMillis > 0");
+        }
+        this.bucketMillis = bucketMillis;
+        this.ring = new Bucket[(int) (windowMillis / bucketMillis)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Rolls a finished (finer-grained) interval up into the bucket containing {@code startMillis}.
+     */
+    void add(long startMillis, long requests, long errors, LatencyHistogram latencies) {
+        long epoch = Math.floorDiv(startMillis, bucketMillis);
+        Bucket bucket = ring[(int) Math.floorMod(epoch, (long) ring.length)];
+        if (bucket.epoch > epoch) return; // already rotated past it
+        if (bucket.epoch != epoch) {
+            bucket.reset(epoch);
+        }
+        bucket.requests += requests;
+        bucket.errors += errors;
+        bucket.latencies.add(latencies);
+    }
+
+    WindowSnapshot snapshot(long nowMillis) {
+        long oldest = oldestLiveEpoch(nowMillis);
+        long requests = 0;
+        long errors = 0;
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Bucket bucket : ring) {
+            if (bucket.epoch >= oldest) {
+                requests += bucket.requests;
+                errors += bucket.errors;
+                merged.add(bucket.latencies);
+            }
+        }
+        return WindowSnapshot.of(requests, errors, merged);
+    }
+
+    long requestCount(long nowMillis) {
+        long oldest = oldestLiveEpoch(nowMillis);
+        long total = 0;
+        for (Bucket bucket : ring) {
+            if (bucket.epoch >= oldest) total += bucket.requests;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the live buckets (start, requests, errors, encoded sketch) so another ring of the
+     * same width can {@link #readFrom} them; used to hand a window over to another instance.
+     */
+    void writeTo(DataOutputStream out, long nowMillis) throws IOException {
+        long oldest = oldestLiveEpoch(nowMillis);
+        int live = 0;
+        for (Bucket bucket : ring) {
+            if (bucket.epoch >= oldest && bucket.requests > 0) live++;
+        }
+        out.writeInt(live);
+        for (Bucket bucket : ring) {
+            if (bucket.epoch >= oldest && bucket.requests > 0) {
+                out.writeLong(bucket.epoch * bucketMillis);
+                out.writeLong(bucket.requests);
+                out.writeLong(bucket.errors);
+                byte[] latencies = bucket.latencies.encode();
+                out.writeInt(latencies.length);
+                out.write(latencies);
+            }
+        }
+    }
+
+    /**
+     * Merges buckets written by {@link #writeTo}; counts add up with what is already recorded.
+     */
+    void readFrom(DataInputStream in) throws IOException {
+        int buckets = in.readInt();
+        for (int i = 0; i < buckets; i++) {
+            long startMillis = in.readLong();
+            long requests = in.readLong();
+            long errors = in.readLong();
+            byte[] latencies = new byte[in.readInt()];
+            in.readFully(latencies);
+            add(startMillis, requests, errors, LatencyHistogram.decode(latencies));
+        }
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    private long oldestLiveEpoch(long nowMillis) {
+        return Math.floorDiv(nowMillis, bucketMillis) - ring.length + 1;
+    }
+
+    private static class Bucket {
+        long epoch = Long.MIN_VALUE;
+        long requests;
+        long errors;
+        final LatencyHistogram latencies = new LatencyHistogram();
+
+        void reset(long newEpoch) {
+            epoch = newEpoch;
+            requests = 0;
+            errors = 0;
+            latencies.reset();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.aare.analyzer.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk checkpoint of one analysis shard's endpoint windows.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   magic "AARECKPT" | version u8 | shard i32 | createdAtMillis i64 | endpoints i32
+ *   endpoints x ( idLength u16 | id UTF-8 | stateLength i32 | state (EndpointMetrics#encode) )
+ * </pre>
+ * Files are written to a temp file and atomically moved into place, so a reader sees either the
+ * previous or the new checkpoint, never a torn one. Loading maps the file read-only and slices the
+ * endpoint states straight out of the mapping.
+ */
+final class CheckpointFile {
+
+    private static final byte[] MAGIC = "AARECKPT".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private CheckpointFile() {
+    }
+
+    record Contents(int shard, long createdAtMillis, Map<String, byte[]> endpoints) {
+    }
+
+    static void write(Path file, int shard, long createdAtMillis, Map<String, byte[]> endpoints) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(shard);
+            out.writeLong(createdAtMillis);
+            out.writeInt(endpoints.size());
+            for (Map.Entry<String, byte[]> entry : endpoints.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + file);
+            }
+            int shard = buffer.getInt();
+            long createdAtMillis = buffer.getLong();
+            int count = buffer.getInt();
+            Map<String, byte[]> endpoints = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(id);
+                byte[] state = new byte[buffer.getInt()];
+                buffer.get(state);
+                endpoints.put(new String(id, StandardCharsets.UTF_8), state);
+            }
+            return new Contents(shard, createdAtMillis, endpoints);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.aare.analyzer.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ketama-style consistent hash ring over the live analyzer members.
+ *
+ * Every member is placed on the ring at {@code virtualNodes} points; a key belongs to the first
+ * member point at or after the key's hash (wrapping around). When a member joins or leaves only
+ * the keys between its points and their predecessors move, roughly 1/N of them, and every
+ * instance that sees the same member list computes the same owners.
+ */
+class ConsistentHashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be >= 1");
+        }
+        for (String member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on the (unlikely) collision the smaller member id wins, independent of order
+                ring.merge(hash(member + "#" + i), member, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * Owner of {@code key}, or null when there are no members.
+     */
+    String ownerOf(String key) {
+        if (ring.isEmpty()) return null;
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    // first 8 bytes of MD5: stable across JVMs and well spread, unlike String.hashCode
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.MetricWindowType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * All rolling metrics for one endpoint, fed by a single recording per event.
+ *
+ * Events go into one lock-free 10s IntervalRecorder. On read, finished intervals are rolled up
+ * into one BucketRing per {@link MetricWindowType} (10s buckets for 5m, minutes for 30m,
+ * 5 minutes for 24h), so the roll-up cost is per interval, not per event, and a new view
+ * (say 1h or 7d) is just another ring.
+ *
+ * Readers that need several statistics should take one {@link #snapshot}: it merges the
+ * live buckets' sketches once and resolves every percentile in the same pass.
+ *
+ * {@link #encode()} / {@link #merge(byte[])} move the whole state (every view's live buckets)
+ * between instances, e.g. when endpoint ownership changes hands.
+ */
+public class EndpointMetrics {
+
+    public static final long INTERVAL_MILLIS = 10_000;
+    private static final int FORMAT_VERSION = 1;
+
+    private final IntervalRecorder recorder;
+    // guarded by recorder.readerLock()
+    private final Map<MetricWindowType, BucketRing> views = new EnumMap<>(MetricWindowType.class);
+    private volatile boolean changed;
+
+    public EndpointMetrics() {
+        this(System::currentTimeMillis);
+    }
+
+    EndpointMetrics(LongSupplier clock) {
+        this.recorder = new IntervalRecorder(INTERVAL_MILLIS, clock);
+        for (MetricWindowType type : MetricWindowType.values()) {
+            if (type.getBucketMillis() % INTERVAL_MILLIS != 0) {
+                throw new IllegalStateException(type + " bucket width must be a multiple of " + INTERVAL_MILLIS + "ms");
+            }
+            views.put(type, new BucketRing(type.getDurationMillis(), type.getBucketMillis()));
+        }
+    }
+
+    public void addEvent(long latency, boolean isError) {
+        recorder.record(latency, isError);
+        // read-mostly flag: only the first event after a checkpoint pays for the write
+        if (!changed) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Adds an already aggregated interval that started at {@code startMillis} (e.g. replayed from
+     * the event store) to every view, as if it had been recorded at that time.
+     */
+    public void addInterval(long startMillis, long requests, long errors, LatencyHistogram latencies) {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            for (BucketRing ring : views.values()) {
+                ring.add(startMillis, requests, errors, latencies);
+            }
+            changed = true;
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    /**
+     * Whether events were recorded since the previous call; used to checkpoint only what changed.
+     */
+    public boolean takeChanged() {
+        if (!changed) return false;
+        changed = false;
+        return true;
+    }
+
+    public void markChanged() {
+        changed = true;
+    }
+
+    public WindowSnapshot snapshot(MetricWindowType type) {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            return views.get(type).snapshot(recorder.now());
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshots of every view from one harvest.
+     */
+    public Map<MetricWindowType, WindowSnapshot> snapshots() {
+        return snapshots(EnumSet.allOf(MetricWindowType.class));
+    }
+
+    /**
+     * Snapshots of the given views from one harvest; the other views are only rolled up, their
+     * sketches are not merged and no quantiles are computed for them.
+     */
+    public Map<MetricWindowType, WindowSnapshot> snapshots(Set<MetricWindowType> types) {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            long now = recorder.now();
+            Map<MetricWindowType, WindowSnapshot> result = new EnumMap<>(MetricWindowType.class);
+            for (MetricWindowType type : types) {
+                result.put(type, views.get(type).snapshot(now));
+            }
+            return result;
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    public long getRequestCount(MetricWindowType type) {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            return views.get(type).requestCount(recorder.now());
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    /**
+     * Everything recorded so far, including the current partial interval.
+     */
+    public byte[] encode() {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            long now = recorder.now();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(views.size());
+            for (Map.Entry<MetricWindowType, BucketRing> view : views.entrySet()) {
+                out.writeUTF(view.getKey().name());
+                out.writeLong(view.getValue().bucketMillis());
+                view.getValue().writeTo(out, now);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    /**
+     * Adds state produced by {@link #encode()} on another instance. Views this instance does not
+     * know, or whose bucket width changed, are skipped.
+     */
+    public void merge(byte[] encoded) {
+        recorder.readerLock().lock();
+        try {
+            harvest();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported endpoint metrics format " + version);
+            }
+            int viewCount = in.readInt();
+            for (int i = 0; i < viewCount; i++) {
+                String name = in.readUTF();
+                long bucketMillis = in.readLong();
+                BucketRing ring = knownView(name);
+                // read into a scratch ring when the view can't be merged, to stay aligned
+                if (ring == null || ring.bucketMillis() != bucketMillis) {
+                    ring = new BucketRing(bucketMillis, bucketMillis);
+                }
+                ring.readFrom(in);
+            }
+            changed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            recorder.readerLock().unlock();
+        }
+    }
+
+    private BucketRing knownView(String name) {
+        for (Map.Entry<MetricWindowType, BucketRing> view : views.entrySet()) {
+            if (view.getKey().name().equals(name)) return view.getValue();
+        }
+        return null;
+    }
+
+    private void harvest() {
+        recorder.harvest(interval -> {
+            LatencyHistogram latencies = new LatencyHistogram();
+            latencies.add(interval.latencies);
+            long start = interval.epoch * recorder.intervalMillis();
+            long requests = interval.requests.sum();
+            long errors = interval.errors.sum();
+            for (BucketRing ring : views.values()) {
+                ring.add(start, requests, errors, latencies);
+            }
+        });
+    }
+}
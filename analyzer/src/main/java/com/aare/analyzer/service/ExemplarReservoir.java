@@ -0,0 +1,197 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.ApiEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Per-endpoint sample requests attached to an incident as evidence.
+ *
+ * Three bounded sets are kept over the detection window: the K slowest requests (a min-heap on
+ * latency, so a request only costs a heap operation when it beats the fastest kept one), the K
+ * most recent errors of each status code (for at most maxStatusCodes codes, the least recently
+ * seen code is dropped first) and a uniform reservoir sample of K requests (Algorithm R). Each
+ * kept request is a small {@link Exemplar} with its body sample cut to bodyChars, so an endpoint
+ * holds at most 2 x (K x (2 + maxStatusCodes)) exemplars: the sets are started afresh every
+ * window, and the previous generation is kept until it has aged out so a snapshot always covers
+ * a full window.
+ */
+class ExemplarReservoir {
+
+    record Settings(int k, int maxStatusCodes, int bodyChars, long windowMillis) {
+    }
+
+    record Exemplar(String requestId, long recordedAt, String timestamp, int statusCode, long latencyMs,
+                    String query, String resBodySample) {
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requestId", requestId);
+            map.put("timestamp", timestamp);
+            map.put("statusCode", statusCode);
+            map.put("latencyMs", latencyMs);
+            if (query != null) map.put("query", query);
+            if (resBodySample != null) map.put("resBodySample", resBodySample);
+            return map;
+        }
+    }
+
+    private static final Comparator<Exemplar> FASTEST_FIRST = Comparator.comparingLong(Exemplar::latencyMs);
+    private static final Comparator<Exemplar> NEWEST_FIRST =
+            Comparator.comparingLong(Exemplar::recordedAt).reversed();
+
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final RandomGenerator random; // null: the recording thread's ThreadLocalRandom
+
+    // guarded by this
+    private Generation current;
+    private Generation previous;
+
+    ExemplarReservoir(Settings settings) {
+        this(settings, System::currentTimeMillis, null);
+    }
+
+    ExemplarReservoir(Settings settings, LongSupplier clock, RandomGenerator random) {
+        this.settings = new Settings(Math.max(1, settings.k()), Math.max(1, settings.maxStatusCodes()),
+                Math.max(0, settings.bodyChars()), Math.max(1, settings.windowMillis()));
+        this.clock = clock;
+        this.random = random;
+        this.current = new Generation(clock.getAsLong());
+    }
+
+    void record(ApiEvent event, boolean isError) {
+        long now = clock.getAsLong();
+        long latency = event.getLatencyMs() == null ? 0 : event.getLatencyMs();
+        synchronized (this) {
+            rotate(now);
+            Generation g = current;
+            g.seen++;
+            boolean slow = g.slowest.size() < settings.k() || latency > g.slowest.peek().latencyMs();
+            int slot = g.seen <= settings.k() ? (int) g.seen - 1 : (int) random().nextLong(g.seen);
+            boolean sampled = slot < settings.k();
+            if (!slow && !isError && !sampled) return;
+
+            Exemplar exemplar = exemplarOf(event, now, latency);
+            if (slow) {
+                if (g.slowest.size() == settings.k()) g.slowest.poll();
+                g.slowest.add(exemplar);
+            }
+            if (isError) {
+                ArrayDeque<Exemplar> errors = g.errors.remove(exemplar.statusCode());
+                if (errors == null) {
+                    errors = new ArrayDeque<>(settings.k());
+                    if (g.errors.size() == settings.maxStatusCodes()) {
+                        // insertion order is recency order, as a code is re-inserted on every error
+                        Iterator<Integer> stalest = g.errors.keySet().iterator();
+                        stalest.next();
+                        stalest.remove();
+                    }
+                }
+                if (errors.size() == settings.k()) errors.pollFirst();
+                errors.addLast(exemplar);
+                g.errors.put(exemplar.statusCode(), errors);
+            }
+            if (sampled) {
+                if (slot < g.sample.size()) g.sample.set(slot, exemplar);
+                else g.sample.add(exemplar);
+            }
+        }
+    }
+
+    /**
+     * The exemplars of the last window as evidence data: slowest requests slowest first, recent
+     * errors per status code newest first, and the uniform sample newest first. Empty when
+     * nothing was recorded in the window.
+     */
+    Map<String, Object> snapshot() {
+        long now = clock.getAsLong();
+        long since = now - settings.windowMillis();
+        List<Exemplar> slowest = new ArrayList<>();
+        Map<Integer, List<Exemplar>> errors = new TreeMap<>();
+        List<Exemplar> sample = new ArrayList<>();
+        synchronized (this) {
+            rotate(now);
+            for (Generation g : previous == null ? List.of(current) : List.of(previous, current)) {
+                g.slowest.forEach(e -> keep(slowest, e, since));
+                g.errors.forEach((code, list) -> list.forEach(
+                        e -> keep(errors.computeIfAbsent(code, c -> new ArrayList<>()), e, since)));
+                g.sample.forEach(e -> keep(sample, e, since));
+            }
+        }
+        if (slowest.isEmpty() && sample.isEmpty()) return Map.of();
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("windowMs", settings.windowMillis());
+        slowest.sort(FASTEST_FIRST.reversed());
+        data.put("slowestRequests", toMaps(slowest, settings.k()));
+        Map<String, Object> recentErrors = new LinkedHashMap<>();
+        errors.forEach((code, list) -> {
+            list.sort(NEWEST_FIRST);
+            recentErrors.put(String.valueOf(code), toMaps(list, settings.k()));
+        });
+        data.put("recentErrors", recentErrors);
+        sample.sort(NEWEST_FIRST);
+        data.put("sampledRequests", toMaps(sample, settings.k()));
+        return data;
+    }
+
+    private void rotate(long now) {
+        if (now - current.startedAt < settings.windowMillis()) return;
+        // an idle gap longer than a window leaves nothing worth keeping
+        previous = now - current.startedAt < 2 * settings.windowMillis() ? current : null;
+        current = new Generation(now);
+    }
+
+    private RandomGenerator random() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    private Exemplar exemplarOf(ApiEvent event, long now, long latency) {
+        return new Exemplar(event.getRequestId(), now,
+                event.getTimestamp() == null ? null : event.getTimestamp().toString(),
+                event.getStatusCode() == null ? 0 : event.getStatusCode(), latency,
+                truncate(event.getQuery()), truncate(event.getResBodySample()));
+    }
+
+    private String truncate(String s) {
+        if (s == null || settings.bodyChars() == 0) return null;
+        return s.length() <= settings.bodyChars() ? s : s.substring(0, settings.bodyChars());
+    }
+
+    private static void keep(List<Exemplar> into, Exemplar exemplar, long since) {
+        if (exemplar.recordedAt() >= since) into.add(exemplar);
+    }
+
+    private static List<Map<String, Object>> toMaps(List<Exemplar> exemplars, int k) {
+        List<Map<String, Object>> maps = new ArrayList<>(Math.min(k, exemplars.size()));
+        for (int i = 0; i < exemplars.size() && i < k; i++) {
+            maps.add(exemplars.get(i).toMap());
+        }
+        return maps;
+    }
+
+    private final class Generation {
+        final long startedAt;
+        final PriorityQueue<Exemplar> slowest = new PriorityQueue<>(settings.k(), FASTEST_FIRST);
+        // status code -> newest K errors; iteration order is least recently seen code first
+        final LinkedHashMap<Integer, ArrayDeque<Exemplar>> errors = new LinkedHashMap<>();
+        final List<Exemplar> sample = new ArrayList<>(settings.k());
+        long seen;
+
+        Generation(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
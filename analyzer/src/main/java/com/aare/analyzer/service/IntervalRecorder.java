@@ -0,0 +1,116 @@
+package com.aare.analyzer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, Recorder-style writer side of the endpoint metrics.
+ *
+ * Listener threads write into the active {@link Interval} (striped counters + atomic histogram)
+ * inside a WriterReaderPhaser critical section and never block. The first writer past an
+ * interval boundary CAS-installs the next interval and queues the finished one. A reader
+ * (holding {@link #readerLock()}) calls {@link #harvest(Consumer)}: it swaps the active interval
+ * out, flips the phaser to wait for in-flight writers, and hands every finished interval to the
+ * sink. An event is therefore either fully visible to the reader or not at all.
+ */
+class IntervalRecorder {
+
+    private final long intervalMillis;
+    private final LongSupplier clock;
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private final AtomicReference<Interval> active;
+    private final ConcurrentLinkedQueue<Interval> finished = new ConcurrentLinkedQueue<>();
+
+    IntervalRecorder(long intervalMillis, LongSupplier clock) {
+        this.intervalMillis = intervalMillis;
+        this.clock = clock;
+        this.active = new AtomicReference<>(new Interval(clock.getAsLong() / intervalMillis));
+    }
+
+    void record(long latency, boolean isError) {
+        long epoch = clock.getAsLong() / intervalMillis;
+        long phase = phaser.writerCriticalSectionEnter();
+        try {
+            Interval interval = active.get();
+            // late writers (clock behind the active interval) simply record into the newer one
+            while (interval.epoch < epoch) {
+                Interval next = new Interval(epoch);
+                if (active.compareAndSet(interval, next)) {
+                    finished.add(interval);
+                    interval = next;
+                } else {
+                    interval = active.get();
+                }
+            }
+            interval.record(latency, isError);
+        } finally {
+            phaser.writerCriticalSectionExit(phase);
+        }
+    }
+
+    ReentrantLock readerLock() {
+        return phaser.readerLock();
+    }
+
+    /**
+     * Hands everything recorded so far to {@code sink}. Caller holds the reader lock.
+     */
+    void harvest(Consumer<Interval> sink) {
+        List<Interval> toFold = new ArrayList<>();
+        // Collect before flipping: anything queued after this point may still be in use
+        // by writers that enter after the flip, and waits for the next harvest.
+        Interval queued;
+        while ((queued = finished.poll()) != null) {
+            toFold.add(queued);
+        }
+        Interval current = active.get();
+        if (active.compareAndSet(current, new Interval(current.epoch))) {
+            toFold.add(current);
+        }
+        // A failed CAS means a writer just rotated the interval; it is queued for next time.
+        phaser.flipPhase();
+
+        for (Interval interval : toFold) {
+            if (interval.requests.sum() > 0) {
+                sink.accept(interval);
+            }
+        }
+    }
+
+    long intervalMillis() {
+        return intervalMillis;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Written concurrently by listener threads for one interval epoch.
+     */
+    static class Interval {
+        final long epoch;
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicIntegerArray latencies = new AtomicIntegerArray(LatencyHistogram.maxIndex() + 1);
+
+        Interval(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void record(long latency, boolean isError) {
+            latencies.incrementAndGet(LatencyHistogram.indexFor(latency));
+            if (isError) {
+                errors.increment();
+            }
+            requests.increment();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.aare.analyzer.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Compact log-linear latency histogram (HdrHistogram-style bucketing), used as a mergeable
+ * quantile sketch.
+ *
+ * Values below 32ms are counted exactly; above that every power of two is split into
+ * 32 linear sub-buckets, so any reported quantile is within {@link #RELATIVE_ERROR} of the
+ * true one. The counts array only grows up to the highest bucket actually hit (about 220 slots
+ * for latencies up to a few seconds), so an idle or fast endpoint costs almost nothing.
+ *
+ * Merging is exact (bucket-wise addition), so sketches can be combined across time buckets
+ * and, via {@link #encode()}/{@link #decode(byte[])}, across analyzer instances. Counts are
+ * longs: a busy endpoint's 24h view can exceed 2^31 requests in one bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = Integer.MAX_VALUE;
+    public static final double RELATIVE_ERROR = 1.0 / SUB_BUCKETS;
+
+    private long[] counts = new long[0];
+    private long totalCount;
+
+    public void record(long value) {
+        int index = indexFor(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + SUB_BUCKETS));
+        }
+        counts[index]++;
+        totalCount++;
+    }
+
+    public void add(LatencyHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Adds counts recorded by concurrent writers into an atomic array laid out by {@link #indexFor}.
+     */
+    void add(AtomicIntegerArray atomicCounts) {
+        for (int i = 0; i < atomicCounts.length(); i++) {
+            int count = atomicCounts.get(i);
+            if (count == 0) continue;
+            if (i >= counts.length) {
+                counts = Arrays.copyOf(counts, i + SUB_BUCKETS);
+            }
+            counts[i] += count;
+            totalCount += count;
+        }
+    }
+
+    /**
+     * Number of buckets currently allocated; {@link #countAt} is valid below this.
+     */
+    int bucketCount() {
+        return counts.length;
+    }
+
+    long countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Bucket count needed to hold any recordable value.
+     */
+    static int maxIndex() {
+        return indexFor(MAX_VALUE);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Nearest-rank percentile (same definition the old sorted-list implementation used).
+     */
+    public long percentile(double p) {
+        return quantiles(p)[0];
+    }
+
+    /**
+     * Several nearest-rank percentiles from a single walk over the buckets.
+     * {@code ps} must be in ascending order.
+     */
+    public long[] quantiles(double... ps) {
+        long[] result = new long[ps.length];
+        if (totalCount == 0) return result;
+        int q = 0;
+        long seen = 0;
+        for (int i = 0; i < counts.length && q < ps.length; i++) {
+            seen += counts[i];
+            while (q < ps.length && seen >= rank(ps[q])) {
+                result[q++] = valueFor(i);
+            }
+        }
+        while (q < ps.length) {
+            result[q++] = valueFor(counts.length - 1);
+        }
+        return result;
+    }
+
+    private long rank(double p) {
+        return Math.max(1, (long) Math.ceil(p * totalCount));
+    }
+
+    /**
+     * Sparse wire form: (index delta, count) varint pairs for the non-empty buckets only.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int previous = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            writeVarint(out, i - previous);
+            writeVarint(out, counts[i]);
+            previous = i;
+        }
+        return out.toByteArray();
+    }
+
+    public static LatencyHistogram decode(byte[] encoded) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        int index = -1;
+        while (in.hasRemaining()) {
+            index += (int) readVarint(in);
+            long count = readVarint(in);
+            if (index >= histogram.counts.length) {
+                histogram.counts = Arrays.copyOf(histogram.counts, index + SUB_BUCKETS);
+            }
+            histogram.counts[index] += count;
+            histogram.totalCount += count;
+        }
+        return histogram;
+    }
+
+    // unsigned LEB128; int-sized values written by earlier versions decode unchanged
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    static int indexFor(long value) {
+        long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        if (v < SUB_BUCKETS) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Midpoint of the bucket's value range.
+     */
+    static long valueFor(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        int sub = index % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS + sub)) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
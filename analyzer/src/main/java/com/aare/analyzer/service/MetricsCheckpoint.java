@@ -0,0 +1,230 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.config.AnalysisShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Crash recovery for the in-memory endpoint windows.
+ *
+ * Every checkpoint interval the shards with new events since the previous checkpoint are written
+ * to one file each ({@link CheckpointFile}); unchanged shards keep their file. When ShardOwnership
+ * takes over a shard whose previous owner died (no handover), {@link #restore} loads the shard's
+ * checkpoint and replays the shard's events stored in api_event since the checkpoint, one index
+ * range scan per endpoint of the shard. Which of those the dead owner had consumed is not known:
+ * some are still queued (prefetched but unacked, or not yet delivered) and are redelivered, so the
+ * replayed requestIds are handed to the consumer, which skips their redeliveries. At most
+ * dedup-max-ids of the newest replayed events are remembered, for dedup-ttl-ms; the queue backlog
+ * is the newest part of the replay. Graceful restarts and moves don't need this: they hand the
+ * windows over through the database.
+ */
+@Service
+@Slf4j
+public class MetricsCheckpoint {
+
+    // Distinct (method, path) by skip scan of idx_api_event_method_path_ts_id: one index probe per
+    // endpoint instead of reading every event, so a shard finds its endpoints without a table scan
+    private static final String ENDPOINTS_SQL = """
+            WITH RECURSIVE endpoint AS (
+                (SELECT method, path FROM api_event ORDER BY method, path LIMIT 1)
+                UNION ALL
+                SELECT next.method, next.path FROM endpoint, LATERAL (
+                    SELECT method, path FROM api_event
+                    WHERE (method, path) > (endpoint.method, endpoint.path)
+                    ORDER BY method, path LIMIT 1) next
+            )
+            SELECT method, path FROM endpoint
+            """;
+    // an index range scan on idx_api_event_method_path_ts_id
+    private static final String REPLAY_SQL = """
+            SELECT request_id, status_code, latency_ms, timestamp FROM api_event
+            WHERE method = ? AND path = ? AND timestamp > ?
+            ORDER BY timestamp, id
+            """;
+
+    private final ApiEventConsumer apiEventConsumer;
+    private final AnalysisShards analysisShards;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final Path directory;
+
+    @Value("${aare.analyzer.checkpoint.max-replay-ms:3600000}")
+    private long maxReplayMs;
+    @Value("${aare.analyzer.checkpoint.dedup-max-ids:200000}")
+    private int dedupMaxIds = 200000;
+    @Value("${aare.analyzer.checkpoint.dedup-ttl-ms:600000}")
+    private long dedupTtlMs = 600000;
+
+    public MetricsCheckpoint(ApiEventConsumer apiEventConsumer, AnalysisShards analysisShards,
+                             DataSource dataSource, PlatformTransactionManager transactionManager,
+                             @Value("${aare.analyzer.checkpoint.dir:./data/checkpoints}") String directory,
+                             @Value("${aare.analyzer.checkpoint.replay-fetch-size:1000}") int fetchSize) {
+        this.apiEventConsumer = apiEventConsumer;
+        this.analysisShards = analysisShards;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Postgres only uses a server-side cursor when autocommit is off and a fetch size is set
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.directory = Paths.get(directory);
+    }
+
+    @Scheduled(fixedDelayString = "${aare.analyzer.checkpoint.interval-ms:60000}")
+    public void checkpoint() {
+        Map<String, EndpointMetrics> endpoints = apiEventConsumer.getEndpointMetrics();
+        Set<Integer> changedShards = new HashSet<>();
+        endpoints.forEach((endpointId, metrics) -> {
+            if (metrics.takeChanged()) {
+                changedShards.add(analysisShards.shardFor(endpointId));
+            }
+        });
+        if (changedShards.isEmpty()) return;
+
+        Map<Integer, Map<String, byte[]>> byShard = new HashMap<>();
+        endpoints.forEach((endpointId, metrics) -> {
+            int shard = analysisShards.shardFor(endpointId);
+            if (changedShards.contains(shard)) {
+                byShard.computeIfAbsent(shard, s -> new HashMap<>()).put(endpointId, metrics.encode());
+            }
+        });
+        long createdAt = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+            for (Map.Entry<Integer, Map<String, byte[]>> shard : byShard.entrySet()) {
+                CheckpointFile.write(fileFor(shard.getKey()), shard.getKey(), createdAt, shard.getValue());
+            }
+            log.debug("Checkpointed {} of {} analysis shards", byShard.size(), analysisShards.getShardCount());
+        } catch (IOException e) {
+            // the shards' endpoints may not have changed again by the next run; force a rewrite
+            endpoints.forEach((endpointId, metrics) -> {
+                if (changedShards.contains(analysisShards.shardFor(endpointId))) metrics.markChanged();
+            });
+            log.error("Failed to write analysis checkpoint to {}: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Restores a shard taken over from an owner that did not hand it over: loads the local
+     * checkpoint (if any) and replays the events stored since, marking them so their
+     * redeliveries are skipped. Called off the heartbeat thread, before the shard's listener starts.
+     *
+     * @return number of endpoints restored from the checkpoint
+     */
+    public int restore(int shard) {
+        long replayFrom = System.currentTimeMillis() - maxReplayMs;
+        int restored = 0;
+        Path file = fileFor(shard);
+        if (Files.exists(file)) {
+            try {
+                CheckpointFile.Contents contents = CheckpointFile.read(file);
+                contents.endpoints().forEach(apiEventConsumer::adoptEndpoint);
+                restored = contents.endpoints().size();
+                replayFrom = Math.max(replayFrom, contents.createdAtMillis());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable checkpoint {}: {}", file, e.getMessage());
+            }
+        }
+        long replayed = replay(shard, new Timestamp(replayFrom));
+        log.info("Restored analysis shard {}: {} endpoints from checkpoint, {} events replayed", shard, restored, replayed);
+        return restored;
+    }
+
+    /**
+     * Forgets a shard's checkpoint once the shard has moved to another instance.
+     */
+    public void discard(int shard) {
+        try {
+            Files.deleteIfExists(fileFor(shard));
+        } catch (IOException e) {
+            log.warn("Could not delete checkpoint for analysis shard {}: {}", shard, e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the events of each of the shard's endpoints in time order and rolls them up per
+     * recording interval before adding them, so only one open interval is held at a time. Only the
+     * requestIds of the newest dedup-max-ids events are kept for redelivery skipping.
+     */
+    private long replay(int shard, Timestamp from) {
+        PriorityQueue<ReplayedEvent> newest = new PriorityQueue<>(Comparator.comparingLong(ReplayedEvent::at));
+        long[] events = {0};
+        readOnlyTx.executeWithoutResult(status -> {
+            List<String[]> endpoints = new ArrayList<>();
+            jdbcTemplate.query(ENDPOINTS_SQL, (RowCallbackHandler) rs -> {
+                String method = rs.getString("method");
+                String path = rs.getString("path");
+                if (analysisShards.shardFor(apiEventConsumer.generateEndpointId(method, path)) == shard) {
+                    endpoints.add(new String[]{method, path});
+                }
+            });
+            for (String[] endpoint : endpoints) {
+                String endpointId = apiEventConsumer.generateEndpointId(endpoint[0], endpoint[1]);
+                ReplayInterval[] open = {null};
+                jdbcTemplate.query(REPLAY_SQL, (RowCallbackHandler) rs -> {
+                    long at = rs.getTimestamp("timestamp").getTime();
+                    long start = Math.floorDiv(at, EndpointMetrics.INTERVAL_MILLIS) * EndpointMetrics.INTERVAL_MILLIS;
+                    if (open[0] == null || open[0].startMillis != start) {
+                        if (open[0] != null) flush(endpointId, open[0]);
+                        open[0] = new ReplayInterval(start);
+                    }
+                    open[0].record(rs.getLong("latency_ms"), rs.getInt("status_code") >= 400);
+                    events[0]++;
+                    newest.add(new ReplayedEvent(at, rs.getString("request_id")));
+                    if (newest.size() > dedupMaxIds) newest.poll();
+                }, endpoint[0], endpoint[1], from);
+                if (open[0] != null) flush(endpointId, open[0]);
+            }
+        });
+        apiEventConsumer.skipRedeliveries(newest.stream().map(ReplayedEvent::requestId).toList(), dedupTtlMs);
+        return events[0];
+    }
+
+    private void flush(String endpointId, ReplayInterval interval) {
+        apiEventConsumer.adoptInterval(endpointId, interval.startMillis, interval.requests, interval.errors, interval.latencies);
+    }
+
+    private Path fileFor(int shard) {
+        return directory.resolve("shard-" + shard + ".ckpt");
+    }
+
+    private record ReplayedEvent(long at, String requestId) {
+    }
+
+    private static class ReplayInterval {
+        final long startMillis;
+        long requests;
+        long errors;
+        final LatencyHistogram latencies = new LatencyHistogram();
+
+        ReplayInterval(long startMillis) {
+            this.startMillis = startMillis;
+        }
+
+        void record(long latency, boolean isError) {
+            latencies.record(latency);
+            requests++;
+            if (isError) errors++;
+        }
+    }
+}
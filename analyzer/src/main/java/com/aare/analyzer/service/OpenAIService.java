@@ -7,160 +7,364 @@ import com.aare.analyzer.model.RcaStatus;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Non-blocking RCA client for the OpenAI chat completions API.
+ *
+ * Each call runs on a pooled connection ({@code openai.api.max-connections}) and is bounded by
+ * an overall deadline ({@code openai.api.timeout}) plus a read timeout per attempt. 429s, 5xxs and
+ * connection failures are retried with exponential backoff and jitter. With
+ * {@code openai.api.hedge-delay-ms} set, a second identical request is sent when the first has
+ * produced nothing after that delay, and whichever answers first wins.
+ *
+ * With {@code openai.api.stream} the response is consumed token by token; while it streams,
+ * {@link #streamRcaReport} emits GENERATING snapshots (at most every
+ * {@code openai.api.partial-interval-ms}) before the final report, so a partial RCA can be
+ * persisted and shown early. Failures never propagate: they end the stream with a FAILED report.
+ */
 @Service
 @Slf4j
 public class OpenAIService {
 
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(10);
+
+    public record Settings(String apiKey,
+                           String baseUrl,
+                           String model,
+                           boolean stream,
+                           Duration deadline,
+                           Duration readTimeout,
+                           int maxRetries,
+                           Duration retryBackoff,
+                           Duration hedgeDelay,
+                           Duration partialInterval,
+                           int maxConnections,
+                           int promptTokenBudget,
+                           int promptTopK) {
+    }
+
+    // Accumulated response content; done once the API has finished sending it
+    private record Accumulated(String text, boolean done) {
+    }
+
+    private final Settings settings;
+    private final ConnectionProvider connectionProvider;
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
     private final Tracer tracer;
+    private final MeterRegistry meterRegistry;
+    private final RcaCache rcaCache;
+    private final RcaPromptBuilder promptBuilder;
 
-    @Value("${openai.api.key:}")
-    private String openaiApiKey;
-
-    @Value("${openai.api.base-url:https://api.openai.com/v1}")
-    private String openaiApiBaseUrl;
-
-    @Value("${openai.api.model:gpt-3.5-turbo}")
-    private String openaiApiModel;
+    @Autowired
+    public OpenAIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, Tracer tracer, MeterRegistry meterRegistry,
+                         RcaCache rcaCache,
+                         @Value("${openai.api.key:}") String apiKey,
+                         @Value("${openai.api.base-url:https://api.openai.com/v1}") String baseUrl,
+                         @Value("${openai.api.model:gpt-3.5-turbo}") String model,
+                         @Value("${openai.api.stream:true}") boolean stream,
+                         @Value("${openai.api.timeout:60}") long timeoutSeconds,
+                         @Value("${openai.api.read-timeout-ms:20000}") long readTimeoutMs,
+                         @Value("${openai.api.max-retries:3}") int maxRetries,
+                         @Value("${openai.api.retry-backoff-ms:500}") long retryBackoffMs,
+                         @Value("${openai.api.hedge-delay-ms:0}") long hedgeDelayMs,
+                         @Value("${openai.api.partial-interval-ms:1000}") long partialIntervalMs,
+                         @Value("${openai.api.max-connections:16}") int maxConnections,
+                         @Value("${openai.api.prompt.token-budget:3000}") int promptTokenBudget,
+                         @Value("${openai.api.prompt.top-k:5}") int promptTopK) {
+        this(webClientBuilder, objectMapper, tracer, meterRegistry, rcaCache, new Settings(apiKey, baseUrl, model, stream,
+                Duration.ofSeconds(timeoutSeconds), Duration.ofMillis(readTimeoutMs), maxRetries,
+                Duration.ofMillis(retryBackoffMs), Duration.ofMillis(hedgeDelayMs), Duration.ofMillis(partialIntervalMs),
+                maxConnections, promptTokenBudget, promptTopK));
+    }
 
-    public OpenAIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, Tracer tracer) {
+    OpenAIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, Tracer tracer, MeterRegistry meterRegistry,
+                  RcaCache rcaCache, Settings settings) {
+        this.settings = settings;
+        this.rcaCache = rcaCache;
         this.objectMapper = objectMapper;
         this.tracer = tracer;
-        this.webClient = webClientBuilder
-                .baseUrl(openaiApiBaseUrl)
+        this.meterRegistry = meterRegistry;
+        this.promptBuilder = new RcaPromptBuilder(objectMapper, settings.promptTokenBudget(), settings.promptTopK());
+        this.connectionProvider = ConnectionProvider.builder("openai")
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireTimeout(settings.deadline())
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .responseTimeout(settings.readTimeout());
+        this.webClient = webClientBuilder.clone()
+                .baseUrl(settings.baseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeaders(headers -> {
+                    if (isEnabled()) headers.setBearerAuth(settings.apiKey());
+                })
                 .build();
     }
 
-    public RcaReport generateRcaReport(Incident incident, List<IncidentEvidence> evidences) {
-        Span span = tracer.spanBuilder("generateRcaReport").startSpan();
-        try (Scope scope = span.makeCurrent()) {
-            RcaReport rcaReport = new RcaReport();
-            rcaReport.setIncidentId(incident.getId());
-            rcaReport.setCreatedAt(LocalDateTime.now());
-            rcaReport.setUpdatedAt(LocalDateTime.now());
-
-            if (openaiApiKey == null || openaiApiKey.trim().isEmpty()) {
-                log.warn("OPENAI_API_KEY is not set. Skipping AI RCA report generation for incident {}", incident.getId());
-                rcaReport.setStatus(RcaStatus.SKIPPED_NO_KEY);
-                rcaReport.setRootCauseSummary("AI RCA skipped: OpenAI API key not configured.");
-                rcaReport.setLikelyTrigger("N/A");
-                rcaReport.setRecommendedFixes(List.of("Configure OPENAI_API_KEY to enable AI RCA."));
-                rcaReport.setConfidence(BigDecimal.ZERO);
-                return rcaReport;
-            }
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Whether reports are generated by the API at all (otherwise they are marked SKIPPED_NO_KEY).
+     */
+    public boolean isEnabled() {
+        return settings.apiKey() != null && !settings.apiKey().trim().isEmpty();
+    }
+
+    /**
+     * The final report only, reused from the cache when possible.
+     */
+    public Mono<RcaReport> generateRcaReport(Incident incident, List<IncidentEvidence> evidences) {
+        return reuseCachedReport(incident, evidences)
+                .map(Mono::just)
+                .orElseGet(() -> streamRcaReport(incident, evidences).last());
+    }
 
+    /**
+     * A copy of the cached report of an earlier incident with the same signature, marked as
+     * reused, or empty when a new analysis is needed.
+     */
+    public Optional<RcaReport> reuseCachedReport(Incident incident, List<IncidentEvidence> evidences) {
+        String signature = RcaSignature.of(incident, evidences);
+        return rcaCache.lookup(signature).map(cached -> {
+            log.info("Reusing RCA report {} for incident {} (same signature)", cached.getId(), incident.getId());
+            RcaReport rcaReport = newReport(incident, LocalDateTime.now());
+            rcaReport.setStatus(RcaStatus.GENERATED);
+            rcaReport.setRootCauseSummary(cached.getRootCauseSummary());
+            rcaReport.setLikelyTrigger(cached.getLikelyTrigger());
+            rcaReport.setRecommendedFixes(cached.getRecommendedFixes() == null ? null : new ArrayList<>(cached.getRecommendedFixes()));
+            rcaReport.setAffectedEndpoints(cached.getAffectedEndpoints() == null ? null : new ArrayList<>(cached.getAffectedEndpoints()));
+            rcaReport.setSeverityReason(cached.getSeverityReason());
+            rcaReport.setRollbackVsPatchRecommendation(cached.getRollbackVsPatchRecommendation());
+            rcaReport.setConfidence(cached.getConfidence());
+            rcaReport.setSignature(signature);
+            rcaReport.setReusedFromReportId(cached.getId());
+            return rcaReport;
+        });
+    }
+
+    /**
+     * Zero or more GENERATING snapshots followed by exactly one final report (GENERATED, FAILED
+     * or SKIPPED_NO_KEY), always from a new API call; see {@link #reuseCachedReport} for the cache.
+     */
+    public Flux<RcaReport> streamRcaReport(Incident incident, List<IncidentEvidence> evidences) {
+        return streamRcaReport(incident, List.of(), evidences);
+    }
+
+    /**
+     * One analysis for a group of correlated incidents: {@code incident} is the primary one the
+     * report is created for, {@code related} the others, and {@code evidences} those of all of
+     * them. Group reports are not cached, their signature covering only the primary incident.
+     */
+    public Flux<RcaReport> streamRcaReport(Incident incident, List<Incident> related, List<IncidentEvidence> evidences) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        if (!isEnabled()) {
+            log.warn("OPENAI_API_KEY is not set. Skipping AI RCA report generation for incident {}", incident.getId());
+            RcaReport rcaReport = newReport(incident, createdAt);
+            rcaReport.setStatus(RcaStatus.SKIPPED_NO_KEY);
+            rcaReport.setRootCauseSummary("AI RCA skipped: OpenAI API key not configured.");
+            rcaReport.setLikelyTrigger("N/A");
+            rcaReport.setRecommendedFixes(List.of("Configure OPENAI_API_KEY to enable AI RCA."));
+            rcaReport.setConfidence(BigDecimal.ZERO);
+            return Flux.just(rcaReport);
+        }
+
+        return Flux.defer(() -> {
+            Span span = tracer.spanBuilder("generateRcaReport").startSpan();
+            String prompt;
             try {
-                String prompt = buildPrompt(incident, evidences);
-                log.debug("OpenAI Prompt for incident {}:\n{}", incident.getId(), prompt);
-
-                Map<String, Object> requestBody = Map.of(
-                        "model", openaiApiModel,
-                        "messages", List.of(
-                                Map.of("role", "system", "content",
-                                        "You are an expert API reliability engineer. Analyze the provided incident data and generate a root cause analysis report in JSON format."),
-                                Map.of("role", "user", "content", prompt)
-                        ),
-                        "response_format", Map.of("type", "json_object"),
-                        "temperature", 0.7
-                );
-
-                String response = webClient.post()
-                        .uri("/chat/completions")
-                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + openaiApiKey)
-                        .body(BodyInserters.fromValue(requestBody))
-                        .retrieve()
-                        .bodyToMono(String.class)
-                        .block();
-
-                log.debug("OpenAI Response for incident {}:\n{}", incident.getId(), response);
-                return parseOpenAIResponse(rcaReport, incident, response);
-
-            } catch (Exception e) {
-                span.recordException(e);
-                log.error("Failed to generate AI RCA report for incident {}: {}", incident.getId(), e.getMessage(), e);
-                rcaReport.setStatus(RcaStatus.FAILED);
-                rcaReport.setRootCauseSummary("Failed to generate AI RCA report due to internal error: " + e.getMessage());
-                rcaReport.setConfidence(BigDecimal.ZERO);
-                return rcaReport;
+                prompt = promptBuilder.build(incident, related, evidences);
+            } catch (JsonProcessingException e) {
+                return Flux.error(e);
             }
-        } finally {
-            span.end();
+            log.debug("OpenAI Prompt for incident {}:\n{}", incident.getId(), prompt);
+            meterRegistry.summary("aare.rca.prompt.tokens")
+                    .record(RcaPromptBuilder.estimateTokens(RcaPromptBuilder.SYSTEM_PROMPT) + RcaPromptBuilder.estimateTokens(prompt));
+            String signature = related.isEmpty() ? RcaSignature.of(incident, evidences) : null;
+
+            Map<String, Object> requestBody = Map.of(
+                    "model", settings.model(),
+                    "messages", List.of(
+                            Map.of("role", "system", "content", RcaPromptBuilder.SYSTEM_PROMPT),
+                            Map.of("role", "user", "content", prompt)
+                    ),
+                    "response_format", Map.of("type", "json_object"),
+                    "temperature", 0.7,
+                    "stream", settings.stream()
+            );
+
+            // One timer shared by every timeout window, so it bounds the call as a whole
+            Mono<Long> deadline = Mono.delay(settings.deadline()).cache();
+            AtomicLong lastPartialNanos = new AtomicLong(System.nanoTime());
+            return hedged(() -> completion(requestBody))
+                    .retryWhen(Retry.backoff(settings.maxRetries(), settings.retryBackoff())
+                            .maxBackoff(MAX_RETRY_BACKOFF)
+                            .jitter(0.5)
+                            .filter(OpenAIService::isRetryable)
+                            .doBeforeRetry(retry -> log.warn("Retrying OpenAI call for incident {} (attempt {}): {}",
+                                    incident.getId(), retry.totalRetries() + 1, retry.failure().toString()))
+                            .onRetryExhaustedThrow((spec, retry) -> retry.failure()))
+                    .timeout(deadline, item -> deadline)
+                    .filter(acc -> acc.done() || partialDue(lastPartialNanos))
+                    .map(acc -> acc.done()
+                            ? finalReport(incident, createdAt, acc.text(), signature)
+                            : partialReport(incident, createdAt, acc.text()))
+                    .onErrorResume(e -> {
+                        span.recordException(e);
+                        log.error("Failed to generate AI RCA report for incident {}: {}", incident.getId(), e.toString(), e);
+                        RcaReport rcaReport = newReport(incident, createdAt);
+                        rcaReport.setStatus(RcaStatus.FAILED);
+                        rcaReport.setRootCauseSummary("Failed to generate AI RCA report due to internal error: " + e.getMessage());
+                        rcaReport.setConfidence(BigDecimal.ZERO);
+                        return Flux.just(rcaReport);
+                    })
+                    .doFinally(signal -> span.end());
+        });
+    }
+
+    private Flux<Accumulated> hedged(Supplier<Flux<Accumulated>> call) {
+        if (settings.hedgeDelay().isZero() || settings.hedgeDelay().isNegative()) {
+            return Flux.defer(call);
         }
+        Flux<Accumulated> hedge = Mono.delay(settings.hedgeDelay())
+                .doOnNext(tick -> meterRegistry.counter("aare.rca.openai.hedged").increment())
+                .thenMany(Flux.defer(call));
+        return Flux.firstWithValue(Flux.defer(call), hedge);
     }
 
-    private String buildPrompt(Incident incident, List<IncidentEvidence> evidences) throws JsonProcessingException {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("You are an expert API reliability engineer. Analyze the provided incident data and evidence to generate a root cause analysis report.\n");
-        prompt.append("Focus on the most critical information, such as metrics deltas, schema diffs, and sample errors. The goal is to provide a concise and actionable RCA.\n\n");
-
-        prompt.append("Incident Summary:\n");
-        prompt.append("- Incident ID: ").append(incident.getId()).append("\n");
-        prompt.append("- Endpoint: ").append(incident.getEndpointId()).append("\n");
-        prompt.append("- Type: ").append(incident.getType()).append("\n");
-        prompt.append("- Severity: ").append(incident.getSeverity()).append("\n");
-        prompt.append("- Detected At: ").append(incident.getDetectedAt()).append("\n");
-        prompt.append("- Status: ").append(incident.getStatus()).append("\n\n");
-
-        if (!evidences.isEmpty()) {
-            prompt.append("Detailed Evidence:\n");
-            for (IncidentEvidence evidence : evidences) {
-                prompt.append("--- Evidence Type: ").append(evidence.getEvidenceType())
-                        .append(" (Created: ").append(evidence.getCreatedAt()).append(") ---\n");
-                if (evidence.getData() != null) {
-                    prompt.append(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(evidence.getData()))
-                            .append("\n");
-                }
-            }
-        } else {
-            prompt.append("No specific evidence found for this incident.\n");
+    /**
+     * One request; emits the content accumulated so far after every received chunk, and a last
+     * element with done=true.
+     */
+    private Flux<Accumulated> completion(Map<String, Object> requestBody) {
+        WebClient.ResponseSpec response = webClient.post()
+                .uri("/chat/completions")
+                .bodyValue(requestBody)
+                .retrieve();
+        if (!settings.stream()) {
+            return response.bodyToMono(String.class)
+                    .map(body -> new Accumulated(messageContent(body), true))
+                    .flux();
         }
-        prompt.append("\n");
-
-        prompt.append("Based on this information, provide a Root Cause Analysis in the following JSON format:\n");
-        prompt.append("```json\n");
-        prompt.append("{\n");
-        prompt.append("  \"root_cause_summary\": \"A concise summary of the root cause.\",\n");
-        prompt.append("  \"likely_trigger\": \"The most probable trigger event or condition.\",\n");
-        prompt.append("  \"affected_endpoints\": [\"list\", \"of\", \"affected\", \"endpoints\"],\n");
-        prompt.append("  \"severity_reason\": \"Explanation of why this incident has the assigned severity.\",\n");
-        prompt.append("  \"recommended_fixes\": [\"Ordered list of recommended actions to fix and prevent recurrence\"],\n");
-        prompt.append("  \"rollback_vs_patch_recommendation\": \"ROLLBACK\" | \"PATCH\" | \"N/A\",\n");
-        prompt.append("  \"confidence\": \"number (0-1, confidence in the analysis)\"\n");
-        prompt.append("}\n");
-        prompt.append("```\n");
-        prompt.append("Ensure the output is valid JSON and strictly adheres to the schema. Do not include any additional text outside the JSON object.");
-        return prompt.toString();
-    }
-
-    private RcaReport parseOpenAIResponse(RcaReport rcaReport, Incident incident, String response) throws JsonProcessingException {
-        JsonNode rootNode = objectMapper.readTree(response);
-        JsonNode messageNode = rootNode.path("choices").get(0).path("message").path("content");
+        return response.bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .map(ServerSentEvent::data)
+                .filter(Objects::nonNull)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .map(data -> new Accumulated(deltaContent(data), false))
+                .concatWith(Mono.just(new Accumulated("", true)))
+                .scan((acc, next) -> new Accumulated(acc.text() + next.text(), next.done()));
+    }
 
+    private boolean partialDue(AtomicLong lastPartialNanos) {
+        long now = System.nanoTime();
+        long last = lastPartialNanos.get();
+        return now - last >= settings.partialInterval().toNanos() && lastPartialNanos.compareAndSet(last, now);
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        if (e instanceof WebClientRequestException || e instanceof IOException
+                || e instanceof io.netty.handler.timeout.TimeoutException) {
+            return true;
+        }
+        // hedged calls fail with every attempt's error attached
+        for (Throwable suppressed : e.getSuppressed()) {
+            if (isRetryable(suppressed)) return true;
+        }
+        return e.getCause() != null && e.getCause() != e && isRetryable(e.getCause());
+    }
+
+    private RcaReport newReport(Incident incident, LocalDateTime createdAt) {
+        RcaReport rcaReport = new RcaReport();
+        rcaReport.setIncidentId(incident.getId());
+        rcaReport.setCreatedAt(createdAt);
+        rcaReport.setUpdatedAt(LocalDateTime.now());
+        return rcaReport;
+    }
+
+    private RcaReport partialReport(Incident incident, LocalDateTime createdAt, String content) {
+        RcaReport rcaReport = newReport(incident, createdAt);
+        rcaReport.setStatus(RcaStatus.GENERATING);
+        rcaReport.setRootCauseSummary(partialStringField(content, "root_cause_summary"));
+        rcaReport.setLikelyTrigger(partialStringField(content, "likely_trigger"));
+        rcaReport.setConfidence(BigDecimal.ZERO);
+        return rcaReport;
+    }
+
+    private RcaReport finalReport(Incident incident, LocalDateTime createdAt, String content, String signature) {
+        log.debug("OpenAI Response for incident {}:\n{}", incident.getId(), content);
+        try {
+            RcaReport rcaReport = parseRcaContent(newReport(incident, createdAt), incident, content);
+            rcaReport.setSignature(signature);
+            return rcaReport;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("OpenAI response content is not valid JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private String messageContent(String response) {
+        JsonNode messageNode;
+        try {
+            messageNode = objectMapper.readTree(response).path("choices").path(0).path("message").path("content");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("OpenAI response is not valid JSON: " + e.getOriginalMessage(), e);
+        }
         if (messageNode.isMissingNode() || !messageNode.isTextual()) {
             throw new RuntimeException("OpenAI response did not contain expected message content.");
         }
+        return messageNode.asText();
+    }
+
+    private String deltaContent(String chunk) {
+        try {
+            return objectMapper.readTree(chunk).path("choices").path(0).path("delta").path("content").asText("");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("OpenAI stream chunk is not valid JSON: " + e.getOriginalMessage(), e);
+        }
+    }
 
-        String jsonContent = messageNode.asText();
+    private RcaReport parseRcaContent(RcaReport rcaReport, Incident incident, String content) throws JsonProcessingException {
+        String jsonContent = content.trim();
         if (jsonContent.startsWith("```json") && jsonContent.endsWith("```")) {
             jsonContent = jsonContent.substring(7, jsonContent.length() - 3).trim();
         }
@@ -203,4 +407,39 @@ public class OpenAIService {
         rcaReport.setUpdatedAt(LocalDateTime.now());
         return rcaReport;
     }
+
+    /**
+     * Value of a top-level string field in possibly incomplete JSON, as far as it has arrived;
+     * null if the value has not started yet.
+     */
+    static String partialStringField(String json, String field) {
+        int key = json.indexOf("\"" + field + "\"");
+        if (key < 0) return null;
+        int i = key + field.length() + 2;
+        while (i < json.length() && (Character.isWhitespace(json.charAt(i)) || json.charAt(i) == ':')) i++;
+        if (i >= json.length() || json.charAt(i) != '"') return null;
+        StringBuilder value = new StringBuilder();
+        for (i++; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') break;
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i >= json.length()) break;
+            char escaped = json.charAt(i);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 't' -> value.append('\t');
+                case 'r' -> value.append('\r');
+                case 'u' -> {
+                    if (i + 4 >= json.length()) return value.toString();
+                    value.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        return value.toString();
+    }
 }
@@ -0,0 +1,277 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentStatus;
+import com.aare.analyzer.model.IncidentType;
+import com.aare.analyzer.repository.IncidentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of the incidents that are still open, keyed by (endpoint, type).
+ *
+ * Loaded from the DB at startup and kept current on create (by the analyzer itself) and on
+ * ack / resolve (via incident.status events from incident-api), so the dedup check behind every
+ * firing detector is a map lookup. A condition that keeps firing extends the open incident's
+ * last_detected_at instead of opening a new one; those timestamps are written in one batch per
+ * tick by {@link #flush()}. A periodic resync covers status events missed while disconnected,
+ * and an acquired shard's incidents are loaded before its events are consumed, since they were
+ * opened by the previous owner.
+ */
+@Service
+@Slf4j
+public class OpenIncidentIndex {
+
+    static final Set<IncidentStatus> ACTIVE_STATUSES = EnumSet.of(
+            IncidentStatus.OPEN, IncidentStatus.ACKNOWLEDGED, IncidentStatus.INVESTIGATING, IncidentStatus.MITIGATED);
+
+    private static final String EXTEND_SQL = """
+            UPDATE incident SET last_detected_at = ?
+            WHERE id = ? AND (last_detected_at IS NULL OR last_detected_at < ?)
+            """;
+
+    private final IncidentRepository incidentRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentMap<IncidentKey, Entry> open = new ConcurrentHashMap<>();
+    // stamps entries on claim / open, so a DB read can tell which entries are newer than itself
+    private final AtomicLong sequence = new AtomicLong();
+
+    public OpenIncidentIndex(IncidentRepository incidentRepository, JdbcTemplate jdbcTemplate) {
+        this.incidentRepository = incidentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        try {
+            resync();
+            log.info("Loaded {} open incidents into the index", open.size());
+        } catch (Exception e) {
+            // the next resync fills it in; until then a duplicate incident is possible, not a missed one
+            log.warn("Could not load open incidents, starting with an empty index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the DB. Entries whose incident is still being created are kept, as
+     * are detection times not yet flushed and entries claimed or opened after the query started.
+     */
+    @Scheduled(fixedDelayString = "${aare.analyzer.incidents.resync-ms:300000}",
+            initialDelayString = "${aare.analyzer.incidents.resync-ms:300000}")
+    public void resync() {
+        long queryStarted = sequence.incrementAndGet();
+        Map<IncidentKey, Incident> active = activeIncidents(endpointId -> true);
+        open.entrySet().removeIf(e -> e.getValue().incidentId != null && e.getValue().stamp < queryStarted
+                && !active.containsKey(e.getKey()));
+        merge(active, queryStarted);
+    }
+
+    /**
+     * Adds the active incidents of the given endpoints, e.g. those of a shard taken over from
+     * another instance, which opened them. Returns how many were found.
+     */
+    public int loadEndpoints(Predicate<String> endpoints) {
+        long queryStarted = sequence.incrementAndGet();
+        Map<IncidentKey, Incident> active = activeIncidents(endpoints);
+        merge(active, queryStarted);
+        return active.size();
+    }
+
+    private Map<IncidentKey, Incident> activeIncidents(Predicate<String> endpoints) {
+        Map<IncidentKey, Incident> active = new HashMap<>();
+        for (Incident incident : incidentRepository.findByStatusIn(ACTIVE_STATUSES)) {
+            if (!endpoints.test(incident.getEndpointId())) continue;
+            // several open incidents per key can exist from before the index; track the newest
+            active.merge(keyOf(incident), incident,
+                    (a, b) -> a.getDetectedAt() != null && b.getDetectedAt() != null
+                            && a.getDetectedAt().isAfter(b.getDetectedAt()) ? a : b);
+        }
+        return active;
+    }
+
+    private void merge(Map<IncidentKey, Incident> active, long queryStarted) {
+        active.forEach((key, incident) -> open.compute(key, (k, current) -> {
+            if (current != null && incident.getId().equals(current.incidentId)) {
+                current.status = incident.getStatus();
+                return current;
+            }
+            if (current != null && current.stamp >= queryStarted) {
+                return current; // claimed or opened here while the query ran
+            }
+            return Entry.of(incident, sequence.incrementAndGet());
+        }));
+    }
+
+    /**
+     * Claims (endpoint, type) for a new incident. Returns false when one is already open, in
+     * which case that incident is extended to {@code detectedAt} instead. A successful claim must
+     * be followed by {@link #opened} or {@link #abandon}.
+     */
+    public boolean tryOpen(String endpointId, IncidentType type, LocalDateTime detectedAt) {
+        Entry claim = new Entry(null, IncidentStatus.OPEN, detectedAt, sequence.incrementAndGet());
+        Entry existing = open.putIfAbsent(new IncidentKey(endpointId, type), claim);
+        if (existing == null) {
+            return true;
+        }
+        existing.extend(detectedAt);
+        return false;
+    }
+
+    public void opened(String endpointId, IncidentType type, UUID incidentId) {
+        Entry entry = open.get(new IncidentKey(endpointId, type));
+        if (entry != null) {
+            entry.incidentId = incidentId;
+            entry.stamp = sequence.incrementAndGet();
+        }
+    }
+
+    /**
+     * Releases a claim whose incident could not be created.
+     */
+    public void abandon(String endpointId, IncidentType type) {
+        open.computeIfPresent(new IncidentKey(endpointId, type), (k, e) -> e.incidentId == null ? null : e);
+    }
+
+    /**
+     * Adds an existing open incident to the index.
+     */
+    public void track(Incident incident) {
+        open.put(keyOf(incident), Entry.of(incident, sequence.incrementAndGet()));
+    }
+
+    public Optional<UUID> find(String endpointId, IncidentType type) {
+        Entry entry = open.get(new IncidentKey(endpointId, type));
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.incidentId);
+    }
+
+    public Optional<IncidentStatus> statusOf(String endpointId, IncidentType type) {
+        Entry entry = open.get(new IncidentKey(endpointId, type));
+        return entry == null ? Optional.empty() : Optional.of(entry.status);
+    }
+
+    public int size() {
+        return open.size();
+    }
+
+    /**
+     * Applies an ack / resolve made outside the analyzer. Resolved and closed incidents leave the
+     * index, so the next detection opens a new one.
+     */
+    public void statusChanged(UUID incidentId, String endpointId, IncidentType type, IncidentStatus status) {
+        IncidentKey key = new IncidentKey(endpointId, type);
+        if (ACTIVE_STATUSES.contains(status)) {
+            open.computeIfPresent(key, (k, e) -> {
+                if (incidentId.equals(e.incidentId)) e.status = status;
+                return e;
+            });
+        } else {
+            open.computeIfPresent(key, (k, e) -> incidentId.equals(e.incidentId) ? null : e);
+        }
+    }
+
+    @RabbitListener(queues = "#{incidentStatusQueue.name}")
+    public void receiveStatusChange(Map<String, Object> event) {
+        try {
+            statusChanged(UUID.fromString(String.valueOf(event.get("incidentId"))),
+                    String.valueOf(event.get("endpointId")),
+                    IncidentType.valueOf(String.valueOf(event.get("type"))),
+                    IncidentStatus.valueOf(String.valueOf(event.get("status"))));
+        } catch (IllegalArgumentException e) {
+            // not worth a requeue loop; the periodic resync picks the change up anyway
+            log.warn("Ignoring malformed incident status event {}: {}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the detection times of incidents extended since the last flush, in one batch.
+     * Failed entries are retried on the next flush.
+     */
+    public int flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Entry> flushed = new ArrayList<>();
+        for (Entry entry : open.values()) {
+            LocalDateTime at = entry.takeExtended();
+            if (at == null) continue;
+            Timestamp ts = Timestamp.valueOf(at);
+            batch.add(new Object[]{ts, entry.incidentId, ts});
+            flushed.add(entry);
+        }
+        if (batch.isEmpty()) return 0;
+        try {
+            jdbcTemplate.batchUpdate(EXTEND_SQL, batch);
+            return batch.size();
+        } catch (Exception e) {
+            flushed.forEach(Entry::markExtended);
+            log.error("Failed to record detection times of {} open incidents, will retry: {}",
+                    batch.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private static IncidentKey keyOf(Incident incident) {
+        return new IncidentKey(incident.getEndpointId(), incident.getType());
+    }
+
+    private record IncidentKey(String endpointId, IncidentType type) {
+    }
+
+    private static final class Entry {
+        // null while the incident is being created
+        volatile UUID incidentId;
+        volatile IncidentStatus status;
+        // sequence number of the last claim / open / load
+        volatile long stamp;
+        private LocalDateTime lastDetectedAt;
+        private boolean extended;
+
+        Entry(UUID incidentId, IncidentStatus status, LocalDateTime lastDetectedAt, long stamp) {
+            this.incidentId = incidentId;
+            this.status = status;
+            this.lastDetectedAt = lastDetectedAt;
+            this.stamp = stamp;
+        }
+
+        static Entry of(Incident incident, long stamp) {
+            LocalDateTime last = incident.getLastDetectedAt() != null
+                    ? incident.getLastDetectedAt() : incident.getDetectedAt();
+            return new Entry(incident.getId(), incident.getStatus(), last, stamp);
+        }
+
+        synchronized void extend(LocalDateTime at) {
+            if (lastDetectedAt == null || at.isAfter(lastDetectedAt)) {
+                lastDetectedAt = at;
+                extended = true;
+            }
+        }
+
+        synchronized LocalDateTime takeExtended() {
+            if (!extended || incidentId == null) return null;
+            extended = false;
+            return lastDetectedAt;
+        }
+
+        synchronized void markExtended() {
+            extended = true;
+        }
+    }
+}
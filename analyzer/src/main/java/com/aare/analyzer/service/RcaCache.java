@@ -0,0 +1,116 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import com.aare.analyzer.repository.RcaReportRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Recent AI-generated RCA reports by incident signature ({@link RcaSignature}), so a recurring
+ * failure reuses the earlier analysis instead of paying for another LLM call.
+ *
+ * Entries expire {@code aare.rca.cache.ttl-ms} after the report was generated; beyond
+ * {@code aare.rca.cache.max-entries} the least recently used entry is evicted. The cache needs no
+ * table of its own: generated reports carry their signature in rca_report, and the most recent
+ * ones are loaded back at startup.
+ */
+@Service
+@Slf4j
+public class RcaCache {
+
+    private final RcaReportRepository rcaReportRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aare.rca.cache.enabled:true}")
+    private boolean enabled = true;
+    @Value("${aare.rca.cache.ttl-ms:21600000}")
+    private long ttlMs = 21_600_000;
+    @Value("${aare.rca.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, RcaReport> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RcaReport> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public RcaCache(RcaReportRepository rcaReportRepository, MeterRegistry meterRegistry) {
+        this.rcaReportRepository = rcaReportRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) return;
+        try {
+            List<RcaReport> recent = rcaReportRepository
+                    .findBySignatureIsNotNullAndReusedFromReportIdIsNullAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+                            RcaStatus.GENERATED, LocalDateTime.now().minus(Duration.ofMillis(ttlMs)),
+                            PageRequest.of(0, maxEntries));
+            synchronized (entries) {
+                // oldest first, so the newest end up most recently used and win for a repeated signature
+                for (int i = recent.size() - 1; i >= 0; i--) {
+                    entries.put(recent.get(i).getSignature(), recent.get(i));
+                }
+            }
+            log.info("Loaded {} cached RCA reports", recent.size());
+        } catch (Exception e) {
+            log.warn("Could not load cached RCA reports, starting empty: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The cached report for this signature, if one was generated within the TTL.
+     */
+    public Optional<RcaReport> lookup(String signature) {
+        if (!enabled || signature == null) return Optional.empty();
+        RcaReport report;
+        synchronized (entries) {
+            report = entries.get(signature);
+            if (report != null && isExpired(report)) {
+                entries.remove(signature);
+                report = null;
+            }
+        }
+        meterRegistry.counter("aare.rca.cache", "result", report != null ? "hit" : "miss").increment();
+        return Optional.ofNullable(report);
+    }
+
+    /**
+     * Caches a persisted report that came from the API. Reused, partial and failed reports are ignored.
+     */
+    public void remember(RcaReport report) {
+        if (!enabled || report.getSignature() == null || report.getId() == null
+                || report.getStatus() != RcaStatus.GENERATED || report.getReusedFromReportId() != null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(report.getSignature(), report);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean isExpired(RcaReport report) {
+        LocalDateTime generatedAt = report.getUpdatedAt() != null ? report.getUpdatedAt() : report.getCreatedAt();
+        return generatedAt == null || generatedAt.isBefore(LocalDateTime.now().minus(Duration.ofMillis(ttlMs)));
+    }
+}
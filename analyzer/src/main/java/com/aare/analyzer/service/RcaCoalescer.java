@@ -0,0 +1,68 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.config.RabbitConfig;
+import com.aare.analyzer.model.Incident;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Groups incidents opened close together on the same service, so a failing shared dependency
+ * costs one RCA request instead of one per endpoint.
+ *
+ * Within a service, incidents are ordered by detection time and a new group starts whenever
+ * the gap to the previous incident exceeds the window or the group is full. Each group's first
+ * element is its primary incident: the most severe, then the earliest.
+ */
+final class RcaCoalescer {
+
+    static final Comparator<Incident> PRIMARY_FIRST = Comparator
+            .comparingInt((Incident i) -> RabbitConfig.rcaPriorityOf(i.getSeverity())).reversed()
+            .thenComparing(Incident::getDetectedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final Comparator<Incident> BY_DETECTION =
+            Comparator.comparing(Incident::getDetectedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private RcaCoalescer() {
+    }
+
+    static List<List<Incident>> group(List<Incident> incidents, Function<String, String> serviceOf,
+                                      Duration window, int maxGroupSize) {
+        Map<String, List<Incident>> byService = new LinkedHashMap<>();
+        for (Incident incident : incidents) {
+            byService.computeIfAbsent(serviceOf.apply(incident.getEndpointId()), k -> new ArrayList<>()).add(incident);
+        }
+
+        List<List<Incident>> groups = new ArrayList<>();
+        for (List<Incident> serviceIncidents : byService.values()) {
+            serviceIncidents.sort(BY_DETECTION);
+            List<Incident> group = new ArrayList<>();
+            LocalDateTime previous = null;
+            for (Incident incident : serviceIncidents) {
+                LocalDateTime at = incident.getDetectedAt();
+                boolean gap = previous != null && at != null && Duration.between(previous, at).compareTo(window) > 0;
+                if (!group.isEmpty() && (gap || group.size() >= Math.max(1, maxGroupSize))) {
+                    groups.add(primaryFirst(group));
+                    group = new ArrayList<>();
+                }
+                group.add(incident);
+                if (at != null) previous = at;
+            }
+            if (!group.isEmpty()) {
+                groups.add(primaryFirst(group));
+            }
+        }
+        return groups;
+    }
+
+    private static List<Incident> primaryFirst(List<Incident> group) {
+        group.sort(PRIMARY_FIRST);
+        return group;
+    }
+}
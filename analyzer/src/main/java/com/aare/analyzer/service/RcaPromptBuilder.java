@@ -0,0 +1,235 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EvidenceType;
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentEvidence;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Assembles the RCA prompt within a token budget.
+ *
+ * The role, instructions and output schema form one constant system message, identical for
+ * every call (so it can be served from the provider's prompt cache). The user message holds the
+ * incident summary and the evidence: ranked (schema diffs, then metrics, traces, logs), each item
+ * compacted (current/baseline pairs become deltas, lists keep their first K entries, long
+ * strings are cut) and serialized without pretty-printing. Items are added in rank order while
+ * they fit the budget; the rest are dropped with a note. Tokens are estimated at 4 chars each.
+ * For a group of incidents, every member is listed and each evidence item is tagged with the
+ * endpoint it belongs to. The group is described by how it was formed: a correlation cluster
+ * (members linked to the primary as their parent) may span services, a coalesced group is one
+ * service in one interval.
+ */
+final class RcaPromptBuilder {
+
+    static final String SYSTEM_PROMPT = """
+            You are an expert API reliability engineer. Analyze the incident data and evidence and produce a concise, \
+            actionable root cause analysis. Focus on metric deltas, schema diffs and sample errors.
+            Evidence is compact JSON; "<name>Delta" entries give current, baseline and their ratio, lists may be cut to \
+            their most relevant entries.
+            Respond with only a JSON object of this form:
+            {"root_cause_summary": "concise summary of the root cause",
+             "likely_trigger": "most probable trigger event or condition",
+             "affected_endpoints": ["affected endpoints"],
+             "severity_reason": "why the incident has its severity",
+             "recommended_fixes": ["ordered actions to fix and prevent recurrence"],
+             "rollback_vs_patch_recommendation": "ROLLBACK" | "PATCH" | "N/A",
+             "confidence": number between 0 and 1}""";
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_STRING_CHARS = 300;
+    private static final int MAX_DEPTH = 3;
+    private static final MathContext PRECISION = new MathContext(4);
+
+    private static final Comparator<IncidentEvidence> BY_RELEVANCE = Comparator
+            .comparingInt((IncidentEvidence e) -> rank(e.getEvidenceType()))
+            .thenComparing(IncidentEvidence::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final ObjectMapper objectMapper;
+    private final int tokenBudget;
+    private final int topK;
+
+    RcaPromptBuilder(ObjectMapper objectMapper, int tokenBudget, int topK) {
+        this.objectMapper = objectMapper;
+        this.tokenBudget = tokenBudget;
+        this.topK = Math.max(1, topK);
+    }
+
+    /**
+     * Builds the user message; together with {@link #SYSTEM_PROMPT} it stays within the budget
+     * unless the incident summary alone exceeds it.
+     */
+    String build(Incident incident, List<IncidentEvidence> evidences) throws JsonProcessingException {
+        return build(incident, List.of(), evidences);
+    }
+
+    String build(Incident incident, List<Incident> related, List<IncidentEvidence> evidences)
+            throws JsonProcessingException {
+        StringBuilder prompt = new StringBuilder(1024);
+        appendIncident(prompt.append("Incident: "), incident);
+        Map<UUID, String> endpoints = new HashMap<>();
+        if (!related.isEmpty()) {
+            boolean correlated = related.stream().allMatch(other -> incident.getId().equals(other.getParentIncidentId()));
+            prompt.append(correlated
+                    ? "Incidents whose error or latency signals moved together with this one, possibly on other services; find the common root cause:\n"
+                    : "Incidents on the same service in the same interval; find the common root cause:\n");
+            endpoints.put(incident.getId(), incident.getEndpointId());
+            for (Incident other : related) {
+                appendIncident(prompt.append("- "), other);
+                endpoints.put(other.getId(), other.getEndpointId());
+            }
+        }
+        if (evidences.isEmpty()) {
+            return prompt.append("No evidence recorded.").toString();
+        }
+
+        int budgetChars = tokenBudget * CHARS_PER_TOKEN - SYSTEM_PROMPT.length();
+        List<IncidentEvidence> ranked = new ArrayList<>(evidences);
+        ranked.sort(BY_RELEVANCE);
+        prompt.append("Evidence (most relevant first):\n");
+        int omitted = 0;
+        for (IncidentEvidence evidence : ranked) {
+            String endpoint = endpoints.get(evidence.getIncidentId());
+            String line = line(endpoint, evidence, topK);
+            if (prompt.length() + line.length() > budgetChars && topK > 1) {
+                line = line(endpoint, evidence, 1); // keep the item, with fewer exemplars
+            }
+            if (prompt.length() + line.length() > budgetChars) {
+                omitted++;
+                continue;
+            }
+            prompt.append(line);
+        }
+        if (omitted > 0) {
+            prompt.append("(").append(omitted).append(" less relevant evidence items omitted to fit the prompt budget)\n");
+        }
+        return prompt.toString();
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static void appendIncident(StringBuilder prompt, Incident incident) {
+        prompt.append("endpoint=").append(incident.getEndpointId())
+                .append(" type=").append(incident.getType())
+                .append(" severity=").append(incident.getSeverity())
+                .append(" detectedAt=").append(incident.getDetectedAt())
+                .append(" status=").append(incident.getStatus()).append('\n');
+    }
+
+    private String line(String endpoint, IncidentEvidence evidence, int k) throws JsonProcessingException {
+        Object data = evidence.getData() == null ? Map.of() : compactMap(evidence.getData(), k, 0);
+        return (endpoint != null ? endpoint + " " : "") + evidence.getEvidenceType() + " "
+                + objectMapper.writeValueAsString(data) + '\n';
+    }
+
+    static Map<String, Object> compactMap(Map<String, Object> data, int k, int depth) {
+        Map<String, Object> compact = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith("baseline") && data.containsKey("current" + key.substring("baseline".length()))) {
+                continue; // folded into the current value's delta
+            }
+            if (key.startsWith("current")) {
+                String metric = key.substring("current".length());
+                Object baseline = data.get("baseline" + metric);
+                if (baseline != null) {
+                    compact.put(decapitalize(metric) + "Delta", delta(entry.getValue(), baseline, k, depth));
+                    continue;
+                }
+            }
+            compact.put(key, compactValue(entry.getValue(), k, depth));
+        }
+        return compact;
+    }
+
+    /**
+     * Current vs baseline: [current, baseline, ratio] for numbers, per-position differences for
+     * histograms (number lists of equal length).
+     */
+    private static Object delta(Object current, Object baseline, int k, int depth) {
+        if (current instanceof Number c && baseline instanceof Number b) {
+            double ratio = b.doubleValue() == 0 ? 0 : c.doubleValue() / b.doubleValue();
+            return List.of(round(c), round(b), round(ratio));
+        }
+        if (current instanceof List<?> c && baseline instanceof List<?> b && c.size() == b.size()
+                && c.stream().allMatch(Number.class::isInstance) && b.stream().allMatch(Number.class::isInstance)) {
+            List<Object> diff = new ArrayList<>(c.size());
+            for (int i = 0; i < c.size(); i++) {
+                diff.add(round(((Number) c.get(i)).doubleValue() - ((Number) b.get(i)).doubleValue()));
+            }
+            return diff;
+        }
+        return List.of(compactValue(current, k, depth), compactValue(baseline, k, depth));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object compactValue(Object value, int k, int depth) {
+        if (value instanceof Number n) {
+            return round(n);
+        }
+        if (value instanceof CharSequence s) {
+            return s.length() <= MAX_STRING_CHARS ? s.toString()
+                    : s.subSequence(0, MAX_STRING_CHARS) + "...(" + (s.length() - MAX_STRING_CHARS) + " more chars)";
+        }
+        if (depth >= MAX_DEPTH && (value instanceof Map<?, ?> || value instanceof List<?>)) {
+            return "...";
+        }
+        if (value instanceof Map<?, ?> map) {
+            return compactMap((Map<String, Object>) map, k, depth + 1);
+        }
+        if (value instanceof List<?> list) {
+            // exemplar lists are recorded most relevant first; number lists (histograms) are kept whole
+            boolean numeric = list.stream().allMatch(Number.class::isInstance);
+            int keep = numeric ? list.size() : Math.min(k, list.size());
+            List<Object> compact = new ArrayList<>(keep + 1);
+            for (int i = 0; i < keep; i++) {
+                compact.add(compactValue(list.get(i), k, depth + 1));
+            }
+            if (keep < list.size()) {
+                compact.add("+" + (list.size() - keep) + " more");
+            }
+            return compact;
+        }
+        return value;
+    }
+
+    private static Object round(Number n) {
+        if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+            return n;
+        }
+        return round(n.doubleValue());
+    }
+
+    private static Object round(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) return String.valueOf(d);
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) return (long) d;
+        return new BigDecimal(d).round(PRECISION).stripTrailingZeros();
+    }
+
+    private static String decapitalize(String s) {
+        return s.isEmpty() ? s : Character.toLowerCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static int rank(EvidenceType type) {
+        if (type == null) return 5;
+        return switch (type) {
+            case SCHEMA_DIFF -> 0;
+            case METRICS -> 1;
+            case TRACE -> 2;
+            case LOGS -> 3;
+            case OTHER -> 4;
+        };
+    }
+}
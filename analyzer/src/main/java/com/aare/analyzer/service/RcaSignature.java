@@ -0,0 +1,115 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EvidenceType;
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentEvidence;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Normalized signature of an incident, used to recognize a recurrence of the same failure.
+ *
+ * Built from the endpoint, the incident type, the metric evidence reduced to coarse buckets
+ * (every "currentX" / "baselineX" pair becomes log2 of its ratio, fractions become tenths), the
+ * set of error status codes among the sample requests (exemplars) and a fingerprint of every other
+ * evidence item with ids and timestamps removed. Volume, threshold and timing fields are left out,
+ * as are the sampled requests themselves, so two error spikes of similar shape on the same
+ * endpoint hash to the same value.
+ */
+final class RcaSignature {
+
+    private static final String CURRENT = "current";
+    private static final String BASELINE = "baseline";
+    private static final int MAX_RATIO_BUCKET = 8;
+    // values that differ between occurrences of the same failure
+    private static final Pattern VOLATILE_KEY = Pattern.compile("^(id|time|timestamp)$|.*(Id|At|Time|Timestamp|Ms|Requests)$");
+
+    private RcaSignature() {
+    }
+
+    static String of(Incident incident, List<IncidentEvidence> evidences) {
+        StringBuilder canonical = new StringBuilder()
+                .append(incident.getEndpointId()).append('|')
+                .append(incident.getType());
+
+        List<String> parts = new ArrayList<>();
+        for (IncidentEvidence evidence : evidences) {
+            if (evidence.getData() == null) continue;
+            if (evidence.getEvidenceType() == EvidenceType.METRICS) {
+                parts.add("M:" + metricBuckets(evidence.getData()));
+            } else if (evidence.getEvidenceType() == EvidenceType.LOGS) {
+                parts.add("L:" + errorStatuses(evidence.getData()));
+            } else {
+                parts.add(evidence.getEvidenceType() + ":" + sha256(canonicalize(evidence.getData())));
+            }
+        }
+        parts.sort(null);
+        parts.forEach(part -> canonical.append('|').append(part));
+        return sha256(canonical.toString());
+    }
+
+    static String metricBuckets(Map<String, Object> data) {
+        Map<String, Integer> buckets = new TreeMap<>();
+        data.forEach((key, value) -> {
+            if (key.startsWith(CURRENT) && value instanceof Number current) {
+                String metric = key.substring(CURRENT.length());
+                if (data.get(BASELINE + metric) instanceof Number baseline) {
+                    buckets.put(metric, ratioBucket(current.doubleValue(), baseline.doubleValue()));
+                }
+            } else if (key.endsWith("Fraction") && value instanceof Number fraction) {
+                buckets.put(key, (int) Math.floor(Math.min(1, Math.max(0, fraction.doubleValue())) * 10));
+            }
+        });
+        return buckets.toString();
+    }
+
+    /**
+     * The exemplars' error status codes; which requests were sampled differs on every occurrence.
+     */
+    static String errorStatuses(Map<String, Object> data) {
+        return data.get("recentErrors") instanceof Map<?, ?> errors
+                ? new TreeSet<>(errors.keySet().stream().map(String::valueOf).toList()).toString()
+                : "[]";
+    }
+
+    private static int ratioBucket(double current, double baseline) {
+        double ratio = (current + 1e-9) / (Math.abs(baseline) + 1e-9);
+        long bucket = Math.round(Math.log(ratio) / Math.log(2));
+        return (int) Math.max(-MAX_RATIO_BUCKET, Math.min(MAX_RATIO_BUCKET, bucket));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String canonicalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            StringBuilder out = new StringBuilder("{");
+            new TreeMap<>((Map<String, Object>) map).forEach((key, nested) -> {
+                if (VOLATILE_KEY.matcher(key).matches()) return;
+                out.append(key).append('=').append(canonicalize(nested)).append(',');
+            });
+            return out.append('}').toString();
+        }
+        if (value instanceof List<?> list) {
+            StringBuilder out = new StringBuilder("[");
+            list.forEach(item -> out.append(canonicalize(item)).append(','));
+            return out.append(']').toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
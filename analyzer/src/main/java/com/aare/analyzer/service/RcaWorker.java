@@ -0,0 +1,262 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.config.RabbitConfig;
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentEvidence;
+import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import com.aare.analyzer.repository.IncidentEvidenceRepository;
+import com.aare.analyzer.repository.IncidentRepository;
+import com.aare.analyzer.repository.RcaReportRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates RCA reports for the jobs queued on rca.requested.priority.queue by incident creation.
+ *
+ * Runs on its own listener pool ({@link RabbitConfig#RCA_CONTAINER_FACTORY}, bounded by
+ * aare.rca.worker.concurrency), so a slow LLM only ever delays other RCA jobs. The queue is a
+ * priority queue keyed by severity; with a prefetch of one, the next free worker always takes
+ * the most severe waiting job. Calls to the API are throttled by a token bucket whose rate is
+ * the configured global rate divided by the number of live analyzer instances.
+ *
+ * Every incident already has a RULE_BASED report from {@link RuleBasedRcaEngine}; the LLM only
+ * enriches it. Without an API key, or when the LLM call fails, the rule-based report stays.
+ *
+ * A job may cover a group of correlated incidents (see ApiEventConsumer): they are analyzed in
+ * one call, the report is created for the primary incident and every other member gets a copy
+ * linked to it through reused_from_report_id.
+ */
+@Service
+@Slf4j
+public class RcaWorker {
+
+    private final IncidentRepository incidentRepository;
+    private final IncidentEvidenceRepository incidentEvidenceRepository;
+    private final RcaReportRepository rcaReportRepository;
+    private final OpenAIService openAIService;
+    private final RuleBasedRcaEngine ruleBasedRcaEngine;
+    private final RcaCache rcaCache;
+    private final ShardOwnership shardOwnership;
+    private final Tracer tracer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aare.rca.worker.rate-per-minute:30}")
+    private double ratePerMinute = 30;
+    @Value("${aare.rca.worker.burst:5}")
+    private int burst = 5;
+    private volatile TokenBucket rateLimiter;
+
+    public RcaWorker(IncidentRepository incidentRepository,
+                     IncidentEvidenceRepository incidentEvidenceRepository,
+                     RcaReportRepository rcaReportRepository,
+                     OpenAIService openAIService,
+                     RuleBasedRcaEngine ruleBasedRcaEngine,
+                     RcaCache rcaCache,
+                     ShardOwnership shardOwnership,
+                     Tracer tracer,
+                     MeterRegistry meterRegistry) {
+        this.incidentRepository = incidentRepository;
+        this.incidentEvidenceRepository = incidentEvidenceRepository;
+        this.rcaReportRepository = rcaReportRepository;
+        this.openAIService = openAIService;
+        this.ruleBasedRcaEngine = ruleBasedRcaEngine;
+        this.rcaCache = rcaCache;
+        this.shardOwnership = shardOwnership;
+        this.tracer = tracer;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @RabbitListener(id = "rcaWorker", queues = RabbitConfig.RCA_REQUESTED_QUEUE,
+            containerFactory = RabbitConfig.RCA_CONTAINER_FACTORY)
+    public void generateRca(Map<String, Object> job) {
+        UUID incidentId = UUID.fromString(String.valueOf(job.get("incidentId")));
+        String severity = String.valueOf(job.get("severity"));
+        if (job.get("requestedAt") instanceof Number requestedAt) {
+            meterRegistry.timer("aare.rca.queue.wait", "severity", severity)
+                    .record(Math.max(0, System.currentTimeMillis() - requestedAt.longValue()), TimeUnit.MILLISECONDS);
+        }
+
+        Span span = tracer.spanBuilder("generateRca").setSpanKind(SpanKind.CONSUMER).startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            // redelivered after a crash: keep a finished report, continue over a provisional one
+            Optional<RcaReport> existing = rcaReportRepository.findFirstByIncidentId(incidentId);
+            if (existing.isPresent() && !isProvisional(existing.get().getStatus())) {
+                log.debug("RCA report for incident {} already exists, skipping job.", incidentId);
+                return;
+            }
+            Optional<Incident> incidentOpt = incidentRepository.findById(incidentId);
+            if (incidentOpt.isEmpty()) {
+                log.warn("Incident {} not found for RCA generation.", incidentId);
+                return;
+            }
+
+            Incident incident = incidentOpt.get();
+            List<Incident> related = relatedIncidents(job, incidentId);
+            List<IncidentEvidence> evidences;
+            if (related.isEmpty()) {
+                evidences = incidentEvidenceRepository.findByIncidentId(incidentId);
+            } else {
+                List<UUID> ids = new ArrayList<>();
+                ids.add(incidentId);
+                related.forEach(r -> ids.add(r.getId()));
+                evidences = incidentEvidenceRepository.findByIncidentIdIn(ids);
+            }
+            long start = System.nanoTime();
+
+            // normally stored at incident creation; rebuilt if that failed or a partial LLM report replaced it
+            RcaReport preliminary = existing.filter(r -> r.getStatus() == RcaStatus.RULE_BASED).orElseGet(() -> {
+                RcaReport ruleBased = ruleBasedRcaEngine.analyze(incident, evidences);
+                ruleBased.setId(existing.map(RcaReport::getId).orElse(null));
+                return rcaReportRepository.save(ruleBased);
+            });
+
+            // A recurrence of an already analyzed failure costs no API call (and no rate-limit token)
+            Optional<RcaReport> reused = related.isEmpty()
+                    ? openAIService.reuseCachedReport(incident, evidences) : Optional.empty();
+            Flux<RcaReport> reports;
+            if (reused.isPresent()) {
+                reports = Flux.just(reused.get());
+            } else if (openAIService.isEnabled()) {
+                long waitedNanos = rateLimiter().acquire(permitsPerSecond());
+                meterRegistry.timer("aare.rca.rate-limit.wait").record(waitedNanos, TimeUnit.NANOSECONDS);
+                reports = related.isEmpty()
+                        ? openAIService.streamRcaReport(incident, evidences)
+                        : openAIService.streamRcaReport(incident, related, evidences);
+            } else {
+                reports = Flux.empty();
+            }
+
+            // Snapshots are saved over the same row on this worker thread (never on the HTTP event
+            // loop), so the report is readable while still GENERATING
+            UUID reportId = preliminary.getId();
+            RcaReport rcaReport = preliminary;
+            for (RcaReport snapshot : reports.toIterable()) {
+                if (snapshot.getStatus() == RcaStatus.FAILED) {
+                    log.warn("AI RCA failed for incident {}, keeping the rule-based report.", incidentId);
+                    if (rcaReport != preliminary) {
+                        preliminary.setId(reportId);
+                        rcaReport = rcaReportRepository.save(preliminary);
+                    }
+                    break;
+                }
+                if (snapshot.getStatus() == RcaStatus.GENERATING) {
+                    fillFrom(preliminary, snapshot);
+                }
+                snapshot.setId(reportId);
+                rcaReport = rcaReportRepository.save(snapshot);
+                reportId = rcaReport.getId();
+            }
+            rcaCache.remember(rcaReport);
+            if (rcaReport.getStatus() == RcaStatus.GENERATED) {
+                linkToMembers(rcaReport, related);
+            }
+            meterRegistry.timer("aare.rca.generation", "severity", severity, "status", String.valueOf(rcaReport.getStatus()),
+                            "reused", String.valueOf(rcaReport.getReusedFromReportId() != null))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            log.info("RCA report generated for incident {}. Status: {}", incidentId, rcaReport.getStatus());
+        } catch (InterruptedException e) {
+            // shutting down while throttled: hand the job back to the queue
+            Thread.currentThread().interrupt();
+            throw new ImmediateRequeueAmqpException("Interrupted while waiting for RCA rate limit", e);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            log.error("Error generating RCA for incident {}: {}", incidentId, e.getMessage(), e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private List<Incident> relatedIncidents(Map<String, Object> job, UUID primaryId) {
+        if (!(job.get("incidentIds") instanceof List<?> ids) || ids.size() < 2) {
+            return List.of();
+        }
+        List<UUID> others = ids.stream().map(id -> UUID.fromString(String.valueOf(id)))
+                .filter(id -> !id.equals(primaryId)).toList();
+        return incidentRepository.findAllById(others);
+    }
+
+    /**
+     * Gives each other member of the group a copy of the group's report, unless it already has a
+     * final report of its own.
+     */
+    private void linkToMembers(RcaReport report, List<Incident> members) {
+        for (Incident member : members) {
+            Optional<RcaReport> existing = rcaReportRepository.findFirstByIncidentId(member.getId());
+            if (existing.isPresent() && !isProvisional(existing.get().getStatus())) continue;
+            RcaReport copy = new RcaReport();
+            copy.setId(existing.map(RcaReport::getId).orElse(null));
+            copy.setIncidentId(member.getId());
+            copy.setStatus(RcaStatus.GENERATED);
+            copy.setRootCauseSummary(report.getRootCauseSummary());
+            copy.setLikelyTrigger(report.getLikelyTrigger());
+            copy.setRecommendedFixes(report.getRecommendedFixes() == null ? null : new ArrayList<>(report.getRecommendedFixes()));
+            copy.setAffectedEndpoints(report.getAffectedEndpoints() == null ? null : new ArrayList<>(report.getAffectedEndpoints()));
+            copy.setSeverityReason(report.getSeverityReason());
+            copy.setRollbackVsPatchRecommendation(report.getRollbackVsPatchRecommendation());
+            copy.setConfidence(report.getConfidence());
+            copy.setReusedFromReportId(report.getReusedFromReportId() != null ? report.getReusedFromReportId() : report.getId());
+            copy.setCreatedAt(report.getCreatedAt());
+            copy.setUpdatedAt(LocalDateTime.now());
+            rcaReportRepository.save(copy);
+        }
+    }
+
+    private static boolean isProvisional(RcaStatus status) {
+        return status == RcaStatus.RULE_BASED || status == RcaStatus.GENERATING;
+    }
+
+    /**
+     * Shows the rule-based findings for whatever the LLM has not produced yet.
+     */
+    private static void fillFrom(RcaReport preliminary, RcaReport partial) {
+        if (partial.getRootCauseSummary() == null) partial.setRootCauseSummary(preliminary.getRootCauseSummary());
+        if (partial.getLikelyTrigger() == null) partial.setLikelyTrigger(preliminary.getLikelyTrigger());
+        if (partial.getRecommendedFixes() == null) partial.setRecommendedFixes(preliminary.getRecommendedFixes());
+        if (partial.getAffectedEndpoints() == null) partial.setAffectedEndpoints(preliminary.getAffectedEndpoints());
+        if (partial.getSeverityReason() == null) partial.setSeverityReason(preliminary.getSeverityReason());
+        if (partial.getRollbackVsPatchRecommendation() == null) {
+            partial.setRollbackVsPatchRecommendation(preliminary.getRollbackVsPatchRecommendation());
+        }
+        if (partial.getConfidence() == null || partial.getConfidence().signum() == 0) {
+            partial.setConfidence(preliminary.getConfidence());
+        }
+    }
+
+    private double permitsPerSecond() {
+        return ratePerMinute / 60.0 / shardOwnership.liveMemberCount();
+    }
+
+    private TokenBucket rateLimiter() {
+        TokenBucket limiter = rateLimiter;
+        if (limiter == null) {
+            synchronized (this) {
+                limiter = rateLimiter;
+                if (limiter == null) {
+                    limiter = new TokenBucket(Math.max(1, burst));
+                    rateLimiter = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+}
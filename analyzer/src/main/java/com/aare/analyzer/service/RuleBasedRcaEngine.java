@@ -0,0 +1,179 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EvidenceType;
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentEvidence;
+import com.aare.analyzer.model.IncidentType;
+import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Deterministic RCA from the incident's evidence, with no external calls.
+ *
+ * Produces the first RULE_BASED report as soon as an incident is opened (and the only one when no
+ * LLM is configured); the LLM, when available, replaces it later with a richer analysis. The
+ * signals are the ratios of current to baseline metrics in the METRICS evidence plus the
+ * presence of a schema change; the first matching rule wins.
+ */
+@Service
+public class RuleBasedRcaEngine {
+
+    private static final double ELEVATED = 2.0;
+    // below this a doubled error rate is noise (0.1% -> 0.2%), not a failure mode
+    private static final double MIN_ERROR_RATE_PCT = 1.0;
+
+    record Signals(IncidentType type,
+                   double errorRatio,
+                   double currentErrorRatePct,
+                   double latencyRatio,
+                   double slowFraction,
+                   double trafficRatio,
+                   boolean schemaChanged) {
+
+        boolean errorsElevated() {
+            return type == IncidentType.ERROR_SPIKE || (errorRatio >= ELEVATED && currentErrorRatePct >= MIN_ERROR_RATE_PCT);
+        }
+
+        boolean latencyElevated() {
+            return type == IncidentType.LATENCY_REGRESSION || latencyRatio >= 1.5 || slowFraction > 0.05;
+        }
+    }
+
+    record Finding(String summary, String trigger, List<String> fixes, String rollbackVsPatch, double confidence) {
+    }
+
+    private record Rule(String name, Predicate<Signals> applies, Function<Signals, Finding> finding) {
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("contract-break-with-errors", s -> s.schemaChanged() && s.errorsElevated(), s -> new Finding(
+                    "The response contract changed at the same time as errors rose: a breaking change was most likely deployed.",
+                    "Schema change of the endpoint's response",
+                    List.of("Roll back the deploy that changed the response schema",
+                            "Restore removed or renamed fields, or version the endpoint",
+                            "Add consumer contract tests to the pipeline"),
+                    "ROLLBACK", 0.8)),
+            new Rule("contract-break", Signals::schemaChanged, s -> new Finding(
+                    "The response contract changed; clients that depend on the old shape may break even though errors have not risen yet.",
+                    "Schema change of the endpoint's response",
+                    List.of("Confirm the schema change was intended and announced to consumers",
+                            "Keep the old fields until consumers have migrated"),
+                    "PATCH", 0.6)),
+            new Rule("timeouts", s -> s.latencyElevated() && s.errorsElevated(), s -> new Finding(
+                    "Responses slowed down and errors rose together: requests are most likely timing out on a slow or saturated dependency.",
+                    "Dependency slowdown causing timeouts",
+                    List.of("Check latency and error rate of the endpoint's downstream dependencies in the traces",
+                            "Check connection / thread pool saturation",
+                            "Review timeout and retry settings to avoid retry storms"),
+                    "N/A", 0.6)),
+            new Rule("downstream-slowdown", s -> s.latencyElevated() && !s.errorsElevated(), s -> new Finding(
+                    "Latency regressed without a change in errors: a downstream dependency or resource saturation is slowing responses.",
+                    "Slower downstream dependency or resource saturation",
+                    List.of("Compare downstream span durations in the traces against the baseline",
+                            "Check CPU, GC and connection pool utilization of the service",
+                            "Look for recent config or data-volume changes affecting query cost"),
+                    "PATCH", 0.5)),
+            new Rule("hard-failure", s -> s.errorsElevated() && s.currentErrorRatePct() >= 50, s -> new Finding(
+                    "Most requests are failing: the endpoint is hard down, likely from a bad deploy or an unavailable hard dependency.",
+                    "Bad deploy or hard dependency outage",
+                    List.of("Roll back the most recent deploy of the service",
+                            "Check availability of the endpoint's required dependencies"),
+                    "ROLLBACK", 0.6)),
+            new Rule("partial-failure", Signals::errorsElevated, s -> new Finding(
+                    "A subset of requests is failing: likely an input-dependent bug or an intermittently failing dependency.",
+                    "Input-dependent bug or flaky dependency",
+                    List.of("Group the failing requests by status code and input to find the common factor",
+                            "Check error logs and traces of failing requests"),
+                    "PATCH", 0.4)),
+            new Rule("traffic-stopped", s -> s.type() == IncidentType.TRAFFIC_DROP && s.trafficRatio() < 0.1, s -> new Finding(
+                    "Traffic has almost stopped reaching the endpoint: requests are being lost upstream (routing, gateway or client outage).",
+                    "Upstream routing or client outage",
+                    List.of("Check gateway / load balancer routing and health checks",
+                            "Check the main clients of the endpoint for failures or a recent release"),
+                    "N/A", 0.4)),
+            new Rule("traffic-drop", s -> s.type() == IncidentType.TRAFFIC_DROP, s -> new Finding(
+                    "Traffic is well below the usual level for this time of week: an upstream client issue or an unusual usage pattern.",
+                    "Reduced upstream demand or partial routing failure",
+                    List.of("Check whether a client release or campaign ended",
+                            "Check for partial routing failures upstream"),
+                    "N/A", 0.3))
+    );
+
+    public RcaReport analyze(Incident incident, List<IncidentEvidence> evidences) {
+        Signals signals = signalsOf(incident, evidences);
+        Rule rule = RULES.stream().filter(r -> r.applies().test(signals)).findFirst().orElse(null);
+        Finding finding = rule != null ? rule.finding().apply(signals) : new Finding(
+                "No known failure pattern matched the evidence.",
+                "Unknown",
+                List.of("Inspect the incident evidence and traces manually"),
+                "N/A", 0.1);
+
+        RcaReport rcaReport = new RcaReport();
+        rcaReport.setIncidentId(incident.getId());
+        rcaReport.setStatus(RcaStatus.RULE_BASED);
+        rcaReport.setRootCauseSummary(finding.summary());
+        rcaReport.setLikelyTrigger(finding.trigger());
+        rcaReport.setRecommendedFixes(finding.fixes());
+        rcaReport.setAffectedEndpoints(incident.getEndpointId() == null ? List.of() : List.of(incident.getEndpointId()));
+        rcaReport.setSeverityReason("Rule " + (rule != null ? rule.name() : "none") + " matched " + describe(signals)
+                + "; severity " + incident.getSeverity() + " is the default for " + incident.getType() + ".");
+        rcaReport.setRollbackVsPatchRecommendation(finding.rollbackVsPatch());
+        rcaReport.setConfidence(BigDecimal.valueOf(finding.confidence()));
+        rcaReport.setCreatedAt(LocalDateTime.now());
+        rcaReport.setUpdatedAt(rcaReport.getCreatedAt());
+        return rcaReport;
+    }
+
+    static Signals signalsOf(Incident incident, List<IncidentEvidence> evidences) {
+        double errorRatio = 0, currentErrorRate = 0, latencyRatio = 0, slowFraction = 0, trafficRatio = 1;
+        boolean schemaChanged = incident.getType() == IncidentType.CONTRACT_BREAK;
+        for (IncidentEvidence evidence : evidences) {
+            if (evidence.getEvidenceType() == EvidenceType.SCHEMA_DIFF) {
+                schemaChanged = true;
+            }
+            Map<String, Object> data = evidence.getData();
+            if (evidence.getEvidenceType() != EvidenceType.METRICS || data == null) continue;
+            errorRatio = Math.max(errorRatio, ratio(data, "ErrorRate"));
+            currentErrorRate = Math.max(currentErrorRate, number(data.get("currentErrorRate")));
+            latencyRatio = Math.max(latencyRatio, ratio(data, "P95Latency"));
+            slowFraction = Math.max(slowFraction, number(data.get("slowRequestFraction")));
+            if (data.containsKey("currentRequestCount")) {
+                trafficRatio = Math.min(trafficRatio, ratio(data, "RequestCount"));
+            }
+        }
+        return new Signals(incident.getType(), errorRatio, currentErrorRate, latencyRatio, slowFraction, trafficRatio,
+                schemaChanged);
+    }
+
+    private static double ratio(Map<String, Object> data, String metric) {
+        Object current = data.get("current" + metric);
+        Object baseline = data.get("baseline" + metric);
+        if (!(current instanceof Number) || !(baseline instanceof Number)) return 0;
+        double b = ((Number) baseline).doubleValue();
+        return b <= 0 ? (((Number) current).doubleValue() > 0 ? Double.POSITIVE_INFINITY : 0)
+                : ((Number) current).doubleValue() / b;
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private static String describe(Signals s) {
+        List<String> parts = new ArrayList<>();
+        if (s.errorRatio() > 0) parts.add(String.format("error rate x%.1f of baseline", s.errorRatio()));
+        if (s.latencyRatio() > 0) parts.add(String.format("p95 latency x%.1f of baseline", s.latencyRatio()));
+        if (s.slowFraction() > 0) parts.add(String.format("%.0f%% of requests above the latency threshold", s.slowFraction() * 100));
+        if (s.type() == IncidentType.TRAFFIC_DROP) parts.add(String.format("traffic at %.0f%% of baseline", s.trafficRatio() * 100));
+        if (s.schemaChanged()) parts.add("schema change");
+        return parts.isEmpty() ? "no metric deltas" : String.join(", ", parts);
+    }
+}
@@ -0,0 +1,308 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.SchemaVersion;
+import com.aare.analyzer.repository.SchemaVersionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory registry of response schema versions per endpoint.
+ *
+ * The event listener only {@link #offer}s fingerprints of 2xx responses that differ from the
+ * previous one; the detection tick then {@link #process}es them. Each endpoint keeps its latest version and an
+ * LRU of recently seen hashes (seeded from schema_version on first use): a hash from the LRU is
+ * flapping between known versions (e.g. two releases behind one load balancer) and only moves
+ * the latest pointer, an unknown hash becomes a new version. New versions are diffed
+ * structurally against the latest one (removed fields and type changes are breaking) and
+ * written in one batch per tick by {@link #flush()}.
+ */
+@Service
+@Slf4j
+public class SchemaRegistry {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO schema_version (id, endpoint_id, schema_hash, schema_snapshot, inferred_types,
+                is_breaking_change, version, first_seen, last_seen)
+            VALUES (?, ?, ?, ?::jsonb, ?::jsonb, ?, ?, ?, ?)
+            ON CONFLICT (id) DO UPDATE SET last_seen = EXCLUDED.last_seen
+            """;
+
+    private static final int MAX_PENDING_HASHES = 8;
+    private static final int MAX_DEPTH = 8;
+    private static final int MAX_PATHS = 500;
+
+    /**
+     * A new schema version and how it differs from the previous one. With either structure
+     * unknown (no parseable body sample), the change cannot be shown to be compatible and counts
+     * as breaking.
+     */
+    public record SchemaChange(SchemaVersion previous, SchemaVersion current, List<String> removedFields,
+                               List<String> typeChanges, List<String> addedFields, boolean structureKnown) {
+
+        public boolean breaking() {
+            return !structureKnown || !removedFields.isEmpty() || !typeChanges.isEmpty();
+        }
+
+        public Map<String, Object> evidence() {
+            Map<String, Object> evidence = new LinkedHashMap<>();
+            evidence.put("previousSchemaHash", previous.getSchemaHash());
+            evidence.put("schemaHash", current.getSchemaHash());
+            evidence.put("previousVersion", previous.getVersion());
+            evidence.put("version", current.getVersion());
+            evidence.put("structureKnown", structureKnown);
+            evidence.put("removedFields", removedFields);
+            evidence.put("typeChanges", typeChanges);
+            evidence.put("addedFields", addedFields);
+            return evidence;
+        }
+    }
+
+    private final SchemaVersionRepository schemaVersionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${aare.analyzer.schema.recent-hashes:8}")
+    private int recentHashes = 8;
+
+    private final ConcurrentMap<String, EndpointSchemas> endpoints = new ConcurrentHashMap<>();
+    private final Queue<SchemaVersion> dirty = new ConcurrentLinkedQueue<>();
+
+    public SchemaRegistry(SchemaVersionRepository schemaVersionRepository, JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper) {
+        this.schemaVersionRepository = schemaVersionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Records a fingerprint seen on the endpoint, with a body sample to infer its structure from.
+     * Cheap enough for the event listener; all other work happens in {@link #process}.
+     */
+    public void offer(String endpointId, String schemaHash, String bodySample) {
+        EndpointSchemas schemas = endpoints.computeIfAbsent(endpointId, k -> new EndpointSchemas());
+        synchronized (schemas) {
+            if (schemas.pending.size() < MAX_PENDING_HASHES || schemas.pending.containsKey(schemaHash)) {
+                schemas.pending.putIfAbsent(schemaHash, bodySample == null ? "" : bodySample);
+            }
+        }
+    }
+
+    /**
+     * Applies the fingerprints offered since the last call and returns the new versions they
+     * produced (the endpoint's first version is registered without a change).
+     */
+    public List<SchemaChange> process(String endpointId, LocalDateTime now) {
+        EndpointSchemas schemas = endpoints.get(endpointId);
+        if (schemas == null) return List.of();
+        List<SchemaChange> changes = new ArrayList<>();
+        synchronized (schemas) {
+            if (schemas.pending.isEmpty()) return List.of();
+            if (!schemas.loaded && !seed(endpointId, schemas)) {
+                return List.of(); // versions are numbered after the stored ones; retried next tick
+            }
+            for (Iterator<Map.Entry<String, String>> it = schemas.pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, String> offered = it.next();
+                it.remove();
+                SchemaChange change = apply(endpointId, schemas, offered.getKey(), offered.getValue(), now);
+                if (change != null) changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    private SchemaChange apply(String endpointId, EndpointSchemas schemas, String hash, String sample, LocalDateTime now) {
+        SchemaVersion known = schemas.recent.get(hash); // also refreshes its LRU position
+        if (known != null) {
+            if (known != schemas.latest) {
+                log.debug("Schema of {} returned to known version {}", endpointId, known.getVersion());
+            }
+            schemas.latest = known;
+            known.setLastSeen(now);
+            dirty.add(known);
+            return null;
+        }
+
+        SchemaVersion version = new SchemaVersion();
+        version.setId(UUID.randomUUID());
+        version.setEndpointId(endpointId);
+        version.setSchemaHash(hash);
+        version.setInferredTypes(inferTypes(sample));
+        version.setVersion(schemas.maxVersion + 1);
+        version.setFirstSeen(now);
+        version.setLastSeen(now);
+
+        SchemaChange change = schemas.latest == null ? null : diff(schemas.latest, version);
+        version.setIsBreakingChange(change != null && change.breaking());
+        if (change != null) {
+            log.info("Schema of {} changed to version {} (breaking: {}, removed: {}, type changes: {})",
+                    endpointId, version.getVersion(), change.breaking(), change.removedFields(), change.typeChanges());
+        }
+        schemas.remember(version, recentHashes);
+        schemas.latest = version;
+        dirty.add(version);
+        return change;
+    }
+
+    private boolean seed(String endpointId, EndpointSchemas schemas) {
+        try {
+            List<SchemaVersion> versions = schemaVersionRepository.findByEndpointIdOrderByVersionDesc(endpointId,
+                    PageRequest.of(0, Math.max(1, recentHashes)));
+            for (int i = versions.size() - 1; i >= 0; i--) {
+                schemas.remember(versions.get(i), recentHashes);
+            }
+            if (!versions.isEmpty()) {
+                schemas.latest = versions.get(0);
+            }
+            schemas.loaded = true;
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not load schema versions of {}: {}", endpointId, e.getMessage());
+            return false;
+        }
+    }
+
+    static SchemaChange diff(SchemaVersion previous, SchemaVersion current) {
+        Map<String, String> before = previous.getInferredTypes();
+        Map<String, String> after = current.getInferredTypes();
+        if (before == null || after == null) {
+            return new SchemaChange(previous, current, List.of(), List.of(), List.of(), false);
+        }
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> field : before.entrySet()) {
+            String path = field.getKey();
+            String type = after.get(path);
+            if (type == null) {
+                if (!underEmptyArray(path, after)) removed.add(path);
+            } else if (!type.equals(field.getValue()) && !"NULL".equals(type) && !"NULL".equals(field.getValue())) {
+                // a null value says nothing about the field's type
+                changed.add(path + ": " + field.getValue() + " -> " + type);
+            }
+        }
+        List<String> added = after.keySet().stream().filter(path -> !before.containsKey(path)).toList();
+        return new SchemaChange(previous, current, removed, changed, added, true);
+    }
+
+    /**
+     * Element fields of an array that is empty in the new sample are unknown, not removed.
+     */
+    private static boolean underEmptyArray(String path, Map<String, String> types) {
+        for (int i = path.indexOf("[]"); i >= 0; i = path.indexOf("[]", i + 2)) {
+            String array = path.substring(0, i);
+            if ("ARRAY".equals(types.get(array)) && !types.containsKey(array + "[]")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Field path to JSON type ("items[].id" -> "NUMBER"), or null when the sample is not JSON.
+     */
+    Map<String, String> inferTypes(String sample) {
+        if (sample == null || sample.isBlank()) return null;
+        try {
+            Map<String, String> types = new TreeMap<>();
+            flatten(objectMapper.readTree(sample), "", types, 0);
+            return types;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static void flatten(JsonNode node, String path, Map<String, String> types, int depth) {
+        if (types.size() >= MAX_PATHS) return;
+        String type = node.isObject() ? "OBJECT" : node.isArray() ? "ARRAY" : node.isTextual() ? "STRING"
+                : node.isNumber() ? "NUMBER" : node.isBoolean() ? "BOOLEAN" : node.isNull() ? "NULL" : "UNKNOWN";
+        if (!path.isEmpty()) types.put(path, type);
+        if (depth >= MAX_DEPTH) return;
+        if (node.isObject()) {
+            node.fields().forEachRemaining(field ->
+                    flatten(field.getValue(), path.isEmpty() ? field.getKey() : path + "." + field.getKey(), types, depth + 1));
+        } else if (node.isArray() && !node.isEmpty()) {
+            flatten(node.get(0), path + "[]", types, depth + 1);
+        }
+    }
+
+    /**
+     * Writes the versions created or seen again since the last flush, in one batch.
+     */
+    public int flush() {
+        Map<UUID, SchemaVersion> batch = new LinkedHashMap<>();
+        for (SchemaVersion version; (version = dirty.poll()) != null; ) {
+            batch.put(version.getId(), version);
+        }
+        if (batch.isEmpty()) return 0;
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, new ArrayList<>(batch.values()), batch.size(), (ps, v) -> {
+                ps.setObject(1, v.getId());
+                ps.setString(2, v.getEndpointId());
+                ps.setString(3, v.getSchemaHash());
+                ps.setString(4, toJson(v.getSchemaSnapshot()));
+                ps.setString(5, toJson(v.getInferredTypes()));
+                ps.setBoolean(6, Boolean.TRUE.equals(v.getIsBreakingChange()));
+                ps.setInt(7, v.getVersion());
+                ps.setTimestamp(8, Timestamp.valueOf(v.getFirstSeen()));
+                ps.setTimestamp(9, Timestamp.valueOf(v.getLastSeen()));
+            });
+            return batch.size();
+        } catch (Exception e) {
+            dirty.addAll(batch.values());
+            log.error("Failed to write {} schema versions, will retry: {}", batch.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    public void forget(String endpointId) {
+        endpoints.remove(endpointId);
+    }
+
+    private String toJson(Object value) {
+        if (value == null) return null;
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static final class EndpointSchemas {
+        // hashes offered since the last tick, each with a body sample
+        final Map<String, String> pending = new LinkedHashMap<>();
+        // recently seen versions by hash, least recently seen first
+        final LinkedHashMap<String, SchemaVersion> recent = new LinkedHashMap<>(16, 0.75f, true);
+        SchemaVersion latest;
+        int maxVersion;
+        boolean loaded;
+
+        void remember(SchemaVersion version, int capacity) {
+            recent.put(version.getSchemaHash(), version);
+            maxVersion = Math.max(maxVersion, version.getVersion());
+            while (recent.size() > Math.max(1, capacity)) {
+                Iterator<String> eldest = recent.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+}
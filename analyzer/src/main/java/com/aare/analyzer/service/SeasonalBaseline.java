@@ -0,0 +1,217 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EndpointBaseline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Incremental seasonal baseline of one endpoint.
+ *
+ * Request count and error rate follow an additive Holt-Winters model without trend: an EWMA
+ * level plus one seasonal offset per hour-of-week slot (168 slots, so both the daily and the
+ * weekly pattern are covered). The expected value for a time is level + that slot's offset.
+ * A slot seen for the first time is initialised from the observation instead of decaying in
+ * from zero.
+ *
+ * Latency is kept as an exponentially decayed distribution over the LatencyHistogram buckets:
+ * each observed window's distribution is mixed in with weight latencyAlpha. Percentiles are read
+ * from that mixture, never averaged.
+ *
+ * Each observation costs the same regardless of history or traffic. Not thread-safe on its own;
+ * methods are synchronized because the detection tick and a shard handover may touch it at once.
+ */
+public class SeasonalBaseline {
+
+    public static final int SLOTS = 7 * 24;
+    private static final int REQUESTS = 0;
+    private static final int ERROR_RATE = 1;
+    private static final int FORMAT_VERSION = 1;
+
+    public record Settings(double levelAlpha, double seasonalGamma, double latencyAlpha) {
+    }
+
+    public record Expected(double requestCount, double errorRatePct, long p50Latency, long p95Latency, long p99Latency) {
+    }
+
+    private final Settings settings;
+    private boolean initialized;
+    private final double[] level = new double[2];
+    private final double[][] seasonal = new double[2][SLOTS];
+    private final boolean[] slotSeen = new boolean[SLOTS];
+    private double[] latencyWeights = new double[0];
+
+    public SeasonalBaseline(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Model seeded from a baseline row written before seasonal state existed (no seasonality yet).
+     */
+    public static SeasonalBaseline seededFrom(EndpointBaseline baseline, Settings settings) {
+        SeasonalBaseline model = new SeasonalBaseline(settings);
+        if (baseline.getRequestCount() != null && baseline.getErrorRatePct() != null) {
+            model.level[REQUESTS] = baseline.getRequestCount();
+            model.level[ERROR_RATE] = baseline.getErrorRatePct().doubleValue();
+            model.initialized = true;
+        }
+        // three-point distribution that reproduces the stored percentiles
+        if (baseline.getP50LatencyMs() != null && baseline.getP95LatencyMs() != null && baseline.getP99LatencyMs() != null) {
+            model.addLatencyWeight(LatencyHistogram.indexFor(baseline.getP50LatencyMs()), 0.50);
+            model.addLatencyWeight(LatencyHistogram.indexFor(baseline.getP95LatencyMs()), 0.45);
+            model.addLatencyWeight(LatencyHistogram.indexFor(baseline.getP99LatencyMs()), 0.05);
+        }
+        return model;
+    }
+
+    /**
+     * Folds one observed window (taken at {@code at}) into the model.
+     */
+    public synchronized void observe(LocalDateTime at, WindowSnapshot window) {
+        int slot = slotOf(at);
+        update(REQUESTS, slot, window.requestCount());
+        update(ERROR_RATE, slot, window.errorRatePct().doubleValue());
+        slotSeen[slot] = true;
+        initialized = true;
+
+        LatencyHistogram latencies = window.latencies();
+        long total = latencies.getTotalCount();
+        if (total > 0) {
+            double alpha = latencyWeights.length == 0 ? 1.0 : settings.latencyAlpha();
+            for (int i = 0; i < latencyWeights.length; i++) {
+                latencyWeights[i] *= 1.0 - alpha;
+            }
+            for (int i = 0; i < latencies.bucketCount(); i++) {
+                long count = latencies.countAt(i);
+                if (count > 0) addLatencyWeight(i, alpha * count / total);
+            }
+        }
+    }
+
+    private void update(int metric, int slot, double observed) {
+        if (!initialized) {
+            level[metric] = observed;
+            seasonal[metric][slot] = 0;
+            return;
+        }
+        double season = seasonal[metric][slot];
+        double newLevel = settings.levelAlpha() * (observed - season) + (1 - settings.levelAlpha()) * level[metric];
+        seasonal[metric][slot] = slotSeen[slot]
+                ? settings.seasonalGamma() * (observed - newLevel) + (1 - settings.seasonalGamma()) * season
+                : observed - newLevel;
+        level[metric] = newLevel;
+    }
+
+    /**
+     * Expected values for the hour-of-week slot of {@code at}, or null before the first observation.
+     */
+    public synchronized Expected expected(LocalDateTime at) {
+        if (!initialized) return null;
+        int slot = slotOf(at);
+        double requests = Math.max(0, level[REQUESTS] + seasonal[REQUESTS][slot]);
+        double errorRate = Math.min(100, Math.max(0, level[ERROR_RATE] + seasonal[ERROR_RATE][slot]));
+        long[] latency = latencyQuantiles(0.50, 0.95, 0.99);
+        return new Expected(requests, errorRate, latency[0], latency[1], latency[2]);
+    }
+
+    private long[] latencyQuantiles(double... ps) {
+        long[] result = new long[ps.length];
+        double total = 0;
+        for (double w : latencyWeights) total += w;
+        if (total <= 0) return result;
+        int q = 0;
+        double seen = 0;
+        for (int i = 0; i < latencyWeights.length && q < ps.length; i++) {
+            seen += latencyWeights[i];
+            while (q < ps.length && seen >= ps[q] * total) {
+                result[q++] = LatencyHistogram.valueFor(i);
+            }
+        }
+        while (q < ps.length) {
+            result[q++] = LatencyHistogram.valueFor(latencyWeights.length - 1);
+        }
+        return result;
+    }
+
+    private void addLatencyWeight(int index, double weight) {
+        if (index >= latencyWeights.length) {
+            latencyWeights = Arrays.copyOf(latencyWeights, index + 1);
+        }
+        latencyWeights[index] += weight;
+    }
+
+    static int slotOf(LocalDateTime at) {
+        return (at.getDayOfWeek().getValue() - 1) * 24 + at.getHour();
+    }
+
+    public synchronized byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeBoolean(initialized);
+            for (int metric = 0; metric < level.length; metric++) {
+                out.writeDouble(level[metric]);
+            }
+            int seen = 0;
+            for (boolean s : slotSeen) if (s) seen++;
+            out.writeShort(seen);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (!slotSeen[slot]) continue;
+                out.writeShort(slot);
+                for (int metric = 0; metric < level.length; metric++) {
+                    out.writeDouble(seasonal[metric][slot]);
+                }
+            }
+            int buckets = 0;
+            for (double w : latencyWeights) if (w > 0) buckets++;
+            out.writeShort(buckets);
+            for (int i = 0; i < latencyWeights.length; i++) {
+                if (latencyWeights[i] <= 0) continue;
+                out.writeShort(i);
+                out.writeDouble(latencyWeights[i]);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static SeasonalBaseline decode(byte[] encoded, Settings settings) {
+        SeasonalBaseline model = new SeasonalBaseline(settings);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported seasonal baseline format " + version);
+            }
+            model.initialized = in.readBoolean();
+            for (int metric = 0; metric < model.level.length; metric++) {
+                model.level[metric] = in.readDouble();
+            }
+            int seen = in.readShort();
+            for (int i = 0; i < seen; i++) {
+                int slot = in.readShort();
+                model.slotSeen[slot] = true;
+                for (int metric = 0; metric < model.level.length; metric++) {
+                    model.seasonal[metric][slot] = in.readDouble();
+                }
+            }
+            int buckets = in.readShort();
+            for (int i = 0; i < buckets; i++) {
+                int index = in.readShort();
+                model.addLatencyWeight(index, in.readDouble());
+            }
+            return model;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
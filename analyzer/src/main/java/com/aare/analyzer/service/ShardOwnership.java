@@ -0,0 +1,345 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.config.AnalysisShards;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the analysis shards between the running analyzer instances.
+ *
+ * Every heartbeat this instance:
+ * 1. refreshes its row in analyzer_member and reads the members whose heartbeat is within the lease TTL;
+ * 2. places the members on a consistent hash ring and computes which shards it should own;
+ * 3. releases shards that moved away: stops the shard's listener, flushes baselines and writes the
+ *    shard's window state to analyzer_shard_handover before giving up the lease;
+ * 4. acquires shards that moved here once their lease is free (released or expired) and merges any
+ *    handed-over state; restoring a crashed owner's shard, reloading baselines and open incidents and
+ *    starting the shard's listener run on a separate thread, so a long replay never holds up renewals;
+ * 5. renews the leases it holds (including shards still being restored), and stops a shard whose
+ *    lease was lost.
+ *
+ * The heartbeat runs on its own thread rather than the shared scheduler pool, so a detection tick
+ * or checkpoint cannot delay lease renewal past the TTL.
+ *
+ * The shard lease (analyzer_shard_lease) is what makes ownership exclusive: a shard is consumed,
+ * evaluated and alerted on by at most one instance, so replicas neither double-count nor open
+ * duplicate incidents. All time comparisons use the database clock. If an instance dies without
+ * handing over, its leases expire after the TTL and the new owner restores the shard from its local
+ * checkpoint plus an event replay (see MetricsCheckpoint).
+ */
+@Service
+@Slf4j
+public class ShardOwnership {
+
+    private static final String HEARTBEAT_SQL = """
+            INSERT INTO analyzer_member (member_id, started_at, heartbeat_at) VALUES (?, now(), now())
+            ON CONFLICT (member_id) DO UPDATE SET heartbeat_at = now()
+            """;
+    private static final String LIVE_MEMBERS_SQL = """
+            SELECT member_id FROM analyzer_member WHERE heartbeat_at > now() - (? * interval '1 millisecond')
+            """;
+    // Takes the lease if it is free, expired, or already ours; updates nothing otherwise
+    private static final String ACQUIRE_LEASE_SQL = """
+            INSERT INTO analyzer_shard_lease (shard, owner_id, expires_at)
+            VALUES (?, ?, now() + (? * interval '1 millisecond'))
+            ON CONFLICT (shard) DO UPDATE SET owner_id = EXCLUDED.owner_id, expires_at = EXCLUDED.expires_at
+            WHERE analyzer_shard_lease.owner_id = EXCLUDED.owner_id OR analyzer_shard_lease.expires_at < now()
+            """;
+    private static final String RENEW_LEASE_SQL = """
+            UPDATE analyzer_shard_lease SET expires_at = now() + (? * interval '1 millisecond')
+            WHERE shard = ? AND owner_id = ?
+            """;
+    // Whether the shard had an owner that did not release it
+    private static final String PREVIOUS_LEASE_SQL = "SELECT owner_id FROM analyzer_shard_lease WHERE shard = ?";
+    private static final String RELEASE_LEASE_SQL = "DELETE FROM analyzer_shard_lease WHERE shard = ? AND owner_id = ?";
+    private static final String HANDOVER_SQL =
+            "INSERT INTO analyzer_shard_handover (shard, endpoint_id, state, handed_over_at) VALUES (?, ?, ?, now())";
+    private static final String TAKE_HANDOVER_SQL =
+            "DELETE FROM analyzer_shard_handover WHERE shard = ? RETURNING endpoint_id, state";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AnalysisShards analysisShards;
+    private final ApiEventConsumer apiEventConsumer;
+    private final BaselineStore baselineStore;
+    private final MetricsCheckpoint metricsCheckpoint;
+    private final OpenIncidentIndex openIncidentIndex;
+
+    @Value("${aare.analyzer.ownership.member-id:}")
+    private String configuredMemberId;
+    @Value("${aare.analyzer.ownership.lease-ttl-ms:15000}")
+    private long leaseTtlMs;
+    @Value("${aare.analyzer.ownership.virtual-nodes:64}")
+    private int virtualNodes;
+    @Value("${aare.analyzer.ownership.heartbeat-ms:5000}")
+    private long heartbeatMs;
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            r -> daemon(r, "shard-heartbeat"));
+    private final ExecutorService activator = Executors.newSingleThreadExecutor(r -> daemon(r, "shard-activate"));
+
+    private volatile String memberId;
+    private final Set<Integer> ownedShards = ConcurrentHashMap.newKeySet();
+    // leased shards whose state is still being restored; their listener is not started yet
+    private final Set<Integer> activating = ConcurrentHashMap.newKeySet();
+    // System.nanoTime() of the last successful lease renewal
+    private volatile long lastRenewedNanos;
+    private volatile int liveMemberCount = 1;
+
+    public ShardOwnership(JdbcTemplate jdbcTemplate, RabbitListenerEndpointRegistry listenerRegistry,
+                          AnalysisShards analysisShards, ApiEventConsumer apiEventConsumer,
+                          BaselineStore baselineStore, MetricsCheckpoint metricsCheckpoint,
+                          OpenIncidentIndex openIncidentIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listenerRegistry = listenerRegistry;
+        this.analysisShards = analysisShards;
+        this.apiEventConsumer = apiEventConsumer;
+        this.baselineStore = baselineStore;
+        this.metricsCheckpoint = metricsCheckpoint;
+        this.openIncidentIndex = openIncidentIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startHeartbeat() {
+        heartbeat.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (RuntimeException e) {
+                // an escaping exception would cancel the schedule
+                log.error("Analyzer ownership heartbeat failed: {}", e.getMessage(), e);
+            }
+        }, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void rebalance() {
+        List<String> members;
+        try {
+            jdbcTemplate.update(HEARTBEAT_SQL, memberId());
+            members = jdbcTemplate.queryForList(LIVE_MEMBERS_SQL, String.class, leaseTtlMs);
+            liveMemberCount = Math.max(1, members.size());
+        } catch (Exception e) {
+            log.warn("Analyzer membership heartbeat failed: {}", e.getMessage());
+            stopAllIfLeasesExpired();
+            return;
+        }
+
+        ConsistentHashRing ring = new ConsistentHashRing(members, virtualNodes);
+        Set<Integer> desired = new TreeSet<>();
+        for (int shard = 0; shard < analysisShards.getShardCount(); shard++) {
+            if (memberId().equals(ring.ownerOf(AnalysisShards.queueName(shard)))) {
+                desired.add(shard);
+            }
+        }
+
+        for (int shard : new ArrayList<>(ownedShards)) {
+            // a shard still being restored is released on a later heartbeat, with its full state
+            if (!desired.contains(shard) && !activating.contains(shard)) {
+                release(shard);
+            }
+        }
+        try {
+            for (int shard : new ArrayList<>(ownedShards)) {
+                renew(shard);
+            }
+            lastRenewedNanos = System.nanoTime();
+        } catch (Exception e) {
+            log.warn("Renewing analysis shard leases failed: {}", e.getMessage());
+            stopAllIfLeasesExpired();
+            return;
+        }
+        for (int shard : desired) {
+            if (!ownedShards.contains(shard) && !activating.contains(shard)) {
+                tryAcquire(shard);
+            }
+        }
+    }
+
+    private void tryAcquire(int shard) {
+        try {
+            List<Map<String, Object>> previousLease = jdbcTemplate.queryForList(PREVIOUS_LEASE_SQL, shard);
+            if (jdbcTemplate.update(ACQUIRE_LEASE_SQL, shard, memberId(), leaseTtlMs) == 0) {
+                log.debug("Shard {} is still leased by its previous owner, retrying next heartbeat", shard);
+                return;
+            }
+            List<Map<String, Object>> handover = jdbcTemplate.queryForList(TAKE_HANDOVER_SQL, shard);
+            for (Map<String, Object> row : handover) {
+                apiEventConsumer.adoptEndpoint((String) row.get("endpoint_id"), (byte[]) row.get("state"));
+            }
+            // the previous owner (possibly an earlier run of this member) died holding the shard
+            boolean crashed = handover.isEmpty() && !previousLease.isEmpty();
+            // owned from here on, so the heartbeat keeps renewing the lease while the shard is restored
+            activating.add(shard);
+            ownedShards.add(shard);
+            activator.execute(() -> activate(shard, crashed, handover.size()));
+        } catch (RejectedExecutionException e) {
+            activating.remove(shard); // shutting down; the lease is left to expire
+        } catch (Exception e) {
+            log.error("Failed to acquire analysis shard {}: {}", shard, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Prepares an acquired shard and starts its listener: after a crash, recovers its windows from
+     * checkpoint + event replay; then reloads its baselines and the incidents the previous owner
+     * opened, so their next detection extends them. Runs on the activation thread.
+     */
+    private void activate(int shard, boolean crashed, int handedOver) {
+        try {
+            if (crashed) {
+                metricsCheckpoint.restore(shard);
+            }
+            baselineStore.reload(endpointId -> analysisShards.shardFor(endpointId) == shard);
+            openIncidentIndex.loadEndpoints(endpointId -> analysisShards.shardFor(endpointId) == shard);
+            synchronized (this) {
+                if (ownedShards.contains(shard)) {
+                    container(shard).start();
+                    log.info("Acquired analysis shard {} ({} endpoints handed over)", shard, handedOver);
+                } else {
+                    // the lease was lost meanwhile; the new owner rebuilds the shard itself
+                    apiEventConsumer.releaseEndpoints(endpointId -> analysisShards.shardFor(endpointId) == shard);
+                }
+                activating.remove(shard);
+            }
+        } catch (Exception e) {
+            log.error("Failed to activate analysis shard {}, retrying next heartbeat: {}", shard, e.getMessage(), e);
+            synchronized (this) {
+                drop(shard);
+                activating.remove(shard);
+            }
+        }
+    }
+
+    private void release(int shard) {
+        // no more events for this shard on this instance; stop() waits for in-flight deliveries
+        container(shard).stop();
+        Map<String, byte[]> state = apiEventConsumer.releaseEndpoints(endpointId -> analysisShards.shardFor(endpointId) == shard);
+        try {
+            baselineStore.flushAll();
+            List<Object[]> rows = new ArrayList<>(state.size());
+            state.forEach((endpointId, bytes) -> rows.add(new Object[]{shard, endpointId, bytes}));
+            jdbcTemplate.batchUpdate(HANDOVER_SQL, rows);
+            jdbcTemplate.update(RELEASE_LEASE_SQL, shard, memberId());
+            ownedShards.remove(shard);
+            metricsCheckpoint.discard(shard);
+            log.info("Released analysis shard {} ({} endpoints handed over)", shard, state.size());
+        } catch (Exception e) {
+            // keep the shard: put the state back and resume consuming, retry next heartbeat
+            state.forEach(apiEventConsumer::adoptEndpoint);
+            container(shard).start();
+            log.error("Failed to hand over analysis shard {}, keeping it for now: {}", shard, e.getMessage(), e);
+        }
+    }
+
+    private void renew(int shard) {
+        if (jdbcTemplate.update(RENEW_LEASE_SQL, leaseTtlMs, shard, memberId()) == 0) {
+            // our lease expired and another instance took the shard; its state now lives there
+            log.warn("Lost the lease on analysis shard {}, dropping it", shard);
+            drop(shard);
+        }
+    }
+
+    private void stopAllIfLeasesExpired() {
+        if (ownedShards.isEmpty() || System.nanoTime() - lastRenewedNanos < leaseTtlMs * 1_000_000) {
+            return;
+        }
+        log.warn("Could not renew shard leases for {}ms, stopping {} shards", leaseTtlMs, ownedShards.size());
+        for (int shard : new ArrayList<>(ownedShards)) {
+            drop(shard);
+        }
+    }
+
+    private void drop(int shard) {
+        container(shard).stop();
+        apiEventConsumer.releaseEndpoints(endpointId -> analysisShards.shardFor(endpointId) == shard);
+        ownedShards.remove(shard);
+        metricsCheckpoint.discard(shard);
+    }
+
+    /**
+     * Graceful shutdown: hand every owned shard over and leave the membership right away,
+     * so the remaining instances pick the shards up on their next heartbeat instead of after the TTL.
+     */
+    @PreDestroy
+    public synchronized void leave() {
+        heartbeat.shutdownNow();
+        activator.shutdownNow();
+        for (int shard : new ArrayList<>(ownedShards)) {
+            if (activating.contains(shard)) {
+                // not restored yet, nothing complete to hand over: its lease expires and the next
+                // owner restores the shard itself
+                continue;
+            }
+            release(shard);
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM analyzer_member WHERE member_id = ?", memberId());
+        } catch (Exception e) {
+            log.warn("Could not remove analyzer member {}: {}", memberId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Number of live analyzer instances as of the last heartbeat (at least 1).
+     */
+    public int liveMemberCount() {
+        return liveMemberCount;
+    }
+
+    public Set<Integer> getOwnedShards() {
+        return Set.copyOf(ownedShards);
+    }
+
+    public String memberId() {
+        String id = memberId;
+        if (id == null) {
+            id = configuredMemberId != null && !configuredMemberId.isBlank()
+                    ? configuredMemberId
+                    : hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+            memberId = id;
+        }
+        return id;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "analyzer";
+        }
+    }
+
+    private MessageListenerContainer container(int shard) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(AnalysisShards.listenerId(shard));
+        if (container == null) {
+            throw new IllegalStateException("No listener container for analysis shard " + shard);
+        }
+        return container;
+    }
+}
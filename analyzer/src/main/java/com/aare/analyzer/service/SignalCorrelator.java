@@ -0,0 +1,163 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Finds incidents that are the same outage seen on several endpoints.
+ *
+ * Every tick records each endpoint's 5m error rate and p95 latency into a fixed ring of
+ * primitive buckets, stamped with the tick number. Incidents opened in the same tick are linked
+ * when the error or the latency series of their endpoints co-move (Pearson correlation over the
+ * buckets both have, accumulated in one pass) above the threshold, and linked incidents are
+ * merged into clusters by union-find. Only pairs of incident endpoints are compared, so the cost
+ * is quadratic in the incidents of a tick, not in the number of endpoints.
+ */
+@Service
+public class SignalCorrelator {
+
+    @Value("${aare.analyzer.correlation.buckets:30}")
+    private int buckets = 30;
+    @Value("${aare.analyzer.correlation.min-buckets:5}")
+    private int minBuckets = 5;
+    @Value("${aare.analyzer.correlation.threshold:0.8}")
+    private double threshold = 0.8;
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * Records one bucket of the endpoint's signals; called once per endpoint per tick.
+     */
+    public void record(String endpointId, long tick, double errorRatePct, double p95LatencyMs) {
+        series.computeIfAbsent(endpointId, k -> new Series(Math.max(2, buckets))).add(tick, errorRatePct, p95LatencyMs);
+    }
+
+    public void forget(String endpointId) {
+        series.remove(endpointId);
+    }
+
+    /**
+     * The strongest co-movement of the two endpoints' error or latency signals, or NaN when they
+     * share fewer than min-buckets buckets or a signal is flat.
+     */
+    public double correlation(String endpointA, String endpointB) {
+        Series a = series.get(endpointA);
+        Series b = series.get(endpointB);
+        if (a == null || b == null) return Double.NaN;
+        return a.correlation(b, minBuckets);
+    }
+
+    /**
+     * Partitions the incidents into clusters of correlated ones; uncorrelated incidents are
+     * clusters of one. Incidents on the same endpoint are never linked by correlation.
+     */
+    public List<List<Incident>> cluster(List<Incident> incidents) {
+        int n = incidents.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+
+        for (int i = 0; i < n; i++) {
+            String a = incidents.get(i).getEndpointId();
+            for (int j = i + 1; j < n; j++) {
+                String b = incidents.get(j).getEndpointId();
+                if (a.equals(b) || find(parent, i) == find(parent, j)) continue;
+                if (correlation(a, b) >= threshold) {
+                    parent[find(parent, j)] = find(parent, i);
+                }
+            }
+        }
+
+        Map<Integer, List<Incident>> clusters = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            clusters.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(incidents.get(i));
+        }
+        return new ArrayList<>(clusters.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static final class Series {
+        private final long[] ticks;
+        private final double[] errors;
+        private final double[] latencies;
+
+        Series(int capacity) {
+            ticks = new long[capacity];
+            Arrays.fill(ticks, -1);
+            errors = new double[capacity];
+            latencies = new double[capacity];
+        }
+
+        synchronized void add(long tick, double errorRatePct, double p95LatencyMs) {
+            int slot = (int) Math.floorMod(tick, (long) ticks.length);
+            ticks[slot] = tick;
+            errors[slot] = errorRatePct;
+            latencies[slot] = p95LatencyMs;
+        }
+
+        double correlation(Series other, int minBuckets) {
+            // copy both under their own locks; the tick writers never hold two series at once
+            long[] t1, t2;
+            double[] e1, e2, l1, l2;
+            synchronized (this) {
+                t1 = ticks.clone(); e1 = errors.clone(); l1 = latencies.clone();
+            }
+            synchronized (other) {
+                t2 = other.ticks.clone(); e2 = other.errors.clone(); l2 = other.latencies.clone();
+            }
+            Pearson errorCorr = new Pearson();
+            Pearson latencyCorr = new Pearson();
+            for (int i = 0; i < t1.length && i < t2.length; i++) {
+                if (t1[i] < 0 || t1[i] != t2[i]) continue;
+                errorCorr.add(e1[i], e2[i]);
+                latencyCorr.add(l1[i], l2[i]);
+            }
+            if (errorCorr.n < minBuckets) return Double.NaN;
+            double error = errorCorr.value();
+            double latency = latencyCorr.value();
+            if (Double.isNaN(error)) return latency;
+            if (Double.isNaN(latency)) return error;
+            return Math.max(error, latency);
+        }
+    }
+
+    /**
+     * One-pass Pearson correlation.
+     */
+    private static final class Pearson {
+        int n;
+        double sx, sy, sxx, syy, sxy;
+
+        void add(double x, double y) {
+            n++;
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            syy += y * y;
+            sxy += x * y;
+        }
+
+        double value() {
+            double cov = n * sxy - sx * sy;
+            double vx = n * sxx - sx * sx;
+            double vy = n * syy - sy * sy;
+            if (vx <= 1e-12 || vy <= 1e-12) return Double.NaN;
+            return cov / Math.sqrt(vx * vy);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EndpointBaseline;
+import com.aare.analyzer.model.IncidentType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Per-endpoint error-spike / latency-regression check on the recording path.
+ *
+ * Each event updates a two-bucket sliding window (the previous bucket is weighted by how much of
+ * it still overlaps the window), so the running request, error and slow-request counts cost O(1)
+ * per event. A latency regression is checked without a quantile: p95 is above the threshold exactly
+ * when more than 5% of the requests are slower than it. A condition must hold for the dwell time
+ * before a candidate is raised, and is raised once until it clears.
+ *
+ * Thresholds come from the endpoint's 24h baseline and are refreshed by the detection tick;
+ * without a baseline nothing is raised.
+ */
+class StreamingDetector {
+
+    private static final double P95_TAIL = 0.05;
+
+    record Settings(long windowMillis, long dwellMillis,
+                    int errorSpikeMinRequests, BigDecimal errorSpikeThreshold, BigDecimal errorSpikeFactor,
+                    int latencyMinRequests, BigDecimal latencyP95Factor) {
+    }
+
+    record Candidate(IncidentType type, Map<String, Object> evidence) {
+    }
+
+    private record Thresholds(BigDecimal baselineErrorRate, double errorRatePct,
+                              int baselineP95, long slowLatencyMs) {
+    }
+
+    private final Settings settings;
+    private final long bucketMillis;
+    private volatile Thresholds thresholds;
+
+    // guarded by this
+    private long bucketStart = Long.MIN_VALUE;
+    private long requests, errors, slow;
+    private long prevRequests, prevErrors, prevSlow;
+    private long errorSince = -1, latencySince = -1;
+    private boolean errorRaised, latencyRaised;
+
+    StreamingDetector(Settings settings) {
+        this.settings = settings;
+        this.bucketMillis = Math.max(1, settings.windowMillis());
+    }
+
+    /**
+     * Derives the thresholds from the endpoint's current 24h baseline (null clears them).
+     */
+    void updateBaseline(EndpointBaseline baseline) {
+        if (baseline == null || baseline.getErrorRatePct() == null || baseline.getP95LatencyMs() == null) {
+            thresholds = null;
+            return;
+        }
+        BigDecimal baselineErrorRate = baseline.getErrorRatePct();
+        double errorRatePct = Math.max(settings.errorSpikeThreshold().doubleValue(),
+                baselineErrorRate.multiply(settings.errorSpikeFactor()).doubleValue());
+        int baselineP95 = baseline.getP95LatencyMs();
+        long slowLatencyMs = (long) (baselineP95 * settings.latencyP95Factor().doubleValue());
+        thresholds = new Thresholds(baselineErrorRate, errorRatePct, baselineP95, slowLatencyMs);
+    }
+
+    /**
+     * Records one event and returns an incident candidate if a condition has now held for the
+     * dwell time, null otherwise.
+     */
+    synchronized Candidate record(long nowMillis, long latency, boolean isError) {
+        Thresholds t = thresholds;
+        roll(nowMillis);
+        requests++;
+        if (isError) errors++;
+        if (t != null && latency > t.slowLatencyMs()) slow++;
+        if (t == null) return null;
+
+        // weight of the previous bucket = share of it still inside the sliding window
+        double weight = 1.0 - (double) (nowMillis - bucketStart) / bucketMillis;
+        double windowRequests = prevRequests * weight + requests;
+        double windowErrors = prevErrors * weight + errors;
+        double windowSlow = prevSlow * weight + slow;
+
+        double errorRatePct = windowRequests == 0 ? 0 : windowErrors * 100.0 / windowRequests;
+        boolean errorSpike = windowRequests >= settings.errorSpikeMinRequests() && errorRatePct > t.errorRatePct();
+        double slowFraction = windowRequests == 0 ? 0 : windowSlow / windowRequests;
+        boolean latencyRegression = windowRequests >= settings.latencyMinRequests() && slowFraction > P95_TAIL;
+
+        if (!errorSpike) {
+            errorSince = -1;
+            errorRaised = false;
+        } else if (errorSince < 0) {
+            errorSince = nowMillis;
+        }
+        if (!latencyRegression) {
+            latencySince = -1;
+            latencyRaised = false;
+        } else if (latencySince < 0) {
+            latencySince = nowMillis;
+        }
+
+        if (errorSpike && !errorRaised && nowMillis - errorSince >= settings.dwellMillis()) {
+            errorRaised = true;
+            // the latency side too, so the RCA can tell timeouts from plain failures
+            return new Candidate(IncidentType.ERROR_SPIKE, Map.of(
+                    "currentErrorRate", BigDecimal.valueOf(errorRatePct).setScale(4, RoundingMode.HALF_UP),
+                    "baselineErrorRate", t.baselineErrorRate(),
+                    "slowRequestFraction", BigDecimal.valueOf(slowFraction).setScale(4, RoundingMode.HALF_UP),
+                    "baselineP95Latency", t.baselineP95(),
+                    "factor", settings.errorSpikeFactor(),
+                    "windowRequests", Math.round(windowRequests),
+                    "dwellMs", nowMillis - errorSince));
+        }
+        if (latencyRegression && !latencyRaised && nowMillis - latencySince >= settings.dwellMillis()) {
+            latencyRaised = true;
+            return new Candidate(IncidentType.LATENCY_REGRESSION, Map.of(
+                    "slowRequestFraction", BigDecimal.valueOf(slowFraction).setScale(4, RoundingMode.HALF_UP),
+                    "latencyThresholdMs", t.slowLatencyMs(),
+                    "baselineP95Latency", t.baselineP95(),
+                    "currentErrorRate", BigDecimal.valueOf(errorRatePct).setScale(4, RoundingMode.HALF_UP),
+                    "baselineErrorRate", t.baselineErrorRate(),
+                    "factor", settings.latencyP95Factor(),
+                    "windowRequests", Math.round(windowRequests),
+                    "dwellMs", nowMillis - latencySince));
+        }
+        return null;
+    }
+
+    private void roll(long nowMillis) {
+        long start = Math.floorDiv(nowMillis, bucketMillis) * bucketMillis;
+        if (start == bucketStart) return;
+        if (start - bucketStart == bucketMillis) {
+            prevRequests = requests;
+            prevErrors = errors;
+            prevSlow = slow;
+        } else {
+            // first event, or idle for more than a whole bucket
+            prevRequests = 0;
+            prevErrors = 0;
+            prevSlow = 0;
+        }
+        requests = 0;
+        errors = 0;
+        slow = 0;
+        bucketStart = start;
+    }
+}
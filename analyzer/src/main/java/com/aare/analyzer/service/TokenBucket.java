@@ -0,0 +1,52 @@
+package com.aare.analyzer.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by concurrent callers. The refill rate is passed on every call so it can
+ * follow configuration that changes at runtime (e.g. a global rate split across instances).
+ *
+ * Callers reserve a token even when none is available; the bucket then goes negative and each
+ * caller sleeps until its own token is due, so waiters are served in arrival order.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(double capacity) {
+        this(capacity, System::nanoTime);
+    }
+
+    TokenBucket(double capacity, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes one token and returns how long (nanoseconds) the caller must wait before using it.
+     */
+    synchronized long reserve(double permitsPerSecond) {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+        lastRefillNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerSecond * 1e9);
+    }
+
+    /**
+     * Blocks until a token is available and returns the time waited in nanoseconds.
+     */
+    long acquire(double permitsPerSecond) throws InterruptedException {
+        long waitNanos = reserve(permitsPerSecond);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+}
@@ -0,0 +1,37 @@
+package com.aare.analyzer.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Point-in-time view of one rolling window: counters plus the merged latency sketch,
+ * with p50/p95/p99 resolved in a single pass over it.
+ */
+public record WindowSnapshot(long requestCount, long errorCount, LatencyHistogram latencies,
+                             int p50Latency, int p95Latency, int p99Latency) {
+
+    public static WindowSnapshot of(long requestCount, long errorCount, LatencyHistogram latencies) {
+        long[] q = latencies.quantiles(0.50, 0.95, 0.99);
+        return new WindowSnapshot(requestCount, errorCount, latencies, (int) q[0], (int) q[1], (int) q[2]);
+    }
+
+    public BigDecimal errorRatePct() {
+        if (requestCount == 0) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(errorCount)
+                .divide(BigDecimal.valueOf(requestCount), 4, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(100));
+    }
+
+    /**
+     * Combines two snapshots of the same endpoint/window (e.g. from two analyzer instances).
+     * Percentiles are recomputed from the merged sketch, never averaged.
+     */
+    public WindowSnapshot merge(WindowSnapshot other) {
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(latencies);
+        merged.add(other.latencies);
+        return of(requestCount + other.requestCount, errorCount + other.errorCount, merged);
+    }
+}
@@ -0,0 +1,47 @@
+package com.aare.analyzer.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writer/reader phase coordination as used by HdrHistogram's Recorder.
+ *
+ * Writers wrap each update in enter/exit, which costs two uncontended atomic increments and
+ * never blocks. A reader (holding {@link #readerLock()}) swaps the data writers point at and then
+ * calls {@link #flipPhase()}, which waits until every writer that entered before the flip has
+ * exited. After that the swapped-out data is no longer being written and can be read safely.
+ */
+class WriterReaderPhaser {
+
+    private final AtomicLong startEpoch = new AtomicLong(0);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    long writerCriticalSectionEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        (criticalValueAtEnter < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+
+    ReentrantLock readerLock() {
+        return readerLock;
+    }
+
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("flipPhase() requires the reader lock");
+        }
+        boolean nextPhaseIsEven = startEpoch.get() < 0;
+        long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+
+        long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        AtomicLong previousPhaseEnd = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousPhaseEnd.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.aare.analyzer.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnalysisShardsTest {
+
+    /**
+     * The gateway routes events with TrafficCaptureFilter#shardFor; TrafficCaptureFilterTest
+     * expects the same shards for the same endpoints, so the two copies of the hash cannot drift.
+     */
+    @Test
+    void shardsEndpointsLikeTheGateway() {
+        AnalysisShards shards = new AnalysisShards(4);
+        assertEquals(0, shards.shardFor("get:/api/orders"));
+        assertEquals(1, shards.shardFor("post:/api/orders"));
+        assertEquals(2, shards.shardFor("get:/api/orders/{id}"));
+        assertEquals(2, shards.shardFor("get:/api/payment"));
+        assertEquals(1, shards.shardFor("delete:/api/users/42"));
+        assertEquals(1, shards.shardFor("put:/api/inventory"));
+
+        AnalysisShards sixteen = new AnalysisShards(16);
+        assertEquals(4, sixteen.shardFor("get:/api/orders"));
+        assertEquals(9, sixteen.shardFor("post:/api/orders"));
+        assertEquals(13, sixteen.shardFor("delete:/api/users/42"));
+    }
+}
@@ -1,23 +1,32 @@
 package com.aare.analyzer.service;
 
+import com.aare.analyzer.config.RabbitConfig;
 import com.aare.analyzer.model.*;
 import com.aare.analyzer.repository.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.opentelemetry.api.trace.Tracer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -35,25 +44,47 @@ public class ApiEventConsumerTest {
     @Mock
     private RcaReportRepository rcaReportRepository;
     @Mock
-    private OpenAIService openAIService;
-    @Mock
     private RabbitTemplate rabbitTemplate;
     @Mock
     private Tracer tracer;
 
     @Spy
-    private ObjectMapper objectMapper; // Use a spy to allow partial mocking if needed
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules(); // Use a spy to allow partial mocking if needed
+
+    @Spy
+    private RuleBasedRcaEngine ruleBasedRcaEngine = new RuleBasedRcaEngine();
+
+    @Spy
+    private SignalCorrelator signalCorrelator = new SignalCorrelator();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private ApiEventConsumer apiEventConsumer;
 
+    private BaselineStore baselineStore;
+    private OpenIncidentIndex openIncidentIndex;
+    private JdbcTemplate schemaJdbcTemplate;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
+        // Baseline reads are served from the in-memory store; seed it directly in tests
+        baselineStore = new BaselineStore(endpointBaselineRepository, mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(apiEventConsumer, "baselineStore", baselineStore);
+        openIncidentIndex = new OpenIncidentIndex(incidentRepository, mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(apiEventConsumer, "openIncidentIndex", openIncidentIndex);
+        schemaJdbcTemplate = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(apiEventConsumer, "schemaRegistry",
+                new SchemaRegistry(schemaVersionRepository, schemaJdbcTemplate, objectMapper));
+
         // Mock Tracer calls
-        when(tracer.spanBuilder(anyString())).thenReturn(mock(io.opentelemetry.api.trace.SpanBuilder.class));
-        when(tracer.spanBuilder(anyString()).startSpan()).thenReturn(mock(io.opentelemetry.api.trace.Span.class));
+        // (RETURNS_SELF so chained calls like setSpanKind(..) return the builder)
+        io.opentelemetry.api.trace.SpanBuilder spanBuilder = mock(io.opentelemetry.api.trace.SpanBuilder.class, RETURNS_SELF);
+        when(tracer.spanBuilder(anyString())).thenReturn(spanBuilder);
+        when(spanBuilder.startSpan()).thenReturn(mock(io.opentelemetry.api.trace.Span.class));
         when(tracer.spanBuilder(anyString()).startSpan().makeCurrent()).thenReturn(mock(io.opentelemetry.context.Scope.class));
 
         // Inject @Value properties for incident detection thresholds
@@ -70,10 +101,17 @@ public class ApiEventConsumerTest {
         ((ConcurrentHashMap) ReflectionTestUtils.getField(apiEventConsumer, "lastSchemaFingerprint")).clear();
     }
 
+    private void verifyRcaRequested(IncidentSeverity severity) {
+        verify(rabbitTemplate, times(1)).convertAndSend(
+                eq(RabbitConfig.RCA_REQUESTED_EXCHANGE), eq(RabbitConfig.RCA_REQUESTED_ROUTING_KEY),
+                argThat(job -> severity.name().equals(((Map<?, ?>) job).get("severity"))),
+                any(MessagePostProcessor.class));
+    }
+
     private Map<String, Object> createTestEvent(String method, String path, int statusCode, long latency, String schemaFingerprint) {
         Map<String, Object> eventMap = new HashMap<>();
         eventMap.put("requestId", UUID.randomUUID().toString());
-        eventMap.put("timestamp", LocalDateTime.now().toString());
+        eventMap.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS")));
         eventMap.put("method", method);
         eventMap.put("path", path);
         eventMap.put("statusCode", statusCode);
@@ -84,16 +122,28 @@ public class ApiEventConsumerTest {
         return eventMap;
     }
 
+    @Test
+    void receiveApiEvent_shouldSkipRedeliveryOfReplayedEvent() {
+        Map<String, Object> replayed = createTestEvent("GET", "/replayed", 200, 100, null);
+        apiEventConsumer.skipRedeliveries(List.of((String) replayed.get("requestId")), 60_000);
+
+        apiEventConsumer.receiveApiEvent(replayed);
+        apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/replayed", 200, 100, null));
+
+        EndpointMetrics metrics = apiEventConsumer.getEndpointMetrics().get(apiEventConsumer.generateEndpointId("GET", "/replayed"));
+        assertEquals(1, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
+    }
+
     @Test
     void receiveApiEvent_shouldUpdateMetrics() {
         Map<String, Object> event = createTestEvent("GET", "/test", 200, 100, "fingerprint1");
         apiEventConsumer.receiveApiEvent(event);
 
         String endpointId = apiEventConsumer.generateEndpointId("GET", "/test");
-        ConcurrentMap<MetricWindowType, MetricWindow> metrics = ((ConcurrentHashMap) ReflectionTestUtils.getField(apiEventConsumer, "endpointMetrics")).get(endpointId);
+        EndpointMetrics metrics = (EndpointMetrics) ((ConcurrentHashMap) ReflectionTestUtils.getField(apiEventConsumer, "endpointMetrics")).get(endpointId);
 
         assertNotNull(metrics);
-        assertEquals(1, metrics.get(MetricWindowType.FIVE_MINUTES).getRequestCount());
+        assertEquals(1, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
     }
 
     @Test
@@ -112,24 +162,15 @@ public class ApiEventConsumerTest {
         baseline.setEndpointId(endpointId);
         baseline.setMetricWindow(MetricWindowType.TWENTY_FOUR_HOURS);
         baseline.setErrorRatePct(BigDecimal.valueOf(5.0)); // 5% baseline error rate
-        baseline.setRequestCount(100);
-        when(endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS))
-                .thenReturn(Optional.of(baseline));
+        baseline.setRequestCount(40); // matches current traffic, so only the error spike fires
+        baselineStore.put(baseline);
         
-        when(incidentRepository.findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            eq(endpointId), eq(IncidentType.ERROR_SPIKE), eq(IncidentStatus.OPEN), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(Optional.empty());
-
         when(incidentRepository.save(any(Incident.class))).thenAnswer(invocation -> {
             Incident inc = invocation.getArgument(0);
             inc.setId(UUID.randomUUID());
             return inc;
         });
 
-        RcaReport mockRcaReport = new RcaReport();
-        mockRcaReport.setStatus(RcaStatus.GENERATED);
-        when(openAIService.generateRcaReport(any(Incident.class), anyList())).thenReturn(mockRcaReport);
-        when(rcaReportRepository.save(any(RcaReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Run the scheduled task
         apiEventConsumer.analyzeMetricsAndDetectIncidents();
@@ -140,9 +181,10 @@ public class ApiEventConsumerTest {
         assertEquals(IncidentType.ERROR_SPIKE, incidentCaptor.getValue().getType());
         assertEquals(IncidentSeverity.HIGH, incidentCaptor.getValue().getSeverity());
 
-        // Verify RCA triggered and saved
-        verify(openAIService, times(1)).generateRcaReport(any(Incident.class), anyList());
-        verify(rcaReportRepository, times(1)).save(argThat(report -> report.getStatus() == RcaStatus.GENERATED));
+        // Verify RCA queued for the worker pool (never generated on the tick)
+        verifyRcaRequested(IncidentSeverity.HIGH);
+        verify(rcaReportRepository).save(argThat(report -> report.getStatus() == RcaStatus.RULE_BASED
+                && "PATCH".equals(report.getRollbackVsPatchRecommendation())));
     }
 
     @Test
@@ -163,23 +205,14 @@ public class ApiEventConsumerTest {
         baseline.setMetricWindow(MetricWindowType.TWENTY_FOUR_HOURS);
         baseline.setP95LatencyMs(200); // Baseline P95 latency
         baseline.setRequestCount(100);
-        when(endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS))
-                .thenReturn(Optional.of(baseline));
+        baselineStore.put(baseline);
         
-        when(incidentRepository.findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            eq(endpointId), eq(IncidentType.LATENCY_REGRESSION), eq(IncidentStatus.OPEN), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(Optional.empty());
-
         when(incidentRepository.save(any(Incident.class))).thenAnswer(invocation -> {
             Incident inc = invocation.getArgument(0);
             inc.setId(UUID.randomUUID());
             return inc;
         });
 
-        RcaReport mockRcaReport = new RcaReport();
-        mockRcaReport.setStatus(RcaStatus.GENERATED);
-        when(openAIService.generateRcaReport(any(Incident.class), anyList())).thenReturn(mockRcaReport);
-        when(rcaReportRepository.save(any(RcaReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Run the scheduled task
         apiEventConsumer.analyzeMetricsAndDetectIncidents();
@@ -189,8 +222,8 @@ public class ApiEventConsumerTest {
         verify(incidentRepository, times(1)).save(incidentCaptor.capture());
         assertEquals(IncidentType.LATENCY_REGRESSION, incidentCaptor.getValue().getType());
         assertEquals(IncidentSeverity.MEDIUM, incidentCaptor.getValue().getSeverity());
-        verify(openAIService, times(1)).generateRcaReport(any(Incident.class), anyList());
-        verify(rcaReportRepository, times(1)).save(argThat(report -> report.getStatus() == RcaStatus.GENERATED));
+        // RCA is queued for the worker pool, never generated on the tick
+        verifyRcaRequested(IncidentSeverity.MEDIUM);
     }
 
     @Test
@@ -205,31 +238,22 @@ public class ApiEventConsumerTest {
         EndpointBaseline baseline = new EndpointBaseline();
         baseline.setEndpointId(endpointId);
         baseline.setMetricWindow(MetricWindowType.TWENTY_FOUR_HOURS);
-        baseline.setRequestCount(100); // 100 requests in 24h baseline
+        baseline.setRequestCount(400); // 400 requests expected in a 5-min window for this slot
         baseline.setErrorRatePct(BigDecimal.ZERO);
-        when(endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS))
-                .thenReturn(Optional.of(baseline));
+        baselineStore.put(baseline);
 
         // Simulate a drop in traffic in the 5-min window
-        // Current window will have fewer than baseline * trafficDropFactor (100 * 0.5 = 50)
-        for (int i = 0; i < 40; i++) { // 40 requests in current 5-min window
+        // Current window will have fewer than expected * trafficDropFactor (400 * 0.5 = 200)
+        for (int i = 0; i < 40; i++) { // 140 requests in current 5-min window
              apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/traffic-drop", 200, 100, null));
         }
         
-        when(incidentRepository.findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            eq(endpointId), eq(IncidentType.TRAFFIC_DROP), eq(IncidentStatus.OPEN), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(Optional.empty());
-
         when(incidentRepository.save(any(Incident.class))).thenAnswer(invocation -> {
             Incident inc = invocation.getArgument(0);
             inc.setId(UUID.randomUUID());
             return inc;
         });
 
-        RcaReport mockRcaReport = new RcaReport();
-        mockRcaReport.setStatus(RcaStatus.GENERATED);
-        when(openAIService.generateRcaReport(any(Incident.class), anyList())).thenReturn(mockRcaReport);
-        when(rcaReportRepository.save(any(RcaReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
 
         // Run the scheduled task
@@ -240,50 +264,69 @@ public class ApiEventConsumerTest {
         verify(incidentRepository, times(1)).save(incidentCaptor.capture());
         assertEquals(IncidentType.TRAFFIC_DROP, incidentCaptor.getValue().getType());
         assertEquals(IncidentSeverity.LOW, incidentCaptor.getValue().getSeverity());
-        verify(openAIService, times(1)).generateRcaReport(any(Incident.class), anyList());
-        verify(rcaReportRepository, times(1)).save(argThat(report -> report.getStatus() == RcaStatus.GENERATED));
+        // RCA is queued for the worker pool, never generated on the tick
+        verifyRcaRequested(IncidentSeverity.LOW);
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void analyzeMetricsAndDetectIncidents_shouldDetectContractBreak() {
-        String endpointId = apiEventConsumer.generateEndpointId("GET", "/profile");
-        // Simulate initial schema
-        apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/profile", 200, 100, "fingerprint-v1"));
-        
-        when(schemaVersionRepository.findTopByEndpointIdOrderByVersionDesc(endpointId))
-            .thenReturn(Optional.empty()); // No previous schema
-
-        when(schemaVersionRepository.save(any(SchemaVersion.class))).thenAnswer(invocation -> {
-            SchemaVersion sv = invocation.getArgument(0);
-            sv.setId(UUID.randomUUID());
-            return sv;
-        });
-
-        // Run analysis to save first schema version
+        Map<String, Object> v1 = createTestEvent("GET", "/profile", 200, 100, "fingerprint-v1");
+        v1.put("resBodySample", "{\"id\":7,\"name\":\"alice\",\"email\":\"alice@example.com\"}");
+        apiEventConsumer.receiveApiEvent(v1);
+        // registers the endpoint's first version, which is not a change
         apiEventConsumer.analyzeMetricsAndDetectIncidents();
-        
-        // Simulate schema change
-        apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/profile", 200, 100, "fingerprint-v2"));
 
-        SchemaVersion v1 = new SchemaVersion();
-        v1.setEndpointId(endpointId);
-        v1.setSchemaHash("fingerprint-v1");
-        v1.setVersion(1);
-        when(schemaVersionRepository.findTopByEndpointIdOrderByVersionDesc(endpointId))
-            .thenReturn(Optional.of(v1));
-
-        when(incidentRepository.findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            eq(endpointId), eq(IncidentType.CONTRACT_BREAK), eq(IncidentStatus.OPEN), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(Optional.empty());
-
-        // Run analysis again
+        when(incidentRepository.save(any(Incident.class))).thenAnswer(invocation -> {
+            Incident inc = invocation.getArgument(0);
+            inc.setId(UUID.randomUUID());
+            return inc;
+        });
+        Map<String, Object> v2 = createTestEvent("GET", "/profile", 200, 100, "fingerprint-v2");
+        v2.put("resBodySample", "{\"id\":\"7\",\"name\":\"alice\",\"avatar\":null}");
+        apiEventConsumer.receiveApiEvent(v2);
         apiEventConsumer.analyzeMetricsAndDetectIncidents();
 
-        // Verify incident created
         ArgumentCaptor<Incident> incidentCaptor = ArgumentCaptor.forClass(Incident.class);
         verify(incidentRepository, times(1)).save(incidentCaptor.capture());
         assertEquals(IncidentType.CONTRACT_BREAK, incidentCaptor.getValue().getType());
         assertEquals(IncidentSeverity.CRITICAL, incidentCaptor.getValue().getSeverity());
+
+        ArgumentCaptor<IncidentEvidence> evidenceCaptor = ArgumentCaptor.forClass(IncidentEvidence.class);
+        verify(incidentEvidenceRepository, atLeastOnce()).save(evidenceCaptor.capture());
+        IncidentEvidence diff = evidenceCaptor.getAllValues().stream()
+                .filter(e -> e.getEvidenceType() == EvidenceType.SCHEMA_DIFF)
+                .findFirst().orElseThrow();
+        assertEquals("fingerprint-v1", diff.getData().get("previousSchemaHash"));
+        assertEquals("fingerprint-v2", diff.getData().get("schemaHash"));
+        assertEquals(List.of("email"), diff.getData().get("removedFields"));
+        assertEquals(List.of("id: NUMBER -> STRING"), diff.getData().get("typeChanges"));
+        assertEquals(List.of("avatar"), diff.getData().get("addedFields"));
+
+        ArgumentCaptor<Collection<SchemaVersion>> versionsCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(schemaJdbcTemplate, atLeastOnce()).batchUpdate(anyString(), versionsCaptor.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        SchemaVersion written = versionsCaptor.getAllValues().stream()
+                .flatMap(Collection::stream)
+                .filter(v -> "fingerprint-v2".equals(v.getSchemaHash()))
+                .findFirst().orElseThrow();
+        assertEquals(2, written.getVersion());
+        assertTrue(written.getIsBreakingChange());
+    }
+
+    @Test
+    void analyzeMetricsAndDetectIncidents_shouldNotTreatErrorBodyAsContractBreak() {
+        Map<String, Object> ok = createTestEvent("GET", "/account", 200, 100, "fingerprint-ok");
+        ok.put("resBodySample", "{\"id\":1,\"name\":\"alice\"}");
+        apiEventConsumer.receiveApiEvent(ok);
+        apiEventConsumer.analyzeMetricsAndDetectIncidents();
+
+        Map<String, Object> error = createTestEvent("GET", "/account", 500, 100, "fingerprint-error");
+        error.put("resBodySample", "{\"error\":\"Internal Server Error\",\"message\":\"boom\"}");
+        apiEventConsumer.receiveApiEvent(error);
+        apiEventConsumer.analyzeMetricsAndDetectIncidents();
+
+        verify(incidentRepository, never()).save(any(Incident.class));
     }
 
     @Test
@@ -301,9 +344,8 @@ public class ApiEventConsumerTest {
         baseline.setEndpointId(endpointId);
         baseline.setMetricWindow(MetricWindowType.TWENTY_FOUR_HOURS);
         baseline.setErrorRatePct(BigDecimal.valueOf(5.0)); // 5% baseline error rate
-        baseline.setRequestCount(100);
-        when(endpointBaselineRepository.findByEndpointIdAndMetricWindow(endpointId, MetricWindowType.TWENTY_FOUR_HOURS))
-                .thenReturn(Optional.of(baseline));
+        baseline.setRequestCount(40); // matches current traffic, so only the error spike fires
+        baselineStore.put(baseline);
 
         // Simulate an existing open incident
         Incident existingIncident = new Incident();
@@ -312,12 +354,40 @@ public class ApiEventConsumerTest {
         existingIncident.setType(IncidentType.ERROR_SPIKE);
         existingIncident.setStatus(IncidentStatus.OPEN);
         existingIncident.setDetectedAt(LocalDateTime.now().minusMinutes(2)); // Within the 5-min window
-        when(incidentRepository.findByEndpointIdAndTypeAndStatusAndDetectedAtBetween(
-            eq(endpointId), eq(IncidentType.ERROR_SPIKE), eq(IncidentStatus.OPEN), any(LocalDateTime.class), any(LocalDateTime.class)))
-            .thenReturn(Optional.of(existingIncident));
+        openIncidentIndex.track(existingIncident);
 
         apiEventConsumer.analyzeMetricsAndDetectIncidents();
 
         verify(incidentRepository, never()).save(any(Incident.class)); // No new incident should be saved
+        assertEquals(Optional.of(existingIncident.getId()), openIncidentIndex.find(endpointId, IncidentType.ERROR_SPIKE));
+    }
+
+    @Test
+    void analyzeMetricsAndDetectIncidents_shouldSkipTickWhilePreviousTickIsRunning() {
+        apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/overlap", 200, 50, null));
+        ReflectionTestUtils.setField(apiEventConsumer, "tickRunning", new AtomicBoolean(true));
+
+        apiEventConsumer.analyzeMetricsAndDetectIncidents();
+
+        assertEquals(1.0, meterRegistry.counter("aare.analyzer.tick.skipped").count());
+        assertNull(meterRegistry.find("aare.analyzer.tick").timer());
+        assertEquals(0, baselineStore.size()); // nothing evaluated, nothing blended
+    }
+
+    @Test
+    void analyzeMetricsAndDetectIncidents_shouldRecordTickAndShardTimings() {
+        ReflectionTestUtils.setField(apiEventConsumer, "tickShards", 4);
+        for (int i = 0; i < 20; i++) {
+            apiEventConsumer.receiveApiEvent(createTestEvent("GET", "/sharded/" + i, 200, 50, null));
+        }
+
+        apiEventConsumer.analyzeMetricsAndDetectIncidents();
+
+        assertEquals(1L, meterRegistry.get("aare.analyzer.tick").timer().count());
+        long shardRuns = meterRegistry.get("aare.analyzer.tick.shard").timers().stream()
+                .mapToLong(timer -> timer.count())
+                .sum();
+        assertTrue(shardRuns > 0 && shardRuns <= 4);
+        assertEquals(60, baselineStore.size()); // 20 endpoints x 3 windows, all evaluated
     }
 }
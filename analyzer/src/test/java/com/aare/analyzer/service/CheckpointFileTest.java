@@ -0,0 +1,61 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.MetricWindowType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void checkpointRestoresEveryEndpointWindow() throws IOException {
+        AtomicLong now = new AtomicLong(0);
+        Map<String, EndpointMetrics> before = new LinkedHashMap<>();
+        for (int e = 0; e < 3; e++) {
+            EndpointMetrics metrics = new EndpointMetrics(now::get);
+            for (int i = 0; i < 100 * (e + 1); i++) {
+                metrics.addEvent(10 + i, i % 10 == 0);
+            }
+            before.put("get:/checkpoint/" + e, metrics);
+        }
+        now.addAndGet(45_000);
+
+        Map<String, byte[]> encoded = new LinkedHashMap<>();
+        before.forEach((id, metrics) -> encoded.put(id, metrics.encode()));
+        Path file = dir.resolve("shard-2.ckpt");
+        CheckpointFile.write(file, 2, 1234L, encoded);
+
+        CheckpointFile.Contents contents = CheckpointFile.read(file);
+        assertEquals(2, contents.shard());
+        assertEquals(1234L, contents.createdAtMillis());
+        assertEquals(before.keySet(), contents.endpoints().keySet());
+        for (Map.Entry<String, byte[]> entry : contents.endpoints().entrySet()) {
+            EndpointMetrics restored = new EndpointMetrics(now::get);
+            restored.merge(entry.getValue());
+            WindowSnapshot expected = before.get(entry.getKey()).snapshot(MetricWindowType.THIRTY_MINUTES);
+            WindowSnapshot actual = restored.snapshot(MetricWindowType.THIRTY_MINUTES);
+            assertEquals(expected.requestCount(), actual.requestCount());
+            assertEquals(expected.errorCount(), actual.errorCount());
+            assertEquals(expected.p99Latency(), actual.p99Latency());
+        }
+        assertFalse(Files.exists(dir.resolve("shard-2.ckpt.tmp")));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotCheckpoints() throws IOException {
+        Path file = dir.resolve("garbage.ckpt");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        assertThrows(IOException.class, () -> CheckpointFile.read(file));
+    }
+}
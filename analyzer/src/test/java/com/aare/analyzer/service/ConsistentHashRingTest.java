@@ -0,0 +1,56 @@
+package com.aare.analyzer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    void keysSpreadEvenlyAcrossMembers() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c", "d"), 64);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf("key-" + i), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertEquals(KEYS / 4.0, count, KEYS / 4.0 * 0.3));
+    }
+
+    @Test
+    void joiningMemberOnlyTakesKeysFromOthers() {
+        List<String> members = new ArrayList<>(List.of("a", "b", "c"));
+        ConsistentHashRing before = new ConsistentHashRing(members, 64);
+        members.add("d");
+        ConsistentHashRing after = new ConsistentHashRing(members, 64);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            String oldOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("d", newOwner); // keys never move between the existing members
+                moved++;
+            }
+        }
+        assertEquals(KEYS / 4.0, moved, KEYS / 4.0 * 0.3);
+    }
+
+    @Test
+    void ownershipDoesNotDependOnMemberOrder() {
+        ConsistentHashRing one = new ConsistentHashRing(List.of("a", "b", "c"), 16);
+        ConsistentHashRing other = new ConsistentHashRing(List.of("c", "a", "b"), 16);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(one.ownerOf("key-" + i), other.ownerOf("key-" + i));
+        }
+        assertNull(new ConsistentHashRing(List.of(), 16).ownerOf("key"));
+    }
+}
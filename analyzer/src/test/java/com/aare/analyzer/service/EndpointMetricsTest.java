@@ -0,0 +1,172 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.MetricWindowType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EndpointMetricsTest {
+
+    @Test
+    void bucketsExpireByRotation() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        EndpointMetrics metrics = new EndpointMetrics(now::get);
+
+        for (int i = 0; i < 10; i++) {
+            metrics.addEvent(100, i < 2);
+        }
+        assertEquals(10, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
+        assertEquals(0, new BigDecimal("20").compareTo(metrics.snapshot(MetricWindowType.FIVE_MINUTES).errorRatePct()));
+
+        now.addAndGet(120_000);
+        metrics.addEvent(100, false);
+        assertEquals(11, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
+
+        // first bucket has rotated out of the 5m view, only the later event remains
+        now.addAndGet(200_000);
+        assertEquals(1, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
+        assertEquals(11, metrics.getRequestCount(MetricWindowType.THIRTY_MINUTES));
+
+        now.addAndGet(300_000);
+        assertEquals(0, metrics.getRequestCount(MetricWindowType.FIVE_MINUTES));
+        assertEquals(0, metrics.snapshot(MetricWindowType.FIVE_MINUTES).p95Latency());
+    }
+
+    @Test
+    void latencyCountsDoNotOverflowPastIntRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(120);
+        for (int i = 0; i < 33; i++) {
+            histogram.add(histogram); // doubles every bucket: 2^33 requests at ~120ms
+        }
+        LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+
+        assertEquals(1L << 33, decoded.getTotalCount());
+        assertEquals(120, decoded.percentile(0.95), 120 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    @Test
+    void oneRecordingRollsUpIntoEveryView() {
+        AtomicLong now = new AtomicLong(0);
+        EndpointMetrics metrics = new EndpointMetrics(now::get);
+        // one event per second for two hours
+        for (int i = 0; i < 7200; i++) {
+            metrics.addEvent(i < 3600 ? 50 : 500, false);
+            now.addAndGet(1000);
+        }
+        Map<MetricWindowType, WindowSnapshot> views = metrics.snapshots();
+        assertEquals(300, views.get(MetricWindowType.FIVE_MINUTES).requestCount(), 10);
+        assertEquals(1800, views.get(MetricWindowType.THIRTY_MINUTES).requestCount(), 60);
+        assertEquals(7200, views.get(MetricWindowType.TWENTY_FOUR_HOURS).requestCount());
+        // a partial read only builds the views asked for; the others keep rolling up
+        assertEquals(Set.of(MetricWindowType.FIVE_MINUTES), metrics.snapshots(EnumSet.of(MetricWindowType.FIVE_MINUTES)).keySet());
+        assertEquals(7200, metrics.getRequestCount(MetricWindowType.TWENTY_FOUR_HOURS));
+        assertEquals(500, views.get(MetricWindowType.THIRTY_MINUTES).p50Latency(), 500 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(50, views.get(MetricWindowType.TWENTY_FOUR_HOURS).p50Latency(), 50 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    @Test
+    void percentilesStayWithinHistogramError() {
+        AtomicLong now = new AtomicLong(0);
+        EndpointMetrics metrics = new EndpointMetrics(now::get);
+        for (int i = 1; i <= 1000; i++) {
+            metrics.addEvent(i, false);
+            now.addAndGet(100);
+        }
+        WindowSnapshot snapshot = metrics.snapshot(MetricWindowType.FIVE_MINUTES);
+        assertEquals(500, snapshot.p50Latency(), 500 * 0.04);
+        assertEquals(950, snapshot.p95Latency(), 950 * 0.04);
+        assertEquals(990, snapshot.p99Latency(), 990 * 0.04);
+    }
+
+    @Test
+    void snapshotsMergeAcrossInstancesWithoutAveragingPercentiles() {
+        AtomicLong now = new AtomicLong(0);
+        EndpointMetrics fast = new EndpointMetrics(now::get);
+        EndpointMetrics slow = new EndpointMetrics(now::get);
+        for (int i = 0; i < 900; i++) fast.addEvent(10, false);
+        for (int i = 0; i < 100; i++) slow.addEvent(2000, true);
+
+        // ship one side over the wire, as another analyzer instance would
+        WindowSnapshot remote = slow.snapshot(MetricWindowType.FIVE_MINUTES);
+        WindowSnapshot decoded = WindowSnapshot.of(remote.requestCount(), remote.errorCount(),
+                LatencyHistogram.decode(remote.latencies().encode()));
+        WindowSnapshot merged = fast.snapshot(MetricWindowType.FIVE_MINUTES).merge(decoded);
+
+        assertEquals(1000, merged.requestCount());
+        assertEquals(0, new BigDecimal("10").compareTo(merged.errorRatePct()));
+        assertEquals(10, merged.p50Latency());
+        assertEquals(2000, merged.p95Latency(), 2000 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(2000, merged.p99Latency(), 2000 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    @Test
+    void concurrentWritersAndReaderLoseNothing() throws Exception {
+        EndpointMetrics metrics = new EndpointMetrics();
+        int threads = 8;
+        int perThread = 50_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < perThread; i++) {
+                    metrics.addEvent(i % 500, i % 10 == 0);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        start.countDown();
+        // reader harvesting while writers run; counts must only ever grow
+        long last = 0;
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            WindowSnapshot snapshot = metrics.snapshot(MetricWindowType.TWENTY_FOUR_HOURS);
+            assertTrue(snapshot.requestCount() >= last);
+            assertEquals(snapshot.requestCount(), snapshot.latencies().getTotalCount());
+            last = snapshot.requestCount();
+        }
+        for (Thread writer : writers) writer.join();
+
+        WindowSnapshot snapshot = metrics.snapshot(MetricWindowType.TWENTY_FOUR_HOURS);
+        assertEquals((long) threads * perThread, snapshot.requestCount());
+        assertEquals((long) threads * perThread / 10, snapshot.errorCount());
+    }
+
+    @Test
+    void encodedStateMergesIntoAnotherInstance() {
+        AtomicLong now = new AtomicLong(0);
+        EndpointMetrics previousOwner = new EndpointMetrics(now::get);
+        for (int i = 0; i < 600; i++) {
+            previousOwner.addEvent(i % 2 == 0 ? 20 : 400, i % 20 == 0);
+            now.addAndGet(1000);
+        }
+        Map<MetricWindowType, WindowSnapshot> expected = previousOwner.snapshots();
+
+        EndpointMetrics newOwner = new EndpointMetrics(now::get);
+        newOwner.merge(previousOwner.encode());
+        Map<MetricWindowType, WindowSnapshot> handedOver = newOwner.snapshots();
+        for (MetricWindowType type : MetricWindowType.values()) {
+            assertEquals(expected.get(type).requestCount(), handedOver.get(type).requestCount());
+            assertEquals(expected.get(type).errorCount(), handedOver.get(type).errorCount());
+            assertEquals(expected.get(type).p95Latency(), handedOver.get(type).p95Latency());
+        }
+
+        // merged state keeps counting with new events
+        newOwner.addEvent(20, false);
+        assertEquals(601, newOwner.getRequestCount(MetricWindowType.TWENTY_FOUR_HOURS));
+    }
+}
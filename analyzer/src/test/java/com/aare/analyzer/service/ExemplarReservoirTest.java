@@ -0,0 +1,65 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.ApiEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExemplarReservoirTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keepsSlowestRecentErrorsAndABoundedSample() {
+        ExemplarReservoir reservoir = new ExemplarReservoir(new ExemplarReservoir.Settings(3, 2, 4, 60_000),
+                clock::get, new Random(42));
+        for (int i = 0; i < 100; i++) {
+            clock.incrementAndGet();
+            int status = i % 10 == 0 ? 500 : i % 10 == 1 ? 503 : i == 99 ? 404 : 200;
+            reservoir.record(event("r" + i, status, i == 50 ? 9_000 : i, "{\"error\":\"boom\"}"), status >= 400);
+        }
+
+        Map<String, Object> data = reservoir.snapshot();
+        List<Map<String, Object>> slowest = (List<Map<String, Object>>) data.get("slowestRequests");
+        assertEquals(List.of("r50", "r99", "r98"), slowest.stream().map(e -> e.get("requestId")).toList());
+
+        Map<String, List<Map<String, Object>>> errors = (Map<String, List<Map<String, Object>>>) data.get("recentErrors");
+        assertEquals(List.of("404", "503"), List.copyOf(errors.keySet())); // 500 was the least recently seen code
+        assertEquals(List.of("r91", "r81", "r71"), errors.get("503").stream().map(e -> e.get("requestId")).toList());
+        assertEquals("{\"er", errors.get("404").get(0).get("resBodySample"));
+
+        assertEquals(3, ((List<?>) data.get("sampledRequests")).size());
+    }
+
+    @Test
+    void exemplarsAgeOutWithTheWindow() {
+        ExemplarReservoir reservoir = new ExemplarReservoir(new ExemplarReservoir.Settings(3, 2, 0, 60_000),
+                clock::get, new Random(42));
+        reservoir.record(event("old", 500, 10, null), true);
+        clock.addAndGet(45_000);
+        reservoir.record(event("new", 200, 10, null), false);
+        clock.addAndGet(30_000); // "old" is now outside the window, "new" still inside
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> slowest = (List<Map<String, Object>>) reservoir.snapshot().get("slowestRequests");
+        assertEquals(List.of("new"), slowest.stream().map(e -> e.get("requestId")).toList());
+
+        clock.addAndGet(200_000);
+        assertTrue(reservoir.snapshot().isEmpty());
+    }
+
+    private static ApiEvent event(String requestId, int status, long latencyMs, String body) {
+        ApiEvent event = new ApiEvent();
+        event.setRequestId(requestId);
+        event.setStatusCode(status);
+        event.setLatencyMs(latencyMs);
+        event.setResBodySample(body);
+        return event;
+    }
+}
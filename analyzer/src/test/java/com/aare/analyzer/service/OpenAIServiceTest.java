@@ -0,0 +1,202 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentSeverity;
+import com.aare.analyzer.model.IncidentType;
+import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import com.aare.analyzer.repository.RcaReportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the client against a local stub of the chat completions endpoint.
+ */
+public class OpenAIServiceTest {
+
+    private static final String RCA_JSON =
+            "{\"root_cause_summary\": \"Pool exhausted\", \"likely_trigger\": \"deploy\", \"confidence\": 0.8}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private volatile Responder responder;
+    private RcaCache rcaCache;
+
+    interface Responder {
+        void respond(HttpExchange exchange, int requestNumber) throws IOException;
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        rcaCache = new RcaCache(mock(RcaReportRepository.class), new SimpleMeterRegistry());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            responder.respond(exchange, requests.incrementAndGet());
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void retriesRateLimitedCallsThenParsesReport() {
+        responder = (exchange, n) -> {
+            if (n == 1) {
+                send(exchange, 429, "application/json", "{\"error\": \"rate limited\"}");
+            } else {
+                send(exchange, 200, "application/json", completion(RCA_JSON));
+            }
+        };
+
+        RcaReport report = service(false, Duration.ZERO).generateRcaReport(incident(), List.of()).block();
+
+        assertEquals(RcaStatus.GENERATED, report.getStatus());
+        assertEquals("Pool exhausted", report.getRootCauseSummary());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        responder = (exchange, n) -> send(exchange, 400, "application/json", "{\"error\": \"bad request\"}");
+
+        RcaReport report = service(false, Duration.ZERO).generateRcaReport(incident(), List.of()).block();
+
+        assertEquals(RcaStatus.FAILED, report.getStatus());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void streamsPartialReportsBeforeTheFinalOne() {
+        responder = (exchange, n) -> {
+            StringBuilder body = new StringBuilder();
+            for (String token : List.of("{\"root_cause_summary\": \"Pool ", "exhausted\", \"likely_trigger\": \"deploy\",",
+                    " \"confidence\": 0.8}")) {
+                body.append("data: ").append(chunk(token)).append("\n\n");
+            }
+            body.append("data: [DONE]\n\n");
+            send(exchange, 200, "text/event-stream", body.toString());
+        };
+
+        List<RcaReport> snapshots = service(true, Duration.ZERO).streamRcaReport(incident(), List.of())
+                .collectList().block();
+
+        RcaReport first = snapshots.get(0);
+        assertEquals(RcaStatus.GENERATING, first.getStatus());
+        assertEquals("Pool ", first.getRootCauseSummary());
+        RcaReport last = snapshots.get(snapshots.size() - 1);
+        assertEquals(RcaStatus.GENERATED, last.getStatus());
+        assertEquals("Pool exhausted", last.getRootCauseSummary());
+    }
+
+    @Test
+    void hedgedRequestAnswersForSlowPrimary() {
+        responder = (exchange, n) -> {
+            if (n == 1) {
+                sleep(3000);
+            }
+            send(exchange, 200, "application/json", completion(RCA_JSON));
+        };
+
+        long start = System.nanoTime();
+        RcaReport report = service(false, Duration.ofMillis(100)).generateRcaReport(incident(), List.of()).block();
+
+        assertEquals(RcaStatus.GENERATED, report.getStatus());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2500);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void recurrenceReusesCachedReportWithoutCallingTheApi() {
+        responder = (exchange, n) -> send(exchange, 200, "application/json", completion(RCA_JSON));
+        OpenAIService service = service(false, Duration.ZERO);
+
+        RcaReport first = service.generateRcaReport(incident(), List.of()).block();
+        first.setId(UUID.randomUUID()); // as persisted
+        rcaCache.remember(first);
+        RcaReport second = service.generateRcaReport(incident(), List.of()).block();
+
+        assertEquals(1, requests.get());
+        assertEquals(first.getId(), second.getReusedFromReportId());
+        assertEquals("Pool exhausted", second.getRootCauseSummary());
+        assertNotEquals(first.getIncidentId(), second.getIncidentId());
+    }
+
+    @Test
+    void partialStringFieldReadsIncompleteJson() {
+        assertEquals("Pool ex", OpenAIService.partialStringField("{\"root_cause_summary\": \"Pool ex", "root_cause_summary"));
+        assertEquals("a \"b\"\n", OpenAIService.partialStringField("{\"f\":\"a \\\"b\\\"\\n\"}", "f"));
+        assertNull(OpenAIService.partialStringField("{\"root_cause_summary\": ", "root_cause_summary"));
+    }
+
+    private OpenAIService service(boolean stream, Duration hedgeDelay) {
+        OpenAIService.Settings settings = new OpenAIService.Settings("test-key",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "test-model", stream,
+                Duration.ofSeconds(10), Duration.ofSeconds(5), 2, Duration.ofMillis(10), hedgeDelay, Duration.ZERO, 4, 3000, 5);
+        return new OpenAIService(WebClient.builder(), objectMapper, OpenTelemetry.noop().getTracer("test"),
+                new SimpleMeterRegistry(), rcaCache, settings);
+    }
+
+    private String completion(String content) throws IOException {
+        return objectMapper.writeValueAsString(Map.of("choices", List.of(Map.of("message", Map.of("content", content)))));
+    }
+
+    private String chunk(String token) throws IOException {
+        return objectMapper.writeValueAsString(Map.of("choices", List.of(Map.of("delta", Map.of("content", token)))));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Incident incident() {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId("get:/orders");
+        incident.setType(IncidentType.ERROR_SPIKE);
+        incident.setSeverity(IncidentSeverity.HIGH);
+        incident.setDetectedAt(LocalDateTime.now());
+        return incident;
+    }
+}
@@ -0,0 +1,121 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentStatus;
+import com.aare.analyzer.model.IncidentType;
+import com.aare.analyzer.repository.IncidentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OpenIncidentIndexTest {
+
+    private static final String ENDPOINT = "get:/orders";
+
+    private IncidentRepository incidentRepository;
+    private JdbcTemplate jdbcTemplate;
+    private OpenIncidentIndex index;
+
+    @BeforeEach
+    void setUp() {
+        incidentRepository = mock(IncidentRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new OpenIncidentIndex(incidentRepository, jdbcTemplate);
+    }
+
+    @Test
+    void repeatedDetectionExtendsOpenIncident() {
+        LocalDateTime start = LocalDateTime.now();
+        UUID id = UUID.randomUUID();
+        assertTrue(index.tryOpen(ENDPOINT, IncidentType.ERROR_SPIKE, start));
+        index.opened(ENDPOINT, IncidentType.ERROR_SPIKE, id);
+
+        // an hour later the condition is still there: same incident, no new claim
+        assertFalse(index.tryOpen(ENDPOINT, IncidentType.ERROR_SPIKE, start.plusHours(1)));
+        assertTrue(index.tryOpen(ENDPOINT, IncidentType.LATENCY_REGRESSION, start.plusHours(1)));
+
+        assertEquals(1, index.flush());
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        assertEquals(0, index.flush()); // nothing new since
+    }
+
+    @Test
+    void resolvedIncidentLeavesIndexAndAckDoesNot() {
+        Incident incident = incident(IncidentStatus.OPEN);
+        index.track(incident);
+
+        index.receiveStatusChange(Map.of("incidentId", incident.getId().toString(), "endpointId", ENDPOINT,
+                "type", "ERROR_SPIKE", "status", "ACKNOWLEDGED"));
+        assertEquals(Optional.of(IncidentStatus.ACKNOWLEDGED), index.statusOf(ENDPOINT, IncidentType.ERROR_SPIKE));
+
+        index.statusChanged(incident.getId(), ENDPOINT, IncidentType.ERROR_SPIKE, IncidentStatus.RESOLVED);
+        assertEquals(Optional.empty(), index.find(ENDPOINT, IncidentType.ERROR_SPIKE));
+        assertTrue(index.tryOpen(ENDPOINT, IncidentType.ERROR_SPIKE, LocalDateTime.now()));
+    }
+
+    @Test
+    void resyncDropsClosedIncidentsButKeepsPendingClaims() {
+        Incident stale = incident(IncidentStatus.OPEN);
+        index.track(stale);
+        index.tryOpen(ENDPOINT, IncidentType.TRAFFIC_DROP, LocalDateTime.now()); // still being created
+        Incident other = incident(IncidentStatus.INVESTIGATING);
+        other.setType(IncidentType.LATENCY_REGRESSION);
+        when(incidentRepository.findByStatusIn(OpenIncidentIndex.ACTIVE_STATUSES)).thenReturn(List.of(other));
+
+        index.resync();
+
+        assertEquals(Optional.empty(), index.find(ENDPOINT, IncidentType.ERROR_SPIKE));
+        assertEquals(Optional.of(other.getId()), index.find(ENDPOINT, IncidentType.LATENCY_REGRESSION));
+        assertFalse(index.tryOpen(ENDPOINT, IncidentType.TRAFFIC_DROP, LocalDateTime.now()));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void resyncKeepsIncidentsOpenedWhileItsQueryRan() {
+        UUID id = UUID.randomUUID();
+        when(incidentRepository.findByStatusIn(OpenIncidentIndex.ACTIVE_STATUSES)).thenAnswer(invocation -> {
+            // opened after the snapshot was read, so the query result does not contain it
+            index.tryOpen(ENDPOINT, IncidentType.ERROR_SPIKE, LocalDateTime.now());
+            index.opened(ENDPOINT, IncidentType.ERROR_SPIKE, id);
+            return List.of();
+        });
+
+        index.resync();
+
+        assertEquals(Optional.of(id), index.find(ENDPOINT, IncidentType.ERROR_SPIKE));
+    }
+
+    @Test
+    void loadEndpointsAddsIncidentsOpenedByThePreviousOwner() {
+        Incident owned = incident(IncidentStatus.OPEN);
+        Incident elsewhere = incident(IncidentStatus.OPEN);
+        elsewhere.setEndpointId("get:/users");
+        when(incidentRepository.findByStatusIn(OpenIncidentIndex.ACTIVE_STATUSES)).thenReturn(List.of(owned, elsewhere));
+
+        assertEquals(1, index.loadEndpoints(ENDPOINT::equals));
+
+        assertEquals(Optional.of(owned.getId()), index.find(ENDPOINT, IncidentType.ERROR_SPIKE));
+        assertEquals(Optional.empty(), index.find("get:/users", IncidentType.ERROR_SPIKE));
+        assertFalse(index.tryOpen(ENDPOINT, IncidentType.ERROR_SPIKE, LocalDateTime.now()));
+    }
+
+    private static Incident incident(IncidentStatus status) {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId(ENDPOINT);
+        incident.setType(IncidentType.ERROR_SPIKE);
+        incident.setStatus(status);
+        incident.setDetectedAt(LocalDateTime.now().minusMinutes(30));
+        return incident;
+    }
+}
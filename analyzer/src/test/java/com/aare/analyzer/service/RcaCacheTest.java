@@ -0,0 +1,46 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.RcaReport;
+import com.aare.analyzer.model.RcaStatus;
+import com.aare.analyzer.repository.RcaReportRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RcaCacheTest {
+
+    @Test
+    void load_shouldKeepTheNewestReportForARepeatedSignature() {
+        LocalDateTime now = LocalDateTime.now();
+        RcaReport newest = report("sig-a", now.minusMinutes(5));
+        RcaReport other = report("sig-b", now.minusMinutes(10));
+        RcaReport oldest = report("sig-a", now.minusMinutes(30));
+        RcaReportRepository repository = mock(RcaReportRepository.class);
+        // the repository returns newest first
+        when(repository.findBySignatureIsNotNullAndReusedFromReportIdIsNullAndStatusAndCreatedAtAfterOrderByCreatedAtDesc(
+                eq(RcaStatus.GENERATED), any(), any())).thenReturn(List.of(newest, other, oldest));
+        RcaCache cache = new RcaCache(repository, new SimpleMeterRegistry());
+
+        cache.load();
+
+        assertEquals(2, cache.size());
+        assertEquals(newest.getId(), cache.lookup("sig-a").orElseThrow().getId());
+        assertEquals(other.getId(), cache.lookup("sig-b").orElseThrow().getId());
+    }
+
+    private static RcaReport report(String signature, LocalDateTime createdAt) {
+        RcaReport report = new RcaReport();
+        report.setId(UUID.randomUUID());
+        report.setSignature(signature);
+        report.setStatus(RcaStatus.GENERATED);
+        report.setCreatedAt(createdAt);
+        return report;
+    }
+}
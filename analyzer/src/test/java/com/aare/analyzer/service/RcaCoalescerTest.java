@@ -0,0 +1,58 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentSeverity;
+import com.aare.analyzer.model.IncidentType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RcaCoalescerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void groupsByServiceAndTimeProximityWithMostSevereFirst() {
+        Incident orders1 = incident("get:/orders", IncidentSeverity.MEDIUM, 0);
+        Incident orders2 = incident("post:/orders", IncidentSeverity.HIGH, 30);
+        Incident ordersLater = incident("get:/orders/{id}", IncidentSeverity.HIGH, 600);
+        Incident users = incident("get:/users", IncidentSeverity.HIGH, 10);
+        Map<String, String> services = Map.of("get:/orders", "orders", "post:/orders", "orders",
+                "get:/orders/{id}", "orders", "get:/users", "users");
+
+        List<List<Incident>> groups = RcaCoalescer.group(List.of(orders1, users, ordersLater, orders2),
+                services::get, Duration.ofMinutes(2), 20);
+
+        assertEquals(3, groups.size());
+        assertEquals(List.of(orders2, orders1), groups.get(0));
+        assertEquals(List.of(ordersLater), groups.get(1));
+        assertEquals(List.of(users), groups.get(2));
+    }
+
+    @Test
+    void splitsGroupsBeyondMaxSize() {
+        List<Incident> incidents = List.of(incident("a", IncidentSeverity.LOW, 0), incident("b", IncidentSeverity.LOW, 1),
+                incident("c", IncidentSeverity.LOW, 2));
+
+        List<List<Incident>> groups = RcaCoalescer.group(incidents, endpoint -> "svc", Duration.ofMinutes(2), 2);
+
+        assertEquals(2, groups.size());
+        assertEquals(2, groups.get(0).size());
+    }
+
+    private static Incident incident(String endpointId, IncidentSeverity severity, int secondsAfter) {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId(endpointId);
+        incident.setType(IncidentType.ERROR_SPIKE);
+        incident.setSeverity(severity);
+        incident.setDetectedAt(T0.plusSeconds(secondsAfter));
+        return incident;
+    }
+}
@@ -0,0 +1,85 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RcaPromptBuilderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compactsEvidenceIntoDeltasAndTopKExemplars() throws Exception {
+        List<Map<String, Object>> samples = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            samples.add(Map.of("status", 500, "latencyMs", 900 - i));
+        }
+        IncidentEvidence metrics = evidence(EvidenceType.METRICS, Map.of(
+                "currentErrorRate", 25.0, "baselineErrorRate", 5.0,
+                "currentLatencyHistogram", List.of(1, 4, 9), "baselineLatencyHistogram", List.of(5, 4, 1),
+                "samples", samples));
+
+        String prompt = new RcaPromptBuilder(objectMapper, 3000, 3).build(incident(), List.of(metrics));
+
+        assertTrue(prompt.contains("\"errorRateDelta\":[25,5,5]"), prompt);
+        assertTrue(prompt.contains("\"latencyHistogramDelta\":[-4,0,8]"), prompt);
+        assertTrue(prompt.contains("\"+17 more\""), prompt);
+        assertFalse(prompt.contains("baselineErrorRate"));
+        assertFalse(prompt.contains("\n  "), "not pretty-printed");
+    }
+
+    @Test
+    void staysWithinBudgetKeepingMostRelevantEvidence() throws Exception {
+        List<IncidentEvidence> evidences = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            evidences.add(evidence(EvidenceType.LOGS, Map.of("line", "x".repeat(280))));
+        }
+        evidences.add(evidence(EvidenceType.SCHEMA_DIFF, Map.of("removedFields", List.of("total"))));
+
+        int budget = 600;
+        String prompt = new RcaPromptBuilder(objectMapper, budget, 5).build(incident(), evidences);
+
+        assertTrue(RcaPromptBuilder.estimateTokens(RcaPromptBuilder.SYSTEM_PROMPT)
+                + RcaPromptBuilder.estimateTokens(prompt) <= budget);
+        assertTrue(prompt.indexOf("SCHEMA_DIFF") < prompt.indexOf("LOGS"));
+        assertTrue(prompt.contains("evidence items omitted"));
+    }
+
+    @Test
+    void describesGroupByHowItWasFormed() throws Exception {
+        RcaPromptBuilder builder = new RcaPromptBuilder(objectMapper, 3000, 5);
+        Incident primary = incident();
+        Incident child = incident();
+        child.setEndpointId("get:/payments");
+        child.setParentIncidentId(primary.getId());
+        Incident sameService = incident();
+
+        assertTrue(builder.build(primary, List.of(child), List.of()).contains("possibly on other services"));
+        assertTrue(builder.build(primary, List.of(sameService), List.of()).contains("on the same service"));
+    }
+
+    private static IncidentEvidence evidence(EvidenceType type, Map<String, Object> data) {
+        IncidentEvidence evidence = new IncidentEvidence();
+        evidence.setEvidenceType(type);
+        evidence.setData(data);
+        evidence.setCreatedAt(LocalDateTime.now());
+        return evidence;
+    }
+
+    private static Incident incident() {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId("get:/orders");
+        incident.setType(IncidentType.ERROR_SPIKE);
+        incident.setSeverity(IncidentSeverity.HIGH);
+        return incident;
+    }
+}
@@ -0,0 +1,86 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EvidenceType;
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentEvidence;
+import com.aare.analyzer.model.IncidentType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RcaSignatureTest {
+
+    @Test
+    void similarSpikesShareASignature() {
+        String a = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(24.0, 5.0, 1200)));
+        String b = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(26.5, 5.2, 40)));
+
+        assertEquals(a, b); // same ~5x ratio; volume differs
+    }
+
+    @Test
+    void differentShapeTypeOrEvidenceChangeTheSignature() {
+        String base = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(24.0, 5.0, 100)));
+
+        assertNotEquals(base, RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(90.0, 5.0, 100))));
+        assertNotEquals(base, RcaSignature.of(incident(IncidentType.LATENCY_REGRESSION), List.of(metrics(24.0, 5.0, 100))));
+
+        IncidentEvidence schemaDiff = evidence(EvidenceType.SCHEMA_DIFF, Map.of("removedFields", List.of("total"),
+                "detectedAt", LocalDateTime.now().toString()));
+        String withDiff = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(24.0, 5.0, 100), schemaDiff));
+        assertNotEquals(base, withDiff);
+
+        // timestamps inside evidence do not matter
+        IncidentEvidence laterDiff = evidence(EvidenceType.SCHEMA_DIFF, Map.of("removedFields", List.of("total"),
+                "detectedAt", LocalDateTime.now().plusHours(3).toString()));
+        assertEquals(withDiff, RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(laterDiff, metrics(24.0, 5.0, 100))));
+    }
+
+    @Test
+    void sampledRequestsDoNotChangeTheSignatureButTheirErrorStatusesDo() {
+        IncidentEvidence first = evidence(EvidenceType.LOGS, Map.of(
+                "recentErrors", Map.of("503", List.of(Map.of("requestId", "r1", "resBodySample", "upstream timeout"))),
+                "sampledRequests", List.of(Map.of("requestId", "r7", "query", "page=2", "statusCode", 200))));
+        IncidentEvidence second = evidence(EvidenceType.LOGS, Map.of(
+                "recentErrors", Map.of("503", List.of(Map.of("requestId", "r9", "resBodySample", "no healthy upstream"))),
+                "sampledRequests", List.of(Map.of("requestId", "r4", "query", "page=9", "statusCode", 503))));
+        IncidentEvidence otherStatus = evidence(EvidenceType.LOGS, Map.of(
+                "recentErrors", Map.of("500", List.of(Map.of("requestId", "r9")))));
+
+        String a = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(24.0, 5.0, 100), first));
+        String b = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(25.0, 5.0, 300), second));
+        String c = RcaSignature.of(incident(IncidentType.ERROR_SPIKE), List.of(metrics(24.0, 5.0, 100), otherStatus));
+
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+    }
+
+    private static Incident incident(IncidentType type) {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId("post:/checkout");
+        incident.setType(type);
+        return incident;
+    }
+
+    private static IncidentEvidence metrics(double current, double baseline, long windowRequests) {
+        return evidence(EvidenceType.METRICS, Map.of(
+                "currentErrorRate", BigDecimal.valueOf(current),
+                "baselineErrorRate", BigDecimal.valueOf(baseline),
+                "factor", BigDecimal.valueOf(2.0),
+                "windowRequests", windowRequests));
+    }
+
+    private static IncidentEvidence evidence(EvidenceType type, Map<String, Object> data) {
+        IncidentEvidence evidence = new IncidentEvidence();
+        evidence.setEvidenceType(type);
+        evidence.setData(data);
+        return evidence;
+    }
+}
@@ -0,0 +1,154 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.*;
+import com.aare.analyzer.repository.IncidentEvidenceRepository;
+import com.aare.analyzer.repository.IncidentRepository;
+import com.aare.analyzer.repository.RcaReportRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class RcaWorkerTest {
+
+    private IncidentRepository incidentRepository;
+    private IncidentEvidenceRepository incidentEvidenceRepository;
+    private RcaReportRepository rcaReportRepository;
+    private OpenAIService openAIService;
+    private RcaWorker rcaWorker;
+
+    @BeforeEach
+    void setUp() {
+        incidentRepository = mock(IncidentRepository.class);
+        incidentEvidenceRepository = mock(IncidentEvidenceRepository.class);
+        rcaReportRepository = mock(RcaReportRepository.class);
+        openAIService = mock(OpenAIService.class);
+        ShardOwnership shardOwnership = mock(ShardOwnership.class);
+        when(shardOwnership.liveMemberCount()).thenReturn(1);
+
+        Tracer tracer = mock(Tracer.class);
+        SpanBuilder spanBuilder = mock(SpanBuilder.class, RETURNS_SELF);
+        when(tracer.spanBuilder(anyString())).thenReturn(spanBuilder);
+        when(spanBuilder.startSpan()).thenReturn(mock(Span.class, RETURNS_MOCKS));
+
+        rcaWorker = new RcaWorker(incidentRepository, incidentEvidenceRepository, rcaReportRepository,
+                openAIService, new RuleBasedRcaEngine(), mock(RcaCache.class), shardOwnership, tracer,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void generatesAndStoresReport() {
+        Incident incident = incident();
+        RcaReport report = new RcaReport();
+        report.setStatus(RcaStatus.GENERATED);
+        when(openAIService.isEnabled()).thenReturn(true);
+        RcaReport partial = new RcaReport();
+        partial.setStatus(RcaStatus.GENERATING);
+        when(openAIService.streamRcaReport(incident, List.of())).thenReturn(Flux.just(partial, report));
+        UUID reportId = UUID.randomUUID();
+        when(rcaReportRepository.save(any(RcaReport.class))).thenAnswer(invocation -> {
+            RcaReport saved = invocation.getArgument(0);
+            saved.setId(reportId);
+            return saved;
+        });
+
+        rcaWorker.generateRca(job(incident.getId()));
+
+        // the partial snapshot and the final report land on the same row as the rule-based report
+        verify(rcaReportRepository).save(partial);
+        verify(rcaReportRepository).save(report);
+        assertEquals(reportId, report.getId());
+        // until the LLM gets there, the partial shows the rule-based findings
+        assertEquals("PATCH", partial.getRollbackVsPatchRecommendation());
+    }
+
+    @Test
+    void keepsRuleBasedReportWithoutApiKeyOrOnFailure() {
+        Incident incident = incident();
+        RcaReport ruleBased = new RuleBasedRcaEngine().analyze(incident, List.of());
+        ruleBased.setId(UUID.randomUUID());
+        when(rcaReportRepository.findFirstByIncidentId(incident.getId())).thenReturn(Optional.of(ruleBased));
+
+        rcaWorker.generateRca(job(incident.getId()));
+
+        verify(openAIService, never()).streamRcaReport(any(), any());
+        verify(rcaReportRepository, never()).save(any());
+
+        RcaReport failed = new RcaReport();
+        failed.setStatus(RcaStatus.FAILED);
+        when(openAIService.isEnabled()).thenReturn(true);
+        when(openAIService.streamRcaReport(incident, List.of())).thenReturn(Flux.just(failed));
+
+        rcaWorker.generateRca(job(incident.getId()));
+
+        verify(rcaReportRepository, never()).save(any());
+    }
+
+    @Test
+    void groupJobMakesOneCallAndLinksReportToEveryMember() {
+        Incident primary = incident();
+        Incident member = incident();
+        member.setEndpointId("post:/orders");
+        when(incidentRepository.findAllById(List.of(member.getId()))).thenReturn(List.of(member));
+        when(incidentEvidenceRepository.findByIncidentIdIn(List.of(primary.getId(), member.getId()))).thenReturn(List.of());
+        RcaReport report = new RcaReport();
+        report.setStatus(RcaStatus.GENERATED);
+        report.setRootCauseSummary("Shared database is down");
+        when(openAIService.isEnabled()).thenReturn(true);
+        when(openAIService.streamRcaReport(primary, List.of(member), List.of())).thenReturn(Flux.just(report));
+        when(rcaReportRepository.save(any(RcaReport.class))).thenAnswer(invocation -> {
+            RcaReport saved = invocation.getArgument(0);
+            if (saved.getId() == null) saved.setId(UUID.randomUUID());
+            return saved;
+        });
+
+        rcaWorker.generateRca(Map.of("incidentId", primary.getId().toString(), "severity", "HIGH",
+                "incidentIds", List.of(primary.getId().toString(), member.getId().toString())));
+
+        verify(openAIService, times(1)).streamRcaReport(primary, List.of(member), List.of());
+        verify(rcaReportRepository).save(argThat(r -> member.getId().equals(r.getIncidentId())
+                && r.getStatus() == RcaStatus.GENERATED
+                && report.getId().equals(r.getReusedFromReportId())
+                && "Shared database is down".equals(r.getRootCauseSummary())));
+    }
+
+    @Test
+    void redeliveredJobIsSkipped() {
+        UUID incidentId = UUID.randomUUID();
+        RcaReport finished = new RcaReport();
+        finished.setStatus(RcaStatus.GENERATED);
+        when(rcaReportRepository.findFirstByIncidentId(incidentId)).thenReturn(Optional.of(finished));
+
+        rcaWorker.generateRca(job(incidentId));
+
+        verifyNoInteractions(openAIService);
+        verify(rcaReportRepository, never()).save(any());
+    }
+
+    private Incident incident() {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId("get:/orders");
+        incident.setType(IncidentType.ERROR_SPIKE);
+        incident.setSeverity(IncidentSeverity.HIGH);
+        when(incidentRepository.findById(incident.getId())).thenReturn(Optional.of(incident));
+        when(incidentEvidenceRepository.findByIncidentId(incident.getId())).thenReturn(List.of());
+        return incident;
+    }
+
+    private static Map<String, Object> job(UUID incidentId) {
+        return Map.of("incidentId", incidentId.toString(), "severity", "HIGH",
+                "requestedAt", System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,74 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleBasedRcaEngineTest {
+
+    private final RuleBasedRcaEngine engine = new RuleBasedRcaEngine();
+
+    @Test
+    void latencyRegressionWithoutErrorsPointsDownstream() {
+        RcaReport report = engine.analyze(incident(IncidentType.LATENCY_REGRESSION),
+                List.of(metrics(Map.of("currentP95Latency", 900, "baselineP95Latency", 300,
+                        "currentErrorRate", 0.6, "baselineErrorRate", 0.5))));
+
+        assertEquals(RcaStatus.RULE_BASED, report.getStatus());
+        assertEquals("Slower downstream dependency or resource saturation", report.getLikelyTrigger());
+        assertEquals("PATCH", report.getRollbackVsPatchRecommendation());
+        assertTrue(report.getSeverityReason().contains("p95 latency x3.0"));
+    }
+
+    @Test
+    void latencyRegressionWithRisingErrorsPointsToTimeouts() {
+        RcaReport report = engine.analyze(incident(IncidentType.LATENCY_REGRESSION),
+                List.of(metrics(Map.of("currentP95Latency", 5000, "baselineP95Latency", 300,
+                        "currentErrorRate", 12.0, "baselineErrorRate", 0.5))));
+
+        assertEquals("Dependency slowdown causing timeouts", report.getLikelyTrigger());
+    }
+
+    @Test
+    void schemaChangeWithErrorsRecommendsRollback() {
+        IncidentEvidence schemaDiff = new IncidentEvidence();
+        schemaDiff.setEvidenceType(EvidenceType.SCHEMA_DIFF);
+        schemaDiff.setData(Map.of("removedFields", List.of("total")));
+
+        RcaReport report = engine.analyze(incident(IncidentType.ERROR_SPIKE), List.of(schemaDiff,
+                metrics(Map.of("currentErrorRate", 30.0, "baselineErrorRate", 1.0))));
+
+        assertEquals("ROLLBACK", report.getRollbackVsPatchRecommendation());
+        assertEquals(0, report.getConfidence().compareTo(new java.math.BigDecimal("0.8")));
+    }
+
+    @Test
+    void trafficCollapseBlamesUpstream() {
+        RcaReport report = engine.analyze(incident(IncidentType.TRAFFIC_DROP),
+                List.of(metrics(Map.of("currentRequestCount", 2, "baselineRequestCount", 400))));
+
+        assertEquals("Upstream routing or client outage", report.getLikelyTrigger());
+        assertEquals(List.of("get:/orders"), report.getAffectedEndpoints());
+    }
+
+    private static IncidentEvidence metrics(Map<String, Object> data) {
+        IncidentEvidence evidence = new IncidentEvidence();
+        evidence.setEvidenceType(EvidenceType.METRICS);
+        evidence.setData(data);
+        return evidence;
+    }
+
+    private static Incident incident(IncidentType type) {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId("get:/orders");
+        incident.setType(type);
+        incident.setSeverity(IncidentSeverity.MEDIUM);
+        return incident;
+    }
+}
@@ -0,0 +1,91 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.SchemaVersion;
+import com.aare.analyzer.repository.SchemaVersionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SchemaRegistryTest {
+
+    private static final String ENDPOINT = "get:/orders";
+    private static final String V1 = "{\"id\": 1, \"total\": 9.5, \"items\": [{\"sku\": \"a\"}], \"note\": \"x\"}";
+
+    private SchemaVersionRepository schemaVersionRepository;
+    private JdbcTemplate jdbcTemplate;
+    private SchemaRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        schemaVersionRepository = mock(SchemaVersionRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        registry = new SchemaRegistry(schemaVersionRepository, jdbcTemplate, new ObjectMapper());
+    }
+
+    @Test
+    void removedFieldOrTypeChangeIsBreakingAddedFieldIsNot() {
+        assertTrue(observe("h1", V1).isEmpty()); // first version
+
+        SchemaRegistry.SchemaChange added = observe("h2",
+                "{\"id\": 1, \"total\": 9.5, \"items\": [{\"sku\": \"a\"}], \"note\": null, \"currency\": \"EUR\"}").get(0);
+        assertFalse(added.breaking());
+        assertEquals(List.of("currency"), added.addedFields());
+
+        SchemaRegistry.SchemaChange broken = observe("h3",
+                "{\"id\": \"1\", \"items\": [{\"code\": \"a\"}], \"note\": null, \"currency\": \"EUR\"}").get(0);
+        assertTrue(broken.breaking());
+        assertEquals(List.of("items[].sku", "total"), broken.removedFields());
+        assertEquals(List.of("id: NUMBER -> STRING"), broken.typeChanges());
+        assertEquals(3, broken.current().getVersion());
+        assertTrue(broken.current().getIsBreakingChange());
+    }
+
+    @Test
+    void flappingBetweenKnownVersionsIsAbsorbed() {
+        observe("h1", V1);
+        assertEquals(1, observe("h2", "{\"id\": 1}").size());
+
+        assertTrue(observe("h1", V1).isEmpty());
+        assertTrue(observe("h2", "{\"id\": 1}").isEmpty());
+
+        // two versions, each written once and then only re-touched
+        assertEquals(2, registry.flush());
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList(), eq(2), any());
+    }
+
+    @Test
+    void emptyArrayDoesNotRemoveItsElementFields() {
+        observe("h1", V1);
+
+        SchemaRegistry.SchemaChange change = observe("h2", "{\"id\": 1, \"total\": 2, \"items\": [], \"note\": \"y\"}").get(0);
+
+        assertFalse(change.breaking());
+    }
+
+    @Test
+    void numbersNewVersionsAfterStoredOnes() {
+        SchemaVersion stored = new SchemaVersion();
+        stored.setSchemaHash("h7");
+        stored.setVersion(7);
+        stored.setInferredTypes(registry.inferTypes(V1));
+        when(schemaVersionRepository.findByEndpointIdOrderByVersionDesc(eq(ENDPOINT), any())).thenReturn(List.of(stored));
+
+        SchemaRegistry.SchemaChange change = observe("h8", "{\"id\": 1}").get(0);
+
+        assertEquals(7, change.previous().getVersion());
+        assertEquals(8, change.current().getVersion());
+    }
+
+    private List<SchemaRegistry.SchemaChange> observe(String hash, String body) {
+        registry.offer(ENDPOINT, hash, body);
+        return registry.process(ENDPOINT, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,83 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EndpointBaseline;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeasonalBaselineTest {
+
+    private static final SeasonalBaseline.Settings SETTINGS = new SeasonalBaseline.Settings(0.0005, 0.02, 0.01);
+    // a Monday
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static WindowSnapshot window(long requests, long errors, long latency) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (int i = 0; i < requests; i++) latencies.record(latency);
+        return WindowSnapshot.of(requests, errors, latencies);
+    }
+
+    @Test
+    void learnsDailyPattern() {
+        SeasonalBaseline model = new SeasonalBaseline(SETTINGS);
+        // two weeks of one observation per minute: busy 09:00-17:59, quiet otherwise
+        for (LocalDateTime t = START; t.isBefore(START.plusWeeks(2)); t = t.plusMinutes(1)) {
+            boolean business = t.getHour() >= 9 && t.getHour() < 18;
+            model.observe(t, window(business ? 1000 : 100, 0, 50));
+        }
+        LocalDateTime nextMonday = START.plusWeeks(2);
+        double business = model.expected(nextMonday.withHour(11)).requestCount();
+        double night = model.expected(nextMonday.withHour(3)).requestCount();
+        assertEquals(1000, business, 200);
+        assertEquals(100, night, 100);
+        // a flat baseline would sit near the daily mean (~440) for both
+    }
+
+    @Test
+    void latencyPercentilesComeFromTheDecayedDistribution() {
+        SeasonalBaseline model = new SeasonalBaseline(SETTINGS);
+        LocalDateTime t = START;
+        // 90% of the windows are fast, 10% slow: the p95 of the mixture is slow, p50 fast;
+        // averaging the windows' p95 values would give ~95ms instead
+        for (int i = 0; i < 2000; i++, t = t.plusMinutes(1)) {
+            model.observe(t, window(100, 0, i % 10 == 0 ? 500 : 50));
+        }
+        SeasonalBaseline.Expected expected = model.expected(t);
+        assertEquals(50, expected.p50Latency(), 50 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(500, expected.p99Latency(), 500 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    @Test
+    void encodeDecodeRoundTrips() {
+        SeasonalBaseline model = new SeasonalBaseline(SETTINGS);
+        LocalDateTime t = START;
+        for (int i = 0; i < 500; i++, t = t.plusMinutes(7)) {
+            model.observe(t, window(100 + i % 50, i % 7, 20 + i % 300));
+        }
+        SeasonalBaseline restored = SeasonalBaseline.decode(model.encode(), SETTINGS);
+        for (int h = 0; h < SeasonalBaseline.SLOTS; h += 5) {
+            assertEquals(model.expected(START.plusHours(h)), restored.expected(START.plusHours(h)));
+        }
+    }
+
+    @Test
+    void seededFromLegacyBaselineRow() {
+        EndpointBaseline row = new EndpointBaseline();
+        row.setRequestCount(400);
+        row.setErrorRatePct(BigDecimal.valueOf(2.5));
+        row.setP50LatencyMs(40);
+        row.setP95LatencyMs(200);
+        row.setP99LatencyMs(900);
+
+        SeasonalBaseline.Expected expected = SeasonalBaseline.seededFrom(row, SETTINGS).expected(START);
+        assertEquals(400, expected.requestCount(), 0.001);
+        assertEquals(2.5, expected.errorRatePct(), 0.001);
+        assertEquals(40, expected.p50Latency(), 40 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(200, expected.p95Latency(), 200 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(900, expected.p99Latency(), 900 * LatencyHistogram.RELATIVE_ERROR);
+        assertNull(new SeasonalBaseline(SETTINGS).expected(START));
+    }
+}
@@ -0,0 +1,93 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.config.AnalysisShards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ShardOwnershipTest {
+
+    private static final String MEMBER = "analyzer-1";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private RabbitListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private MessageListenerContainer container;
+    @Mock
+    private ApiEventConsumer apiEventConsumer;
+    @Mock
+    private BaselineStore baselineStore;
+    @Mock
+    private MetricsCheckpoint metricsCheckpoint;
+    @Mock
+    private OpenIncidentIndex openIncidentIndex;
+
+    private ShardOwnership ownership;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ownership = new ShardOwnership(jdbcTemplate, listenerRegistry, new AnalysisShards(1), apiEventConsumer,
+                baselineStore, metricsCheckpoint, openIncidentIndex);
+        ReflectionTestUtils.setField(ownership, "configuredMemberId", MEMBER);
+        ReflectionTestUtils.setField(ownership, "leaseTtlMs", 15000L);
+        ReflectionTestUtils.setField(ownership, "virtualNodes", 8);
+
+        when(listenerRegistry.getListenerContainer(AnalysisShards.listenerId(0))).thenReturn(container);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.queryForList(contains("FROM analyzer_member"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of(MEMBER));
+        // the previous owner died holding the lease and handed nothing over
+        when(jdbcTemplate.queryForList(contains("SELECT owner_id"), any(Object[].class)))
+                .thenReturn(List.of(Map.of("owner_id", "analyzer-0")));
+        when(jdbcTemplate.queryForList(contains("analyzer_shard_handover"), any(Object[].class)))
+                .thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ownership.leave();
+    }
+
+    @Test
+    void rebalance_shouldKeepRenewingTheLeaseWhileTheShardIsRestored() throws Exception {
+        CountDownLatch replaying = new CountDownLatch(1);
+        CountDownLatch finishReplay = new CountDownLatch(1);
+        when(metricsCheckpoint.restore(0)).thenAnswer(invocation -> {
+            replaying.countDown();
+            assertTrue(finishReplay.await(10, TimeUnit.SECONDS));
+            return 0;
+        });
+
+        ownership.rebalance(); // acquires the shard and hands the restore to the activation thread
+        assertTrue(replaying.await(10, TimeUnit.SECONDS));
+        ownership.rebalance(); // the next heartbeat is not held up by the replay
+
+        verify(jdbcTemplate).update(contains("UPDATE analyzer_shard_lease"), eq(15000L), eq(0), eq(MEMBER));
+        verify(container, never()).start();
+        assertEquals(Set.of(0), ownership.getOwnedShards()); // leased, not consuming yet
+
+        finishReplay.countDown();
+        verify(container, timeout(10_000)).start();
+        verify(openIncidentIndex).loadEndpoints(any());
+        assertEquals(Set.of(0), ownership.getOwnedShards());
+    }
+}
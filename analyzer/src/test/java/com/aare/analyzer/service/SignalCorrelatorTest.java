@@ -0,0 +1,54 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.Incident;
+import com.aare.analyzer.model.IncidentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignalCorrelatorTest {
+
+    @Test
+    void clustersIncidentsOnEndpointsWhoseSignalsMoveTogether() {
+        SignalCorrelator correlator = new SignalCorrelator();
+        for (long tick = 1; tick <= 10; tick++) {
+            double load = tick < 8 ? 1 : 30; // shared dependency fails at tick 8
+            correlator.record("get:/orders", tick, load, 100 + tick);
+            correlator.record("get:/payments", tick, load * 2 + 0.1 * (tick % 2), 80);
+            correlator.record("get:/users", tick, tick % 3, 50 + 10 * (tick % 2));
+        }
+
+        Incident orders = incident("get:/orders");
+        Incident payments = incident("get:/payments");
+        Incident users = incident("get:/users");
+        List<List<Incident>> clusters = correlator.cluster(List.of(orders, users, payments));
+
+        assertEquals(2, clusters.size());
+        assertEquals(List.of(orders, payments), clusters.get(0));
+        assertEquals(List.of(users), clusters.get(1));
+        assertTrue(correlator.correlation("get:/orders", "get:/payments") > 0.99);
+    }
+
+    @Test
+    void tooFewSharedBucketsAreNotCorrelated() {
+        SignalCorrelator correlator = new SignalCorrelator();
+        for (long tick = 1; tick <= 3; tick++) {
+            correlator.record("a", tick, tick, tick);
+            correlator.record("b", tick, tick, tick);
+        }
+
+        assertTrue(Double.isNaN(correlator.correlation("a", "b")));
+        assertEquals(2, correlator.cluster(List.of(incident("a"), incident("b"))).size());
+    }
+
+    private static Incident incident(String endpointId) {
+        Incident incident = new Incident();
+        incident.setId(UUID.randomUUID());
+        incident.setEndpointId(endpointId);
+        incident.setType(IncidentType.ERROR_SPIKE);
+        return incident;
+    }
+}
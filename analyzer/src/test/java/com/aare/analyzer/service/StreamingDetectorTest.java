@@ -0,0 +1,81 @@
+package com.aare.analyzer.service;
+
+import com.aare.analyzer.model.EndpointBaseline;
+import com.aare.analyzer.model.IncidentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingDetectorTest {
+
+    private StreamingDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new StreamingDetector(new StreamingDetector.Settings(
+                30_000, 5_000,
+                20, BigDecimal.valueOf(10), BigDecimal.valueOf(2),
+                20, BigDecimal.valueOf(1.5)));
+        EndpointBaseline baseline = new EndpointBaseline();
+        baseline.setErrorRatePct(BigDecimal.valueOf(2.0));
+        baseline.setP95LatencyMs(100);
+        detector.updateBaseline(baseline);
+    }
+
+    @Test
+    void errorSpikeIsRaisedOnceAfterDwellTime() {
+        long now = 1_000_000;
+        // healthy traffic
+        for (int i = 0; i < 100; i++, now += 100) {
+            assertNull(detector.record(now, 50, false));
+        }
+        // every other request fails: the condition holds, but not yet for the dwell time
+        StreamingDetector.Candidate candidate = null;
+        long stormStart = now;
+        for (; candidate == null && now < stormStart + 20_000; now += 100) {
+            candidate = detector.record(now, 50, now % 200 == 0);
+        }
+        assertNotNull(candidate);
+        assertEquals(IncidentType.ERROR_SPIKE, candidate.type());
+        assertTrue(now - stormStart >= 5_000 && now - stormStart < 10_000);
+        assertTrue(candidate.evidence().containsKey("slowRequestFraction")); // latency side for the RCA
+
+        // still failing: no second candidate while the condition holds
+        for (int i = 0; i < 100; i++, now += 100) {
+            assertNull(detector.record(now, 50, now % 200 == 0));
+        }
+    }
+
+    @Test
+    void errorRateBelowAbsoluteThresholdDoesNotRaise() {
+        // 5% errors is above 2 x the 2% baseline, but below the 10% threshold
+        for (long now = 0; now < 120_000; now += 100) {
+            assertNull(detector.record(now, 50, now % 2_000 == 0));
+        }
+    }
+
+    @Test
+    void latencyRegressionFiresWhenTailExceedsThreshold() {
+        long now = 0;
+        StreamingDetector.Candidate candidate = null;
+        // 10% of requests at 400ms (> 1.5 x 100ms baseline p95) puts p95 above the threshold
+        for (int i = 0; candidate == null && i < 1000; i++, now += 50) {
+            candidate = detector.record(now, i % 10 == 0 ? 400 : 40, false);
+        }
+        assertNotNull(candidate);
+        assertEquals(IncidentType.LATENCY_REGRESSION, candidate.type());
+        assertEquals(150L, candidate.evidence().get("latencyThresholdMs"));
+        assertTrue(candidate.evidence().containsKey("currentErrorRate")); // error side for the RCA
+    }
+
+    @Test
+    void nothingIsRaisedWithoutBaseline() {
+        detector.updateBaseline(null);
+        for (long now = 0; now < 60_000; now += 100) {
+            assertNull(detector.record(now, 5_000, true));
+        }
+    }
+}
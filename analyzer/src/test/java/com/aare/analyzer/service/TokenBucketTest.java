@@ -0,0 +1,37 @@
+package com.aare.analyzer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    @Test
+    void burstIsFreeThenCallersQueueAtTheRate() {
+        AtomicLong clock = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(2, clock::get);
+
+        assertEquals(0, bucket.reserve(1.0));
+        assertEquals(0, bucket.reserve(1.0));
+        // bucket empty: each further caller waits one more interval
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.reserve(1.0));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), bucket.reserve(1.0));
+    }
+
+    @Test
+    void refillsUpToCapacity() {
+        AtomicLong clock = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(2, clock::get);
+        bucket.reserve(1.0);
+        bucket.reserve(1.0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        assertEquals(0, bucket.reserve(1.0));
+        assertEquals(0, bucket.reserve(1.0));
+        assertTrue(bucket.reserve(1.0) > 0);
+    }
+}
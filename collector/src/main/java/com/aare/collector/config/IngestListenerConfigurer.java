@@ -0,0 +1,59 @@
+package com.aare.collector.config;
+
+import com.aare.collector.service.ApiEventListener;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Registers one listener container per owned ingest shard, all dispatching to
+ * {@link ApiEventListener#onApiEvents(List)}. A container per shard (instead of one container
+ * over all shard queues) is what keeps events of a shard on a single consumer, in order.
+ */
+@Configuration
+public class IngestListenerConfigurer implements RabbitListenerConfigurer {
+
+    private final ApiEventListener apiEventListener;
+    private final IngestShards ingestShards;
+    private final SimpleRabbitListenerContainerFactory ingestContainerFactory;
+
+    public IngestListenerConfigurer(ApiEventListener apiEventListener,
+                                    IngestShards ingestShards,
+                                    @Qualifier(RabbitConfig.INGEST_CONTAINER_FACTORY)
+                                    SimpleRabbitListenerContainerFactory ingestContainerFactory) {
+        this.apiEventListener = apiEventListener;
+        this.ingestShards = ingestShards;
+        this.ingestContainerFactory = ingestContainerFactory;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        Method onApiEvents;
+        try {
+            onApiEvents = ApiEventListener.class.getMethod("onApiEvents", List.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("ApiEventListener.onApiEvents(List) not found", e);
+        }
+
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.afterPropertiesSet();
+
+        for (int shard : ingestShards.getOwnedShards()) {
+            MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+            endpoint.setId(IngestShards.listenerId(shard));
+            endpoint.setQueueNames(IngestShards.queueName(shard));
+            endpoint.setBean(apiEventListener);
+            endpoint.setMethod(onApiEvents);
+            endpoint.setBatchListener(true);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            registrar.registerEndpoint(endpoint, ingestContainerFactory);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.aare.collector.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shard layout of the ingest queues.
+ *
+ * The gateway routes each event to shard hash(endpoint) % shard-count. This collector instance
+ * consumes the shards listed in owned-shards (all of them when empty), one consumer per shard,
+ * so several instances can split the shards between them.
+ */
+@Component
+public class IngestShards {
+
+    private final int shardCount;
+    private final List<Integer> ownedShards;
+
+    public IngestShards(@Value("${aare.collector.ingest.shard-count:4}") int shardCount,
+                        @Value("${aare.collector.ingest.owned-shards:}") List<Integer> ownedShards) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("aare.collector.ingest.shard-count must be >= 1");
+        }
+        this.shardCount = shardCount;
+
+        List<Integer> owned = new ArrayList<>();
+        if (ownedShards == null || ownedShards.isEmpty()) {
+            for (int shard = 0; shard < shardCount; shard++) owned.add(shard);
+        } else {
+            for (Integer shard : ownedShards) {
+                if (shard == null || shard < 0 || shard >= shardCount) {
+                    throw new IllegalArgumentException("Owned shard " + shard + " is outside 0.." + (shardCount - 1));
+                }
+                if (!owned.contains(shard)) owned.add(shard);
+            }
+        }
+        this.ownedShards = Collections.unmodifiableList(owned);
+    }
+
+    public int getShardCount() { return shardCount; }
+
+    public List<Integer> getOwnedShards() { return ownedShards; }
+
+    public static String queueName(int shard) {
+        return RabbitConfig.API_EVENTS_QUEUE_PREFIX + shard;
+    }
+
+    public static String routingKey(int shard) {
+        return RabbitConfig.API_EVENTS_SHARD_ROUTING_KEY_PREFIX + shard;
+    }
+
+    public static String listenerId(int shard) {
+        return RabbitConfig.INGEST_LISTENER_ID_PREFIX + shard;
+    }
+}
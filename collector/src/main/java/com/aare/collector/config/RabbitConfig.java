@@ -2,24 +2,40 @@ package com.aare.collector.config;
 
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitConfig {
 
     // ✅ Constants used by listeners/publishers
     public static final String API_EVENTS_EXCHANGE = "api.events.exchange";
 
-    public static final String API_EVENTS_QUEUE = "api.events.queue";
     public static final String API_ANALYSIS_QUEUE = "api.analysis.queue";
-
-    public static final String API_EVENTS_ROUTING_KEY = "api.events.#";
     public static final String API_ANALYSIS_ROUTING_KEY = "api.analysis.#";
 
+    // Ingest shards: routing key "api.events.shard.i" -> queue "api.events.queue.i" (see IngestShards)
+    public static final String API_EVENTS_QUEUE_PREFIX = "api.events.queue.";
+    public static final String API_EVENTS_SHARD_ROUTING_KEY_PREFIX = "api.events.shard.";
+
+    // Listener ids + container factory used by the ingest path (tuned at runtime by IngestFlowController)
+    public static final String INGEST_LISTENER_ID_PREFIX = "apiEventIngest-";
+    public static final String INGEST_CONTAINER_FACTORY = "ingestListenerContainerFactory";
+
     /* =========================
        Exchange
        ========================= */
@@ -32,13 +48,28 @@ public class RabbitConfig {
        Queues
        ========================= */
     @Bean
-    public Queue apiEventsQueue() {
-        return new Queue(API_EVENTS_QUEUE, true);
+    public Queue apiAnalysisQueue() {
+        return new Queue(API_ANALYSIS_QUEUE, true);
     }
 
+    /**
+     * One durable queue per shard. Single-active-consumer keeps per-endpoint ordering even if
+     * two collector instances end up subscribed to the same shard (the second one is a hot standby).
+     * Arguments must match the gateway's declaration.
+     */
     @Bean
-    public Queue apiAnalysisQueue() {
-        return new Queue(API_ANALYSIS_QUEUE, true);
+    public Declarables apiEventShardQueues(TopicExchange apiEventsExchange, IngestShards ingestShards) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int shard = 0; shard < ingestShards.getShardCount(); shard++) {
+            Queue queue = QueueBuilder.durable(IngestShards.queueName(shard))
+                    .singleActiveConsumer()
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(apiEventsExchange)
+                    .with(IngestShards.routingKey(shard)));
+        }
+        return new Declarables(declarables);
     }
 
     /* =========================
@@ -46,24 +77,52 @@ public class RabbitConfig {
        ========================= */
 
     @Bean
-    public Binding apiEventsBinding(
-            @Qualifier("apiEventsQueue") Queue queue,
+    public Binding apiAnalysisBinding(
+            @Qualifier("apiAnalysisQueue") Queue queue,
             TopicExchange apiEventsExchange
     ) {
         return BindingBuilder
                 .bind(queue)
                 .to(apiEventsExchange)
-                .with(API_EVENTS_ROUTING_KEY);
+                .with(API_ANALYSIS_ROUTING_KEY);
     }
 
+    /* =========================
+       Listener containers
+       ========================= */
+
     @Bean
-    public Binding apiAnalysisBinding(
-            @Qualifier("apiAnalysisQueue") Queue queue,
-            TopicExchange apiEventsExchange
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    /**
+     * Batch-consuming container factory for the ingest listener.
+     * One consumer per shard queue (the queues are single-active-consumer, so more would only
+     * idle); IngestFlowController grows/shrinks the batch size from min-batch-size. Prefetch
+     * stays fixed: it only takes effect when a consumer starts, and must be at least
+     * max-batch-size for full batches.
+     */
+    @Bean(name = INGEST_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory ingestListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter jsonMessageConverter,
+            @Value("${aare.collector.ingest.prefetch:250}") int prefetch,
+            @Value("${aare.collector.ingest.min-batch-size:10}") int minBatchSize,
+            @Value("${aare.collector.ingest.max-batch-size:250}") int maxBatchSize,
+            @Value("${aare.collector.ingest.batch-receive-timeout-ms:200}") long batchReceiveTimeoutMs
     ) {
-        return BindingBuilder
-                .bind(queue)
-                .to(apiEventsExchange)
-                .with(API_ANALYSIS_ROUTING_KEY);
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(Math.max(prefetch, maxBatchSize));
+        factory.setBatchSize(minBatchSize);
+        // Flush partial batches when traffic is light instead of waiting for a full batch
+        factory.setReceiveTimeout(batchReceiveTimeoutMs);
+        return factory;
     }
 }
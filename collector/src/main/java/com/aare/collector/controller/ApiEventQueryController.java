@@ -0,0 +1,198 @@
+package com.aare.collector.controller;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.model.ApiEventPage;
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.repo.ApiEventQueryRepository;
+import com.aare.collector.service.ColdEventQueryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read API over raw api_event rows for incident investigation.
+ *
+ * GET /api/events         -> one keyset page as JSON, with an opaque nextCursor
+ * GET /api/events/stream  -> all matching rows as NDJSON, streamed through a JDBC cursor
+ * GET /api/events/cold    -> one keyset page from the exported cold-tier segments
+ */
+@RestController
+@RequestMapping("/api/events")
+public class ApiEventQueryController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ApiEventQueryRepository queryRepository;
+    private final ColdEventQueryService coldEventQueryService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${aare.collector.query.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${aare.collector.query.max-stream-rows:1000000}")
+    private long maxStreamRows;
+
+    public ApiEventQueryController(ApiEventQueryRepository queryRepository,
+                                   ColdEventQueryService coldEventQueryService,
+                                   ObjectMapper objectMapper) {
+        this.queryRepository = queryRepository;
+        this.coldEventQueryService = coldEventQueryService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiEventPage> getEvents(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "method", required = false) String method,
+            @RequestParam(name = "path", required = false) String path,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "requestId", required = false) String requestId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "100") int limit,
+            @RequestParam(name = "includeBodies", defaultValue = "false") boolean includeBodies) {
+
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
+        }
+        ApiEventFilter filter = buildFilter(from, to, method, path, status, requestId, cursor);
+
+        // fetch one extra row to know whether there is a next page
+        return ResponseEntity.ok(toPage(queryRepository.findPage(filter, limit + 1, includeBodies), limit));
+    }
+
+    /**
+     * Same filters and cursor format as {@link #getEvents}, served from the cold-tier segments
+     * (rows already moved out of Postgres). Rows always include bodies and headers.
+     */
+    @GetMapping("/cold")
+    public ResponseEntity<ApiEventPage> getColdEvents(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "method", required = false) String method,
+            @RequestParam(name = "path", required = false) String path,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "requestId", required = false) String requestId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "100") int limit) {
+
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
+        }
+        ApiEventFilter filter = buildFilter(from, to, method, path, status, requestId, cursor);
+        return ResponseEntity.ok(toPage(coldEventQueryService.find(filter, limit + 1), limit));
+    }
+
+    private ApiEventPage toPage(List<ApiEventView> rows, int limit) {
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            ApiEventView last = rows.get(limit - 1);
+            nextCursor = encodeCursor(last.timestamp(), last.id());
+        }
+        return new ApiEventPage(rows, nextCursor);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamEvents(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "method", required = false) String method,
+            @RequestParam(name = "path", required = false) String path,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "requestId", required = false) String requestId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Long limit,
+            @RequestParam(name = "includeBodies", defaultValue = "false") boolean includeBodies) {
+
+        long rowLimit = limit == null ? maxStreamRows : limit;
+        if (rowLimit < 1 || rowLimit > maxStreamRows) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxStreamRows);
+        }
+        ApiEventFilter filter = buildFilter(from, to, method, path, status, requestId, cursor);
+
+        StreamingResponseBody body = out -> {
+            try {
+                queryRepository.stream(filter, rowLimit, includeBodies, row -> writeLine(out, row));
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // client went away
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream out, ApiEventView row) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(row));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ApiEventFilter buildFilter(LocalDateTime from, LocalDateTime to, String method, String path,
+                                       String status, String requestId, String cursor) {
+        LocalDateTime afterTimestamp = null;
+        UUID afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = decoded.indexOf('|');
+                afterTimestamp = LocalDateTime.parse(decoded.substring(0, sep));
+                afterId = UUID.fromString(decoded.substring(sep + 1));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+        return new ApiEventFilter(
+                from,
+                to,
+                method == null ? null : method.toUpperCase(),
+                path,
+                parseStatusClass(status),
+                requestId,
+                afterTimestamp,
+                afterId
+        );
+    }
+
+    /**
+     * Accepts "5xx", "5XX" or "5".
+     */
+    private Integer parseStatusClass(String status) {
+        if (status == null || status.isBlank()) return null;
+        String s = status.trim().toLowerCase();
+        if (s.endsWith("xx")) s = s.substring(0, s.length() - 2);
+        try {
+            int statusClass = Integer.parseInt(s);
+            if (statusClass >= 1 && statusClass <= 5) return statusClass;
+        } catch (NumberFormatException ignored) {
+            // fall through
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "status must be a status class like 4xx or 5xx");
+    }
+
+    static String encodeCursor(LocalDateTime timestamp, UUID id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,28 @@
+package com.aare.collector.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Filter + keyset position for raw api_event lookups.
+ *
+ * @param from        inclusive lower bound on timestamp (optional)
+ * @param to          exclusive upper bound on timestamp (optional)
+ * @param method      HTTP method (optional, requires path for the endpoint index)
+ * @param path        request path (optional)
+ * @param statusClass status class 1..5, e.g. 5 for 5xx (optional)
+ * @param requestId   exact request id (optional)
+ * @param afterTimestamp keyset cursor: only rows strictly after (afterTimestamp, afterId)
+ * @param afterId        keyset cursor id
+ */
+public record ApiEventFilter(
+        LocalDateTime from,
+        LocalDateTime to,
+        String method,
+        String path,
+        Integer statusClass,
+        String requestId,
+        LocalDateTime afterTimestamp,
+        UUID afterId
+) {
+}
@@ -0,0 +1,9 @@
+package com.aare.collector.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of api_event rows. {@code nextCursor} is null on the last page.
+ */
+public record ApiEventPage(List<ApiEventView> items, String nextCursor) {
+}
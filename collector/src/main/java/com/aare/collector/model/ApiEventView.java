@@ -0,0 +1,31 @@
+package com.aare.collector.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-side projection of an api_event row. Body samples and headers are only
+ * populated when explicitly requested, to keep list/stream responses lean.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ApiEventView(
+        UUID id,
+        String requestId,
+        LocalDateTime timestamp,
+        String method,
+        String path,
+        String query,
+        Integer statusCode,
+        Long latencyMs,
+        String serviceName,
+        String environment,
+        String schemaFingerprint,
+        Map<String, String> reqHeaders,
+        Map<String, String> resHeaders,
+        String reqBodySample,
+        String resBodySample
+) {
+}
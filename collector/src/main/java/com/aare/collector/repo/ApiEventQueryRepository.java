@@ -0,0 +1,159 @@
+package com.aare.collector.repo;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.model.JsonMapConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Read path for raw api_event rows.
+ *
+ * Always orders by (timestamp, id) and pages with a keyset predicate instead of OFFSET, so every
+ * page is an index range scan on one of the V3 composite indexes regardless of how deep it is.
+ */
+@Repository
+public class ApiEventQueryRepository {
+
+    private static final String SUMMARY_COLUMNS =
+            "id, request_id, timestamp, method, path, query, status_code, latency_ms, " +
+            "service_name, environment, schema_fingerprint";
+    private static final String DETAIL_COLUMNS =
+            ", req_headers::text AS req_headers, res_headers::text AS res_headers, req_body_sample, res_body_sample";
+
+    private static final JsonMapConverter HEADERS = new JsonMapConverter();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+
+    public ApiEventQueryRepository(DataSource dataSource,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${aare.collector.query.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Postgres only uses a server-side cursor when autocommit is off and a fetch size is set
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    public List<ApiEventView> findPage(ApiEventFilter filter, int limit, boolean includeBodies) {
+        List<Object> args = new ArrayList<>();
+        String sql = buildQuery(filter, limit, includeBodies, args);
+        return jdbcTemplate.query(sql, rowMapper(includeBodies), args.toArray());
+    }
+
+    /**
+     * Streams matching rows to {@code sink} through a JDBC cursor; at most one fetch-size chunk
+     * is held in memory at a time.
+     */
+    public void stream(ApiEventFilter filter, long limit, boolean includeBodies, Consumer<ApiEventView> sink) {
+        List<Object> args = new ArrayList<>();
+        String sql = buildQuery(filter, limit, includeBodies, args);
+        RowMapper<ApiEventView> mapper = rowMapper(includeBodies);
+        readOnlyTx.executeWithoutResult(status ->
+                jdbcTemplate.query(sql, (RowCallbackHandler) rs -> sink.accept(mapper.mapRow(rs, 0)), args.toArray()));
+    }
+
+    public LocalDateTime findOldestTimestamp() {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT min(timestamp) FROM api_event", Timestamp.class);
+        return oldest == null ? null : oldest.toLocalDateTime();
+    }
+
+    /**
+     * Deletes [from, to). Callers run this inside their own transaction so they can roll back
+     * when the count does not match what they exported.
+     */
+    public int deleteRange(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM api_event WHERE timestamp >= ? AND timestamp < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Transaction-scoped advisory lock, released automatically at commit/rollback.
+     */
+    public boolean tryAdvisoryXactLock(long key) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, key));
+    }
+
+    private String buildQuery(ApiEventFilter f, long limit, boolean includeBodies, List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS);
+        if (includeBodies) sql.append(DETAIL_COLUMNS);
+        sql.append(" FROM api_event WHERE TRUE");
+
+        if (f.requestId() != null) {
+            sql.append(" AND request_id = ?");
+            args.add(f.requestId());
+        }
+        if (f.method() != null) {
+            sql.append(" AND method = ?");
+            args.add(f.method());
+        }
+        if (f.path() != null) {
+            sql.append(" AND path = ?");
+            args.add(f.path());
+        }
+        if (f.statusClass() != null) {
+            // must match the expression in idx_api_event_status_class_ts_id
+            sql.append(" AND (status_code / 100) = ?");
+            args.add(f.statusClass());
+        }
+        if (f.from() != null) {
+            sql.append(" AND timestamp >= ?");
+            args.add(Timestamp.valueOf(f.from()));
+        }
+        if (f.to() != null) {
+            sql.append(" AND timestamp < ?");
+            args.add(Timestamp.valueOf(f.to()));
+        }
+        if (f.afterTimestamp() != null && f.afterId() != null) {
+            sql.append(" AND (timestamp, id) > (?, ?)");
+            args.add(Timestamp.valueOf(f.afterTimestamp()));
+            args.add(f.afterId());
+        }
+
+        sql.append(" ORDER BY timestamp, id LIMIT ?");
+        args.add(limit);
+        return sql.toString();
+    }
+
+    private RowMapper<ApiEventView> rowMapper(boolean includeBodies) {
+        return (rs, rowNum) -> map(rs, includeBodies);
+    }
+
+    private ApiEventView map(ResultSet rs, boolean includeBodies) throws SQLException {
+        Timestamp ts = rs.getTimestamp("timestamp");
+        long latency = rs.getLong("latency_ms");
+        return new ApiEventView(
+                rs.getObject("id", UUID.class),
+                rs.getString("request_id"),
+                ts == null ? null : ts.toLocalDateTime(),
+                rs.getString("method"),
+                rs.getString("path"),
+                rs.getString("query"),
+                rs.getInt("status_code"),
+                latency,
+                rs.getString("service_name"),
+                rs.getString("environment"),
+                rs.getString("schema_fingerprint"),
+                includeBodies ? HEADERS.convertToEntityAttribute(rs.getString("req_headers")) : null,
+                includeBodies ? HEADERS.convertToEntityAttribute(rs.getString("res_headers")) : null,
+                includeBodies ? rs.getString("req_body_sample") : null,
+                includeBodies ? rs.getString("res_body_sample") : null
+        );
+    }
+}
@@ -0,0 +1,104 @@
+package com.aare.collector.segment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * On-disk layout shared by {@link SegmentWriter} and {@link SegmentReader}.
+ *
+ * <pre>
+ * magic "AARESEG1" | version:int | rowCount:int | minTs:long | maxTs:long | idChecksum:long
+ * endpointCount:int | endpoint:str ...                       (sorted dictionary = endpoint index)
+ * columnCount:int | (compressedLength:int | deflated bytes) ... (one block per column, in COLUMNS order)
+ * The endpoint column holds indexes into the first-seen dictionary stored in the last
+ * ("endpoint_dict", count-prefixed) block; the sorted dictionary in the header is only used for pruning.
+ * </pre>
+ * Timestamps are epoch microseconds (LocalDateTime read as UTC) and delta-encoded within the
+ * timestamp column; integers are zig-zag varints; strings are varint length + UTF-8, -1 for null.
+ */
+final class SegmentFormat {
+
+    static final byte[] MAGIC = "AARESEG1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    static final String[] COLUMNS = {
+            "id", "timestamp", "endpoint", "status_code", "latency_ms", "request_id", "query",
+            "service_name", "environment", "schema_fingerprint",
+            "req_headers", "res_headers", "req_body_sample", "res_body_sample", "endpoint_dict"
+    };
+
+    static final int COL_ID = 0;
+    static final int COL_TIMESTAMP = 1;
+    static final int COL_ENDPOINT = 2;
+    static final int COL_STATUS = 3;
+    static final int COL_LATENCY = 4;
+    static final int COL_REQUEST_ID = 5;
+    static final int COL_QUERY = 6;
+    static final int COL_SERVICE = 7;
+    static final int COL_ENVIRONMENT = 8;
+    static final int COL_FINGERPRINT = 9;
+    static final int COL_REQ_HEADERS = 10;
+    static final int COL_RES_HEADERS = 11;
+    static final int COL_REQ_BODY = 12;
+    static final int COL_RES_BODY = 13;
+    static final int COL_ENDPOINT_DICT = 14;
+
+    private SegmentFormat() {
+    }
+
+    static String endpointKey(String method, String path) {
+        return method + " " + path;
+    }
+
+    static long toMicros(LocalDateTime ts) {
+        return ts.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + ts.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63); // zig-zag
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarLong(out, -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int len = (int) readVarLong(in);
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
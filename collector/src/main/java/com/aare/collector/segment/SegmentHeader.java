@@ -0,0 +1,50 @@
+package com.aare.collector.segment;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Min/max index stored at the head of every segment file. Reading it is enough to decide
+ * whether a segment can contain rows for a given time range / endpoint without decoding columns.
+ *
+ * @param file        segment file
+ * @param rowCount    number of rows
+ * @param minTimestamp earliest row timestamp
+ * @param maxTimestamp latest row timestamp
+ * @param endpoints   sorted endpoint dictionary ("METHOD path"); first/last entries are the min/max
+ * @param idChecksum  CRC32 over all row ids in order, used to verify an export before deleting rows
+ */
+public record SegmentHeader(
+        Path file,
+        int rowCount,
+        LocalDateTime minTimestamp,
+        LocalDateTime maxTimestamp,
+        List<String> endpoints,
+        long idChecksum
+) {
+
+    public SegmentHeader {
+        endpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        if (rowCount == 0) return false;
+        if (from != null && maxTimestamp.isBefore(from)) return false;
+        return to == null || minTimestamp.isBefore(to);
+    }
+
+    public boolean mayContainEndpoint(String method, String path) {
+        if (method == null && path == null) return true;
+        if (method != null && path != null) {
+            return Collections.binarySearch(endpoints, SegmentFormat.endpointKey(method, path)) >= 0;
+        }
+        for (String endpoint : endpoints) {
+            int sep = endpoint.indexOf(' ');
+            if (method != null && endpoint.substring(0, sep).equals(method)) return true;
+            if (path != null && endpoint.substring(sep + 1).equals(path)) return true;
+        }
+        return false;
+    }
+}
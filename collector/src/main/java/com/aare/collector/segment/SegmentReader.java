@@ -0,0 +1,152 @@
+package com.aare.collector.segment;
+
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.model.JsonMapConverter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+import static com.aare.collector.segment.SegmentFormat.*;
+
+/**
+ * Reads segment files written by {@link SegmentWriter}.
+ */
+public final class SegmentReader {
+
+    private static final JsonMapConverter HEADERS = new JsonMapConverter();
+
+    private SegmentReader() {
+    }
+
+    /**
+     * Reads only the header (min/max index); column blocks are not touched.
+     */
+    public static SegmentHeader readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 8192))) {
+            return readHeader(file, in);
+        }
+    }
+
+    /**
+     * Decodes every row of the segment and returns those matching {@code filter}, in (timestamp, id) order.
+     */
+    public static List<ApiEventView> read(Path file, Predicate<ApiEventView> filter) throws IOException {
+        return read(file, filter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #read(Path, Predicate)}, but stops decoding once {@code limit} rows have matched.
+     */
+    public static List<ApiEventView> read(Path file, Predicate<ApiEventView> filter, int limit) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            SegmentHeader header = readHeader(file, in);
+            DataInputStream[] columns = readColumns(in);
+
+            DataInputStream dict = columns[COL_ENDPOINT_DICT];
+            int dictionarySize = (int) readVarLong(dict);
+            List<String> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary.add(readString(dict));
+            }
+
+            List<ApiEventView> rows = new ArrayList<>();
+            long ts = 0;
+            for (int i = 0; i < header.rowCount() && rows.size() < limit; i++) {
+                UUID id = new UUID(columns[COL_ID].readLong(), columns[COL_ID].readLong());
+                ts += readVarLong(columns[COL_TIMESTAMP]);
+                String endpoint = dictionary.get((int) readVarLong(columns[COL_ENDPOINT]));
+                int sep = endpoint.indexOf(' ');
+                ApiEventView row = new ApiEventView(
+                        id,
+                        readString(columns[COL_REQUEST_ID]),
+                        fromMicros(ts),
+                        endpoint.substring(0, sep),
+                        endpoint.substring(sep + 1),
+                        readString(columns[COL_QUERY]),
+                        (int) readVarLong(columns[COL_STATUS]),
+                        readVarLong(columns[COL_LATENCY]),
+                        readString(columns[COL_SERVICE]),
+                        readString(columns[COL_ENVIRONMENT]),
+                        readString(columns[COL_FINGERPRINT]),
+                        HEADERS.convertToEntityAttribute(readString(columns[COL_REQ_HEADERS])),
+                        HEADERS.convertToEntityAttribute(readString(columns[COL_RES_HEADERS])),
+                        readString(columns[COL_REQ_BODY]),
+                        readString(columns[COL_RES_BODY])
+                );
+                if (filter.test(row)) rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Re-reads the id column and checks row count and checksum against the header.
+     */
+    public static boolean verify(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            SegmentHeader header = readHeader(file, in);
+            DataInputStream ids = readColumns(in)[COL_ID];
+            CRC32 crc = new CRC32();
+            ByteBuffer buf = ByteBuffer.allocate(16);
+            for (int i = 0; i < header.rowCount(); i++) {
+                buf.clear();
+                buf.putLong(ids.readLong()).putLong(ids.readLong());
+                crc.update(buf.array());
+            }
+            return crc.getValue() == header.idChecksum();
+        }
+    }
+
+    private static SegmentHeader readHeader(Path file, DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a segment file: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported segment version " + version + " in " + file);
+        }
+        int rowCount = in.readInt();
+        long minTs = in.readLong();
+        long maxTs = in.readLong();
+        long idChecksum = in.readLong();
+        int endpointCount = in.readInt();
+        List<String> endpoints = new ArrayList<>(endpointCount);
+        for (int i = 0; i < endpointCount; i++) {
+            endpoints.add(readString(in));
+        }
+        LocalDateTime min = rowCount == 0 ? null : fromMicros(minTs);
+        LocalDateTime max = rowCount == 0 ? null : fromMicros(maxTs);
+        return new SegmentHeader(file, rowCount, min, max, endpoints, idChecksum);
+    }
+
+    private static DataInputStream[] readColumns(DataInputStream in) throws IOException {
+        int columnCount = in.readInt();
+        if (columnCount != COLUMNS.length) {
+            throw new IOException("Expected " + COLUMNS.length + " columns, found " + columnCount);
+        }
+        DataInputStream[] columns = new DataInputStream[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            byte[] block = new byte[in.readInt()];
+            in.readFully(block);
+            InputStream inflated = new InflaterInputStream(new ByteArrayInputStream(block));
+            columns[i] = new DataInputStream(new BufferedInputStream(inflated, 8192));
+        }
+        return columns;
+    }
+}
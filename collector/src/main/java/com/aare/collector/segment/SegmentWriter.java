@@ -0,0 +1,140 @@
+package com.aare.collector.segment;
+
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.model.JsonMapConverter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.aare.collector.segment.SegmentFormat.*;
+
+/**
+ * Writes one column-oriented, deflate-compressed segment file.
+ *
+ * Rows must be appended in (timestamp, id) order. Each column is compressed as it is appended,
+ * so memory use is bounded by the compressed size of the segment rather than the raw rows.
+ * The file is written to a temp file and atomically moved into place by {@link #finish()}.
+ */
+public final class SegmentWriter implements Closeable {
+
+    private static final JsonMapConverter HEADERS = new JsonMapConverter();
+
+    private final Path target;
+    private final Deflater[] deflaters = new Deflater[COLUMNS.length];
+    private final ByteArrayOutputStream[] blocks = new ByteArrayOutputStream[COLUMNS.length];
+    private final DataOutputStream[] columns = new DataOutputStream[COLUMNS.length];
+    private final Map<String, Integer> endpointIds = new LinkedHashMap<>();
+    private final CRC32 idChecksum = new CRC32();
+    private final ByteBuffer idBytes = ByteBuffer.allocate(16);
+
+    private int rowCount;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+    private long lastTs;
+
+    public SegmentWriter(Path target) {
+        this.target = target;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            deflaters[i] = new Deflater(Deflater.BEST_SPEED);
+            blocks[i] = new ByteArrayOutputStream();
+            columns[i] = new DataOutputStream(new DeflaterOutputStream(blocks[i], deflaters[i], 8192));
+        }
+    }
+
+    public void append(ApiEventView row) throws IOException {
+        long ts = toMicros(row.timestamp());
+        minTs = Math.min(minTs, ts);
+        maxTs = Math.max(maxTs, ts);
+
+        idBytes.clear();
+        idBytes.putLong(row.id().getMostSignificantBits()).putLong(row.id().getLeastSignificantBits());
+        idChecksum.update(idBytes.array());
+
+        columns[COL_ID].writeLong(row.id().getMostSignificantBits());
+        columns[COL_ID].writeLong(row.id().getLeastSignificantBits());
+        writeVarLong(columns[COL_TIMESTAMP], ts - lastTs); // delta vs previous row
+        lastTs = ts;
+
+        String endpoint = endpointKey(row.method(), row.path());
+        Integer endpointId = endpointIds.computeIfAbsent(endpoint, k -> endpointIds.size());
+        writeVarLong(columns[COL_ENDPOINT], endpointId);
+
+        writeVarLong(columns[COL_STATUS], row.statusCode() == null ? 0 : row.statusCode());
+        writeVarLong(columns[COL_LATENCY], row.latencyMs() == null ? 0 : row.latencyMs());
+        writeString(columns[COL_REQUEST_ID], row.requestId());
+        writeString(columns[COL_QUERY], row.query());
+        writeString(columns[COL_SERVICE], row.serviceName());
+        writeString(columns[COL_ENVIRONMENT], row.environment());
+        writeString(columns[COL_FINGERPRINT], row.schemaFingerprint());
+        writeString(columns[COL_REQ_HEADERS], HEADERS.convertToDatabaseColumn(row.reqHeaders()));
+        writeString(columns[COL_RES_HEADERS], HEADERS.convertToDatabaseColumn(row.resHeaders()));
+        writeString(columns[COL_REQ_BODY], row.reqBodySample());
+        writeString(columns[COL_RES_BODY], row.resBodySample());
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public SegmentHeader finish() throws IOException {
+        writeVarLong(columns[COL_ENDPOINT_DICT], endpointIds.size());
+        for (String endpoint : endpointIds.keySet()) {
+            writeString(columns[COL_ENDPOINT_DICT], endpoint);
+        }
+        for (DataOutputStream column : columns) {
+            column.close(); // flushes the deflater trailer into the block
+        }
+
+        List<String> sortedEndpoints = new ArrayList<>(endpointIds.keySet());
+        sortedEndpoints.sort(null);
+
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rowCount);
+            out.writeLong(rowCount == 0 ? 0 : minTs);
+            out.writeLong(rowCount == 0 ? 0 : maxTs);
+            out.writeLong(idChecksum.getValue());
+            out.writeInt(sortedEndpoints.size());
+            for (String endpoint : sortedEndpoints) {
+                writeString(out, endpoint);
+            }
+            out.writeInt(COLUMNS.length);
+            for (ByteArrayOutputStream block : blocks) {
+                out.writeInt(block.size());
+                block.writeTo(out);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LocalDateTime min = rowCount == 0 ? null : fromMicros(minTs);
+        LocalDateTime max = rowCount == 0 ? null : fromMicros(maxTs);
+        return new SegmentHeader(target, rowCount, min, max, sortedEndpoints, idChecksum.getValue());
+    }
+
+    @Override
+    public void close() {
+        for (Deflater deflater : deflaters) {
+            deflater.end();
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.aare.collector.service;
 
-import com.aare.collector.config.RabbitConfig;
 import com.aare.collector.model.ApiEvent;
 import com.aare.collector.repo.ApiEventRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,20 +30,87 @@ public class ApiEventListener {
     );
 
     private final ApiEventRepository apiEventRepository;
+    private final IngestFlowController ingestFlowController;
+    private final IngestMetrics ingestMetrics;
 
-    public ApiEventListener(ApiEventRepository apiEventRepository) {
+    // Per-event INFO logging is too loud at ingest rates; log a summary every N batches instead
+    @Value("${aare.collector.ingest.log-sample-every:100}")
+    private long logSampleEvery = 100;
+
+    private final AtomicLong batchesSeen = new AtomicLong();
+    private final AtomicLong eventsSaved = new AtomicLong();
+
+    public ApiEventListener(ApiEventRepository apiEventRepository, IngestFlowController ingestFlowController,
+                            IngestMetrics ingestMetrics) {
         this.apiEventRepository = apiEventRepository;
+        this.ingestFlowController = ingestFlowController;
+        this.ingestMetrics = ingestMetrics;
+    }
+
+    /**
+     * Batch entry point for the ingest shards. Containers are registered per shard by
+     * IngestListenerConfigurer rather than with @RabbitListener, since the shard count is configurable.
+     * Messages (not bare payloads) are taken so the redelivered flag is visible.
+     */
+    public void onApiEvents(List<Message<Map<String, Object>>> messages) {
+        Instant receivedAt = Instant.now();
+        ingestMetrics.recordBatch(messages.size());
+
+        List<ApiEvent> batch = new ArrayList<>(messages.size());
+        for (Message<Map<String, Object>> message : messages) {
+            if (Boolean.TRUE.equals(message.getHeaders().get(AmqpHeaders.REDELIVERED))) {
+                ingestMetrics.recordRedelivery();
+            }
+            Map<String, Object> eventMap = message.getPayload();
+            try {
+                ApiEvent apiEvent = mapToApiEvent(eventMap);
+                ingestMetrics.recordLag(apiEvent.getTimestamp(), receivedAt);
+                batch.add(apiEvent);
+            } catch (Exception e) {
+                ingestMetrics.recordFailure("map", e);
+                Object rid = (eventMap != null) ? eventMap.get("requestId") : null;
+                log.error("Failed to map ApiEvent requestId={}: {}", rid, e.getMessage(), e);
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        int saved = batch.size();
+        try {
+            apiEventRepository.saveAll(batch);
+        } catch (Exception e) {
+            // one bad row fails the whole batch insert; fall back to row-by-row so the rest still land
+            ingestMetrics.recordFailure("batch-insert", e);
+            log.warn("Batch insert of {} ApiEvents failed, retrying individually: {}", batch.size(), e.getMessage());
+            saved = 0;
+            for (ApiEvent apiEvent : batch) {
+                if (saveOne(apiEvent)) saved++;
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            ingestFlowController.recordInsert(batch.size(), elapsed);
+            ingestMetrics.recordInsert(elapsed);
+        }
+        logSampled(saved);
     }
 
-    @RabbitListener(queues = RabbitConfig.API_EVENTS_QUEUE)
-    public void onApiEvent(Map<String, Object> eventMap) {
+    private boolean saveOne(ApiEvent apiEvent) {
         try {
-            ApiEvent apiEvent = mapToApiEvent(eventMap);
             apiEventRepository.save(apiEvent);
-            log.info("Saved ApiEvent: {}", apiEvent.getRequestId());
+            log.debug("Saved ApiEvent: {}", apiEvent.getRequestId());
+            return true;
         } catch (Exception e) {
-            Object rid = (eventMap != null) ? eventMap.get("requestId") : null;
-            log.error("Failed to save ApiEvent requestId={}: {}", rid, e.getMessage(), e);
+            ingestMetrics.recordFailure("insert", e);
+            log.error("Failed to save ApiEvent requestId={}: {}", apiEvent.getRequestId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void logSampled(int saved) {
+        long total = eventsSaved.addAndGet(saved);
+        long batches = batchesSeen.incrementAndGet();
+        if (logSampleEvery > 0 && (batches == 1 || batches % logSampleEvery == 0)) {
+            log.info("Saved {} ApiEvents in last batch ({} batches, {} events since start)", saved, batches, total);
         }
     }
 
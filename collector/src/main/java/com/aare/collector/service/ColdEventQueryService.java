@@ -0,0 +1,123 @@
+package com.aare.collector.service;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.segment.SegmentHeader;
+import com.aare.collector.segment.SegmentReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Query path over the cold tier: prunes segments with their min/max header index, decodes the
+ * remaining ones in parallel and merges the matches in (timestamp, id) order. Segments are written
+ * in that order, so each one only decodes up to its first {@code limit} matches and a page holds
+ * at most (candidates x limit) rows, however wide its time range.
+ */
+@Service
+public class ColdEventQueryService {
+
+    // Postgres orders uuid as unsigned bytes; UUID.compareTo compares signed longs
+    static final Comparator<UUID> PG_UUID_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    // same order as the hot tier's ORDER BY timestamp, id, so cursors carry across both tiers
+    static final Comparator<ApiEventView> KEYSET_ORDER =
+            Comparator.comparing(ApiEventView::timestamp).thenComparing(ApiEventView::id, PG_UUID_ORDER);
+
+    private final SegmentCatalog segmentCatalog;
+    private final ForkJoinPool decodePool;
+
+    public ColdEventQueryService(SegmentCatalog segmentCatalog,
+                                 @Value("${aare.collector.cold-tier.decode-parallelism:0}") int decodeParallelism) {
+        this.segmentCatalog = segmentCatalog;
+        this.decodePool = new ForkJoinPool(decodeParallelism > 0
+                ? decodeParallelism
+                : Runtime.getRuntime().availableProcessors());
+    }
+
+    public List<ApiEventView> find(ApiEventFilter filter, int limit) {
+        List<SegmentHeader> candidates = segmentCatalog.candidates(filter);
+        if (candidates.isEmpty()) return List.of();
+
+        Predicate<ApiEventView> predicate = matches(filter);
+        try {
+            List<List<ApiEventView>> perSegment = decodePool.submit(() -> candidates.parallelStream()
+                    .map(header -> decode(header, predicate, limit))
+                    .filter(rows -> !rows.isEmpty())
+                    .toList()
+            ).get();
+            return merge(perSegment, limit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cold-tier query interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cold-tier query failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * k-way merge of lists that are each in keyset order, keeping the first {@code limit} rows.
+     */
+    static List<ApiEventView> merge(List<List<ApiEventView>> sorted, int limit) {
+        if (sorted.size() == 1) {
+            List<ApiEventView> only = sorted.get(0);
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+        // head of each list: {list index, position}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> KEYSET_ORDER.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        List<ApiEventView> merged = new ArrayList<>(Math.min(limit, 1024));
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<ApiEventView> list = sorted.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) heads.add(head);
+        }
+        return merged;
+    }
+
+    private List<ApiEventView> decode(SegmentHeader header, Predicate<ApiEventView> predicate, int limit) {
+        try {
+            return SegmentReader.read(header.file(), predicate, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Predicate<ApiEventView> matches(ApiEventFilter f) {
+        ApiEventView after = (f.afterTimestamp() == null || f.afterId() == null) ? null : keyset(f);
+        return row -> (f.from() == null || !row.timestamp().isBefore(f.from()))
+                && (f.to() == null || row.timestamp().isBefore(f.to()))
+                && (f.method() == null || f.method().equals(row.method()))
+                && (f.path() == null || f.path().equals(row.path()))
+                && (f.statusClass() == null || row.statusCode() / 100 == f.statusClass())
+                && (f.requestId() == null || f.requestId().equals(row.requestId()))
+                && (after == null || KEYSET_ORDER.compare(row, after) > 0);
+    }
+
+    private static ApiEventView keyset(ApiEventFilter f) {
+        return new ApiEventView(f.afterId(), null, f.afterTimestamp(), null, null, null, null, null,
+                null, null, null, null, null, null, null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decodePool.shutdown();
+    }
+}
@@ -0,0 +1,173 @@
+package com.aare.collector.service;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.repo.ApiEventQueryRepository;
+import com.aare.collector.segment.SegmentHeader;
+import com.aare.collector.segment.SegmentReader;
+import com.aare.collector.segment.SegmentWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves aged api_event rows to the cold tier.
+ *
+ * api_event is not a partitioned table, so the unit of export is one calendar day. Each day is
+ * streamed through a JDBC cursor into column-oriented segment files (see {@link SegmentWriter}),
+ * every segment is re-read and checksum-verified, and only then are the day's rows deleted in the
+ * same REPEATABLE READ transaction; a row count mismatch rolls the delete back.
+ */
+@Service
+public class ColdTierExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ColdTierExportService.class);
+
+    // pg advisory lock key (arbitrary, unique within aare) so only one collector instance exports at a time
+    private static final long EXPORT_LOCK_KEY = 7_341_922_001L;
+
+    private final ApiEventQueryRepository queryRepository;
+    private final SegmentCatalog segmentCatalog;
+    private final TransactionTemplate exportTx;
+
+    @Value("${aare.collector.cold-tier.enabled:false}")
+    private boolean enabled;
+    @Value("${aare.collector.cold-tier.retention-days:14}")
+    private int retentionDays;
+    @Value("${aare.collector.cold-tier.max-days-per-run:7}")
+    private int maxDaysPerRun;
+    @Value("${aare.collector.cold-tier.segment-rows:50000}")
+    private int segmentRows;
+
+    public ColdTierExportService(ApiEventQueryRepository queryRepository,
+                                 SegmentCatalog segmentCatalog,
+                                 PlatformTransactionManager transactionManager) {
+        this.queryRepository = queryRepository;
+        this.segmentCatalog = segmentCatalog;
+        this.exportTx = new TransactionTemplate(transactionManager);
+        this.exportTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @Scheduled(cron = "${aare.collector.cold-tier.cron:0 15 3 * * *}")
+    public void exportAgedEvents() {
+        if (!enabled) return;
+
+        LocalDateTime oldest = queryRepository.findOldestTimestamp();
+        if (oldest == null) return;
+
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        LocalDate day = oldest.toLocalDate();
+        for (int i = 0; i < maxDaysPerRun && day.isBefore(cutoff); i++, day = day.plusDays(1)) {
+            try {
+                exportDay(day);
+            } catch (Exception e) {
+                log.error("Cold-tier export of {} failed, rows kept in Postgres: {}", day, e.getMessage(), e);
+                return; // don't skip ahead and leave a hole
+            }
+        }
+    }
+
+    /**
+     * Exports one day and deletes it from Postgres once the export is verified.
+     *
+     * @return number of rows moved, or -1 if another instance holds the export lock
+     */
+    public int exportDay(LocalDate day) throws IOException {
+        Files.createDirectories(segmentCatalog.getDirectory());
+
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+        List<SegmentHeader> written = new ArrayList<>();
+
+        // Segment files of a day are only created or deleted while the export lock is held: the
+        // cold dir may be shared, and the lock holder's files must never be touched by the others.
+        Integer moved = exportTx.execute(status -> {
+            if (!queryRepository.tryAdvisoryXactLock(EXPORT_LOCK_KEY)) {
+                return -1;
+            }
+            try {
+                segmentCatalog.removeDay(day); // leftovers of an earlier, rolled-back attempt
+                int exported = writeSegments(day, from, to, written);
+                for (SegmentHeader header : written) {
+                    if (!SegmentReader.verify(header.file())) {
+                        throw new IllegalStateException("Checksum mismatch in " + header.file());
+                    }
+                }
+                int deleted = queryRepository.deleteRange(from, to);
+                if (deleted != exported) {
+                    throw new IllegalStateException("Exported " + exported + " rows but delete matched " + deleted);
+                }
+                return exported;
+            } catch (IOException | RuntimeException e) {
+                discard(day);
+                throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+            }
+        });
+
+        if (moved == null || moved < 0) {
+            log.info("Cold-tier export of {} skipped: another instance holds the export lock", day);
+            return -1;
+        }
+        written.forEach(segmentCatalog::register);
+        log.info("Cold-tier export of {}: {} rows in {} segments", day, moved, written.size());
+        return moved;
+    }
+
+    /**
+     * Deletes what a failed attempt wrote, including a segment that was still being written, so
+     * the rows kept in Postgres are not also served (and, after a restart, registered) from
+     * segments. Runs before the rollback releases the lock. Should the commit itself fail, the
+     * files stay until the next attempt clears them under the lock.
+     */
+    private void discard(LocalDate day) {
+        try {
+            segmentCatalog.removeDay(day);
+        } catch (IOException e) {
+            log.error("Could not delete the segments of the failed cold-tier export of {}: {}", day, e.getMessage(), e);
+        }
+    }
+
+    private int writeSegments(LocalDate day, LocalDateTime from, LocalDateTime to, List<SegmentHeader> written) throws IOException {
+        ApiEventFilter filter = new ApiEventFilter(from, to, null, null, null, null, null, null);
+        int[] total = {0};
+        SegmentWriter[] current = {null};
+        try {
+            queryRepository.stream(filter, Long.MAX_VALUE, true, row -> {
+                try {
+                    if (current[0] == null) {
+                        current[0] = new SegmentWriter(segmentCatalog.segmentPath(day, written.size()));
+                    }
+                    current[0].append(row);
+                    total[0]++;
+                    if (current[0].getRowCount() >= segmentRows) {
+                        written.add(current[0].finish());
+                        current[0].close();
+                        current[0] = null;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (current[0] != null) {
+                written.add(current[0].finish());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (current[0] != null) current[0].close();
+        }
+        return total[0];
+    }
+}
@@ -0,0 +1,141 @@
+package com.aare.collector.service;
+
+import com.aare.collector.config.IngestShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIMD-style flow controller for the ingest listener's batch size.
+ *
+ * Every control tick it looks at the queue backlog and the average batch insert latency
+ * observed since the previous tick:
+ * - insert latency above target -> multiplicative decrease (halve the batch size)
+ * - backlog above high watermark -> additive increase (bigger batch)
+ * - backlog below low watermark  -> additive decrease back towards the lower bound
+ * The same batch size is applied to every owned shard container.
+ *
+ * Consumer count is not part of the loop: shard queues are single-active-consumer, so any
+ * consumer after the first is an idle standby. Each shard has exactly one consumer; parallelism
+ * comes from the shard count, and Postgres sees at most one concurrent insert per owned shard.
+ * Neither is prefetch: a running consumer keeps the prefetch it started with, so it is fixed at
+ * container creation (aare.collector.ingest.prefetch, at least max-batch-size so a batch can
+ * always fill).
+ */
+@Service
+public class IngestFlowController {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestFlowController.class);
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final IngestShards ingestShards;
+
+    @Value("${aare.collector.ingest.min-batch-size:10}")
+    private int minBatchSize;
+    @Value("${aare.collector.ingest.max-batch-size:250}")
+    private int maxBatchSize;
+    @Value("${aare.collector.ingest.batch-size-step:10}")
+    private int batchSizeStep;
+    @Value("${aare.collector.ingest.target-insert-latency-ms:250}")
+    private long targetInsertLatencyMs;
+    @Value("${aare.collector.ingest.backlog-high-watermark:1000}")
+    private long backlogHighWatermark;
+    @Value("${aare.collector.ingest.backlog-low-watermark:100}")
+    private long backlogLowWatermark;
+
+    // Insert timings since the last control tick (written by listener threads)
+    private final LongAdder insertBatches = new LongAdder();
+    private final LongAdder insertNanos = new LongAdder();
+
+    // Current batch size, 0 until the first tick (only mutated on the scheduler thread)
+    private volatile int batchSize;
+
+    public IngestFlowController(RabbitListenerEndpointRegistry listenerRegistry, AmqpAdmin amqpAdmin,
+                                IngestShards ingestShards) {
+        this.listenerRegistry = listenerRegistry;
+        this.amqpAdmin = amqpAdmin;
+        this.ingestShards = ingestShards;
+    }
+
+    public void recordInsert(int batchSize, long elapsedNanos) {
+        if (batchSize <= 0) return;
+        insertBatches.increment();
+        insertNanos.add(elapsedNanos);
+    }
+
+    @Scheduled(fixedDelayString = "${aare.collector.ingest.control-interval-ms:5000}")
+    public void adjust() {
+        if (batchSize == 0) {
+            batchSize = minBatchSize;
+        }
+
+        long batches = insertBatches.sumThenReset();
+        long nanos = insertNanos.sumThenReset();
+        long avgInsertLatencyMs = batches == 0 ? 0 : (nanos / batches) / 1_000_000;
+        long backlog = queueBacklog();
+        if (backlog < 0) return; // broker unavailable, keep current settings
+
+        int newBatchSize = batchSize;
+
+        if (avgInsertLatencyMs > targetInsertLatencyMs) {
+            // Multiplicative decrease: the database is the bottleneck, back off hard
+            newBatchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (backlog > backlogHighWatermark) {
+            // Additive increase: database is keeping up, drain the backlog faster
+            newBatchSize = Math.min(maxBatchSize, batchSize + batchSizeStep);
+        } else if (backlog < backlogLowWatermark) {
+            // Idle-ish: release resources gradually
+            newBatchSize = Math.max(minBatchSize, batchSize - batchSizeStep);
+        }
+
+        if (newBatchSize != batchSize) {
+            log.info("Ingest flow adjusted: backlog={}, avgInsertLatencyMs={}, batchSize {}->{}",
+                    backlog, avgInsertLatencyMs, batchSize, newBatchSize);
+            apply(newBatchSize);
+        }
+    }
+
+    /**
+     * Average backlog per owned shard queue; each shard has its own container, so the
+     * per-shard depth is what one container has to drain.
+     */
+    private long queueBacklog() {
+        List<Integer> shards = ingestShards.getOwnedShards();
+        long total = 0;
+        for (int shard : shards) {
+            String queue = IngestShards.queueName(shard);
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(queue);
+                total += info == null ? 0 : info.getMessageCount();
+            } catch (Exception e) {
+                log.warn("Could not read backlog for {}: {}", queue, e.getMessage());
+                return -1;
+            }
+        }
+        return shards.isEmpty() ? 0 : total / shards.size();
+    }
+
+    private void apply(int newBatchSize) {
+        for (int shard : ingestShards.getOwnedShards()) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(IngestShards.listenerId(shard));
+            if (container instanceof SimpleMessageListenerContainer smlc) {
+                // Batch size is applied on the next receive loop
+                smlc.setBatchSize(newBatchSize);
+            }
+        }
+        batchSize = newBatchSize;
+    }
+
+    public int getBatchSize() { return batchSize; }
+}
@@ -0,0 +1,88 @@
+package com.aare.collector.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instruments for the ingest path (exported via /actuator/prometheus):
+ * - aare.collector.ingest.messages     consumed messages (rate = msgs/sec)
+ * - aare.collector.ingest.batch.size   messages per delivered batch
+ * - aare.collector.ingest.insert       batch insert latency histogram
+ * - aare.collector.ingest.lag          receive time minus the gateway's event timestamp
+ * - aare.collector.ingest.redeliveries messages the broker flagged as redelivered
+ * - aare.collector.ingest.failures     failures by stage (map/insert) and exception class
+ */
+@Component
+public class IngestMetrics {
+
+    // The gateway stamps events with its local wall clock (LocalDateTime.now())
+    private static final ZoneId EVENT_ZONE = ZoneId.systemDefault();
+
+    private final MeterRegistry registry;
+    private final Counter messages;
+    private final Counter redeliveries;
+    private final DistributionSummary batchSize;
+    private final Timer insertLatency;
+    private final Timer lag;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.messages = Counter.builder("aare.collector.ingest.messages")
+                .description("API events consumed from the ingest queues")
+                .register(registry);
+        this.redeliveries = Counter.builder("aare.collector.ingest.redeliveries")
+                .description("API events the broker delivered more than once")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("aare.collector.ingest.batch.size")
+                .description("API events per consumed batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.insertLatency = Timer.builder("aare.collector.ingest.insert")
+                .description("Batch insert latency into api_event")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        this.lag = Timer.builder("aare.collector.ingest.lag")
+                .description("Time from gateway capture to collector receive")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+    }
+
+    public void recordBatch(int size) {
+        messages.increment(size);
+        batchSize.record(size);
+    }
+
+    public void recordRedelivery() {
+        redeliveries.increment();
+    }
+
+    public void recordInsert(long elapsedNanos) {
+        insertLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLag(LocalDateTime eventTimestamp, Instant receivedAt) {
+        if (eventTimestamp == null) return;
+        long lagMs = Duration.between(eventTimestamp.atZone(EVENT_ZONE).toInstant(), receivedAt).toMillis();
+        // clock skew between gateway and collector can make this slightly negative
+        lag.record(Math.max(0, lagMs), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordFailure(String stage, Throwable error) {
+        registry.counter("aare.collector.ingest.failures",
+                "stage", stage,
+                "exception", error.getClass().getSimpleName()).increment();
+    }
+}
@@ -0,0 +1,95 @@
+package com.aare.collector.service;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.segment.SegmentHeader;
+import com.aare.collector.segment.SegmentReader;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of the cold-tier segment files on local disk (file -> min/max header).
+ * Loaded from the segment headers at startup and kept current by the exporter.
+ */
+@Component
+public class SegmentCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCatalog.class);
+
+    static final String SEGMENT_PREFIX = "api_event-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final ConcurrentMap<Path, SegmentHeader> segments = new ConcurrentHashMap<>();
+
+    public SegmentCatalog(@Value("${aare.collector.cold-tier.dir:/var/lib/aare/segments}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    segments.put(file, SegmentReader.readHeader(file));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable segment {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to scan segment directory {}: {}", directory, e.getMessage(), e);
+        }
+        log.info("Loaded {} cold-tier segments from {}", segments.size(), directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Path segmentPath(LocalDate day, int sequence) {
+        return directory.resolve(String.format("%s%s-%04d%s", SEGMENT_PREFIX, day, sequence, SEGMENT_SUFFIX));
+    }
+
+    public void register(SegmentHeader header) {
+        segments.put(header.file(), header);
+    }
+
+    /**
+     * Removes (from disk and index) all segments of one day, e.g. before re-exporting it. The
+     * directory is listed rather than the index, so files of an attempt that never registered
+     * them are removed too.
+     */
+    public void removeDay(LocalDate day) throws IOException {
+        String dayPrefix = SEGMENT_PREFIX + day + "-";
+        segments.keySet().removeIf(file -> file.getFileName().toString().startsWith(dayPrefix));
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, dayPrefix + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Segments whose min/max index may contain rows matching the filter.
+     */
+    public List<SegmentHeader> candidates(ApiEventFilter filter) {
+        return segments.values().stream()
+                .filter(h -> h.overlaps(filter.from(), filter.to()))
+                .filter(h -> h.mayContainEndpoint(filter.method(), filter.path()))
+                .toList();
+    }
+}
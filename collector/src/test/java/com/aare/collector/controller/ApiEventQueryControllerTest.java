@@ -0,0 +1,122 @@
+package com.aare.collector.controller;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.repo.ApiEventQueryRepository;
+import com.aare.collector.service.ColdEventQueryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiEventQueryControllerTest {
+
+    @Mock
+    private ApiEventQueryRepository queryRepository;
+
+    @Mock
+    private ColdEventQueryService coldEventQueryService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ApiEventQueryController controller = new ApiEventQueryController(queryRepository, coldEventQueryService, objectMapper);
+        ReflectionTestUtils.setField(controller, "maxPageSize", 1000);
+        ReflectionTestUtils.setField(controller, "maxStreamRows", 1000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    private ApiEventView row(int second) {
+        return new ApiEventView(UUID.randomUUID(), "req-" + second, LocalDateTime.of(2025, 12, 17, 13, 0, second),
+                "GET", "/orders", null, 500, 12L, "target-api", "local", null,
+                null, null, null, null);
+    }
+
+    @Test
+    void pageReturnsKeysetCursorWhenMoreRowsExist() throws Exception {
+        ApiEventView first = row(1);
+        ApiEventView second = row(2);
+        when(queryRepository.findPage(any(), eq(3), eq(false))).thenReturn(List.of(first, second, row(3)));
+
+        mockMvc.perform(get("/api/events").param("limit", "2").param("status", "5xx").param("method", "get"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").value(ApiEventQueryController.encodeCursor(second.timestamp(), second.id())));
+
+        ArgumentCaptor<ApiEventFilter> filter = ArgumentCaptor.forClass(ApiEventFilter.class);
+        verify(queryRepository).findPage(filter.capture(), eq(3), eq(false));
+        assertThat(filter.getValue().statusClass()).isEqualTo(5);
+        assertThat(filter.getValue().method()).isEqualTo("GET");
+    }
+
+    @Test
+    void cursorIsDecodedIntoKeysetPosition() throws Exception {
+        UUID id = UUID.randomUUID();
+        LocalDateTime ts = LocalDateTime.of(2025, 12, 17, 13, 56, 40);
+        when(queryRepository.findPage(any(), anyInt(), anyBoolean())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/events").param("cursor", ApiEventQueryController.encodeCursor(ts, id)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        ArgumentCaptor<ApiEventFilter> filter = ArgumentCaptor.forClass(ApiEventFilter.class);
+        verify(queryRepository).findPage(filter.capture(), eq(101), eq(false));
+        assertThat(filter.getValue().afterTimestamp()).isEqualTo(ts);
+        assertThat(filter.getValue().afterId()).isEqualTo(id);
+    }
+
+    @Test
+    void rejectsBadStatusClassAndCursor() throws Exception {
+        mockMvc.perform(get("/api/events").param("status", "teapot")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/events").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+        verifyNoInteractions(queryRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamWritesOneJsonObjectPerLine() throws Exception {
+        doAnswer(inv -> {
+            Consumer<ApiEventView> sink = inv.getArgument(3);
+            sink.accept(row(1));
+            sink.accept(row(2));
+            return null;
+        }).when(queryRepository).stream(any(), eq(1000L), eq(false), any(Consumer.class));
+
+        MvcResult started = mockMvc.perform(get("/api/events/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n")).hasSize(2).allMatch(line -> line.startsWith("{\"id\":"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.aare.collector.segment;
+
+import com.aare.collector.model.ApiEventView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Write -> read round trip for the cold-tier segment format.
+ */
+class SegmentRoundTripTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 12, 17, 0, 0, 0, 123_456_000);
+
+    private List<ApiEventView> rows(int count) {
+        List<ApiEventView> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String path = (i % 3 == 0) ? "/api/orders" : "/api/payment";
+            rows.add(new ApiEventView(UUID.randomUUID(), "req-" + i, START.plusSeconds(i), "GET", path,
+                    i % 2 == 0 ? null : "page=" + i, i % 5 == 0 ? 503 : 200, (long) i, "target-api", "local",
+                    "fp-" + (i % 2), Map.of("Accept", "application/json"), Map.of(), "", "{\"ok\":true}"));
+        }
+        return rows;
+    }
+
+    @Test
+    void roundTripsAllColumnsAndHeaderIndex() throws Exception {
+        List<ApiEventView> rows = rows(1000);
+        Path file = dir.resolve("api_event-2025-12-17-0000.seg");
+
+        SegmentHeader written;
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (ApiEventView row : rows) writer.append(row);
+            written = writer.finish();
+        }
+
+        SegmentHeader header = SegmentReader.readHeader(file);
+        assertThat(header.rowCount()).isEqualTo(1000);
+        assertThat(header.minTimestamp()).isEqualTo(START);
+        assertThat(header.maxTimestamp()).isEqualTo(START.plusSeconds(999));
+        assertThat(header.endpoints()).containsExactly("GET /api/orders", "GET /api/payment");
+        assertThat(header.idChecksum()).isEqualTo(written.idChecksum());
+        assertThat(SegmentReader.verify(file)).isTrue();
+
+        assertThat(SegmentReader.read(file, r -> true)).containsExactlyElementsOf(rows);
+        assertThat(Files.exists(dir.resolve("api_event-2025-12-17-0000.seg.tmp"))).isFalse();
+    }
+
+    @Test
+    void headerIndexPrunesByTimeAndEndpoint() throws Exception {
+        Path file = dir.resolve("seg");
+        List<ApiEventView> rows = rows(10);
+        SegmentHeader header;
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (ApiEventView row : rows) writer.append(row);
+            header = writer.finish();
+        }
+
+        assertThat(header.overlaps(START.minusDays(1), START)).isFalse();
+        assertThat(header.overlaps(START.plusSeconds(5), null)).isTrue();
+        assertThat(header.mayContainEndpoint("GET", "/api/orders")).isTrue();
+        assertThat(header.mayContainEndpoint("POST", "/api/orders")).isFalse();
+        assertThat(header.mayContainEndpoint(null, "/api/inventory")).isFalse();
+
+        assertThat(SegmentReader.read(file, r -> r.statusCode() / 100 == 5)).hasSize(2);
+        assertThat(SegmentReader.read(file, r -> true, 3)).containsExactlyElementsOf(rows.subList(0, 3));
+    }
+}
@@ -8,9 +8,14 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -21,7 +26,7 @@ import static org.mockito.Mockito.*;
  * Unit test for ApiEventListener.
  *
  * Goal:
- * - Ensure a valid incoming API event payload is mapped + persisted (apiEventRepository.save called).
+ * - Ensure a valid incoming API event payload is mapped + persisted (apiEventRepository.saveAll called).
  * - Avoid hardcoding exchange/queue names here (listener config may change).
  */
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +35,12 @@ class ApiEventListenerTest {
     @Mock
     private ApiEventRepository apiEventRepository;
 
+    @Mock
+    private IngestFlowController ingestFlowController;
+
+    @Mock
+    private IngestMetrics ingestMetrics;
+
     // If your ApiEventListener doesn't use RabbitTemplate, this mock won't hurt.
     @Mock
     private RabbitTemplate rabbitTemplate;
@@ -79,17 +90,16 @@ class ApiEventListenerTest {
         // so timestamp must be ISO-8601 like: 2025-12-17T13:56:40
         payload.put("timestamp", "2025-12-17T13:56:40");
 
-        // repository save should return the entity (common pattern)
-        when(apiEventRepository.save(any(ApiEvent.class))).thenAnswer(inv -> inv.getArgument(0));
-
-        // Call the listener method (based on your stack trace: onApiEvent(...))
-        apiEventListener.onApiEvent(payload);
+        // Call the batch entry point the shard containers use, with a one-message batch
+        apiEventListener.onApiEvents(List.of(MessageBuilder.withPayload(payload).build()));
 
         // Verify it saved an ApiEvent
-        ArgumentCaptor<ApiEvent> captor = ArgumentCaptor.forClass(ApiEvent.class);
-        verify(apiEventRepository, times(1)).save(captor.capture());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ApiEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(apiEventRepository, times(1)).saveAll(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
 
-        ApiEvent saved = captor.getValue();
+        ApiEvent saved = captor.getValue().get(0);
         assertThat(saved).isNotNull();
 
         // Basic sanity assertions (won't break if minor mapping changes)
@@ -101,4 +111,32 @@ class ApiEventListenerTest {
         assertThat(saved.getEnvironment()).isEqualTo("local");
         assertThat(saved.getServiceName()).isEqualTo("target-api");
     }
+
+    @Test
+    void batchPathRecordsRedeliveriesAndFailuresByException() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ApiEventListener listener = new ApiEventListener(apiEventRepository, ingestFlowController, new IngestMetrics(registry));
+
+        Map<String, Object> ok = new HashMap<>(Map.of("requestId", "req-1", "timestamp", "2025-12-17T13:56:40",
+                "method", "GET", "path", "/ping", "statusCode", 200));
+        Map<String, Object> bad = new HashMap<>(Map.of("requestId", "req-2", "timestamp", "not-a-timestamp"));
+        List<Message<Map<String, Object>>> messages = List.of(
+                MessageBuilder.withPayload(ok).setHeader(AmqpHeaders.REDELIVERED, true).build(),
+                MessageBuilder.withPayload(bad).build());
+
+        when(apiEventRepository.saveAll(any())).thenThrow(new IllegalStateException("batch failed"));
+
+        listener.onApiEvents(messages);
+
+        // batch failure falls back to row-by-row for the mapped event only
+        verify(apiEventRepository, times(1)).save(any(ApiEvent.class));
+        assertThat(registry.get("aare.collector.ingest.messages").counter().count()).isEqualTo(2);
+        assertThat(registry.get("aare.collector.ingest.redeliveries").counter().count()).isEqualTo(1);
+        assertThat(registry.get("aare.collector.ingest.failures")
+                .tags("stage", "map", "exception", "DateTimeParseException").counter().count()).isEqualTo(1);
+        assertThat(registry.get("aare.collector.ingest.failures")
+                .tags("stage", "batch-insert", "exception", "IllegalStateException").counter().count()).isEqualTo(1);
+        assertThat(registry.get("aare.collector.ingest.insert").timer().count()).isEqualTo(1);
+        assertThat(registry.get("aare.collector.ingest.lag").timer().count()).isEqualTo(1);
+    }
 }
@@ -0,0 +1,43 @@
+package com.aare.collector.service;
+
+import com.aare.collector.model.ApiEventView;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColdEventQueryServiceTest {
+
+    @Test
+    void ordersUuidsAsUnsignedBytesLikePostgres() {
+        UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+        UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+        UUID highLsb = UUID.fromString("80000000-0000-0000-8000-000000000000");
+
+        assertThat(low.compareTo(high)).isPositive(); // signed: the order Postgres does not use
+        assertThat(ColdEventQueryService.PG_UUID_ORDER.compare(low, high)).isNegative();
+        assertThat(ColdEventQueryService.PG_UUID_ORDER.compare(high, highLsb)).isNegative();
+    }
+
+    @Test
+    void mergesSortedSegmentsUpToTheLimit() {
+        LocalDateTime t = LocalDateTime.of(2025, 12, 17, 12, 0);
+        ApiEventView a = row(t, "00000000-0000-0000-0000-000000000001");
+        ApiEventView b = row(t, "80000000-0000-0000-0000-000000000000"); // same timestamp, later id
+        ApiEventView c = row(t.plusSeconds(1), "00000000-0000-0000-0000-000000000002");
+        ApiEventView d = row(t.plusSeconds(2), "00000000-0000-0000-0000-000000000003");
+
+        List<ApiEventView> merged = ColdEventQueryService.merge(List.of(List.of(b, d), List.of(a, c)), 3);
+
+        assertThat(merged).containsExactly(a, b, c);
+        assertThat(ColdEventQueryService.merge(List.of(), 3)).isEmpty();
+    }
+
+    private static ApiEventView row(LocalDateTime timestamp, String id) {
+        return new ApiEventView(UUID.fromString(id), null, timestamp, "GET", "/orders", null, 200, 1L,
+                null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,153 @@
+package com.aare.collector.service;
+
+import com.aare.collector.model.ApiEventFilter;
+import com.aare.collector.model.ApiEventView;
+import com.aare.collector.repo.ApiEventQueryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test for the verify-then-delete protocol of ColdTierExportService.
+ */
+@ExtendWith(MockitoExtension.class)
+class ColdTierExportServiceTest {
+
+    // MAGIC (8) + version (4) + row count (4) + min ts (8) + max ts (8)
+    private static final int ID_CHECKSUM_OFFSET = 32;
+
+    private static final LocalDate DAY = LocalDate.of(2025, 12, 17);
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private ApiEventQueryRepository queryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SegmentCatalog catalog;
+    private ColdTierExportService service;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        catalog = new SegmentCatalog(dir.toString());
+        service = new ColdTierExportService(queryRepository, catalog, transactionManager);
+        ReflectionTestUtils.setField(service, "segmentRows", 1);
+    }
+
+    @Test
+    void exportsVerifiesAndDeletesTheDay() throws Exception {
+        when(queryRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        streamRows(sink -> {
+            sink.accept(row(1));
+            sink.accept(row(2));
+        });
+        when(queryRepository.deleteRange(any(), any())).thenReturn(2);
+
+        assertThat(service.exportDay(DAY)).isEqualTo(2);
+
+        assertThat(catalog.segmentPath(DAY, 0)).exists();
+        assertThat(catalog.segmentPath(DAY, 1)).exists();
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void lockSkipLeavesTheLockHoldersSegmentsAlone() throws Exception {
+        when(queryRepository.tryAdvisoryXactLock(anyLong())).thenReturn(false);
+        // being written by the instance that holds the lock
+        Path holders = Files.write(catalog.segmentPath(DAY, 0), new byte[]{1, 2, 3});
+
+        assertThat(service.exportDay(DAY)).isEqualTo(-1);
+
+        assertThat(holders).exists();
+        verify(queryRepository, never()).stream(any(), anyLong(), anyBoolean(), any());
+        verify(queryRepository, never()).deleteRange(any(), any());
+    }
+
+    @Test
+    void checksumFailureRollsBackAndRemovesTheSegments() throws Exception {
+        when(queryRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        streamRows(sink -> {
+            sink.accept(row(1)); // fills and finishes segment 0
+            corruptChecksum(catalog.segmentPath(DAY, 0));
+            sink.accept(row(2));
+        });
+
+        assertThatThrownBy(() -> service.exportDay(DAY))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Checksum mismatch");
+
+        assertThat(catalog.segmentPath(DAY, 0)).doesNotExist();
+        assertThat(catalog.segmentPath(DAY, 1)).doesNotExist();
+        verify(queryRepository, never()).deleteRange(any(), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void countMismatchRollsBackTheDeleteAndRemovesTheSegments() throws Exception {
+        when(queryRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        streamRows(sink -> {
+            sink.accept(row(1));
+            sink.accept(row(2));
+        });
+        when(queryRepository.deleteRange(any(), any())).thenReturn(3); // a row arrived late for the day
+
+        assertThatThrownBy(() -> service.exportDay(DAY))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("delete matched 3");
+
+        assertThat(catalog.segmentPath(DAY, 0)).doesNotExist();
+        assertThat(catalog.segmentPath(DAY, 1)).doesNotExist();
+        assertThat(catalog.candidates(new ApiEventFilter(
+                DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), null, null, null, null, null, null))).isEmpty();
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamRows(Consumer<Consumer<ApiEventView>> rows) {
+        doAnswer(invocation -> {
+            rows.accept(invocation.getArgument(3, Consumer.class));
+            return null;
+        }).when(queryRepository).stream(any(), anyLong(), eq(true), any());
+    }
+
+    private static ApiEventView row(int second) {
+        return new ApiEventView(UUID.randomUUID(), "req-" + second, DAY.atTime(12, 0, second),
+                "GET", "/orders", null, 200, 10L, "orders", "prod", null, null, null, null, null);
+    }
+
+    private static void corruptChecksum(Path segment) {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(ID_CHECKSUM_OFFSET);
+            long checksum = file.readLong();
+            file.seek(ID_CHECKSUM_OFFSET);
+            file.writeLong(~checksum);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.aare.collector.service;
+
+import com.aare.collector.config.IngestShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test for the AIMD loop in IngestFlowController.
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestFlowControllerTest {
+
+    @Mock
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Mock
+    private SimpleMessageListenerContainer container;
+
+    private IngestFlowController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new IngestFlowController(listenerRegistry, amqpAdmin, new IngestShards(2, List.of()));
+        ReflectionTestUtils.setField(controller, "minBatchSize", 10);
+        ReflectionTestUtils.setField(controller, "maxBatchSize", 50);
+        ReflectionTestUtils.setField(controller, "batchSizeStep", 10);
+        ReflectionTestUtils.setField(controller, "targetInsertLatencyMs", 100L);
+        ReflectionTestUtils.setField(controller, "backlogHighWatermark", 1000L);
+        ReflectionTestUtils.setField(controller, "backlogLowWatermark", 100L);
+
+        lenient().when(listenerRegistry.getListenerContainer(IngestShards.listenerId(0))).thenReturn(container);
+        lenient().when(listenerRegistry.getListenerContainer(IngestShards.listenerId(1))).thenReturn(container);
+    }
+
+    private void backlog(int messagesPerShard) {
+        for (int shard = 0; shard < 2; shard++) {
+            String queue = IngestShards.queueName(shard);
+            when(amqpAdmin.getQueueInfo(queue)).thenReturn(new QueueInformation(queue, messagesPerShard, 1));
+        }
+    }
+
+    @Test
+    void growsAdditivelyWhileBacklogIsHighAndInsertsAreFast() {
+        backlog(50_000);
+
+        for (int i = 0; i < 10; i++) {
+            controller.recordInsert(10, 5_000_000L); // 5ms
+            controller.adjust();
+        }
+
+        // capped at the configured upper bound
+        assertThat(controller.getBatchSize()).isEqualTo(50);
+        verify(container, atLeastOnce()).setBatchSize(50);
+        // one consumer per single-active-consumer shard queue; more would only idle
+        verify(container, never()).setConcurrentConsumers(anyInt());
+        verify(container, never()).setMaxConcurrentConsumers(anyInt());
+        verify(container, never()).setPrefetchCount(anyInt()); // only applies to consumers that start later
+    }
+
+    @Test
+    void backsOffMultiplicativelyWhenInsertLatencyExceedsTarget() {
+        backlog(50_000);
+        for (int i = 0; i < 10; i++) {
+            controller.adjust();
+        }
+        assertThat(controller.getBatchSize()).isEqualTo(50);
+
+        controller.recordInsert(50, 400_000_000L); // 400ms per batch
+        controller.adjust();
+
+        assertThat(controller.getBatchSize()).isEqualTo(25);
+    }
+
+    @Test
+    void ownedShardsMustBeWithinShardCount() {
+        assertThat(new IngestShards(4, List.of(1, 3, 3)).getOwnedShards()).containsExactly(1, 3);
+        assertThatThrownBy(() -> new IngestShards(4, List.of(4)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keepsSettingsWhenBrokerIsUnreachable() {
+        when(amqpAdmin.getQueueInfo(IngestShards.queueName(0))).thenThrow(new RuntimeException("connection refused"));
+
+        controller.adjust();
+
+        assertThat(controller.getBatchSize()).isEqualTo(10);
+        verifyNoInteractions(container);
+    }
+}
@@ -0,0 +1,30 @@
+package com.aare.collector.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentCatalogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void removeDayDeletesUnregisteredSegmentsOfThatDayOnly() throws Exception {
+        SegmentCatalog catalog = new SegmentCatalog(dir.toString());
+        LocalDate day = LocalDate.of(2025, 12, 17);
+        // left behind by a failed attempt: on disk, never registered
+        Path stale = Files.write(catalog.segmentPath(day, 3), new byte[]{1, 2, 3});
+        Path otherDay = Files.write(catalog.segmentPath(day.plusDays(1), 0), new byte[]{1});
+
+        catalog.removeDay(day);
+
+        assertThat(stale).doesNotExist();
+        assertThat(otherDay).exists();
+    }
+}
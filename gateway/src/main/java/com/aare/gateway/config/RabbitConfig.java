@@ -1,43 +1,57 @@
 package com.aare.gateway.config;
 
-import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitConfig {
 
     public static final String API_EVENTS_EXCHANGE = "api.events.exchange";
-    public static final String API_EVENTS_QUEUE = "api.events.queue";
-    public static final String API_EVENTS_ROUTING_KEY = "api.events.routingkey";
+
+    // Events are sharded by endpoint: shard i -> routing key "api.events.shard.i" -> queue "api.events.queue.i"
+    public static final String API_EVENTS_QUEUE_PREFIX = "api.events.queue.";
+    public static final String API_EVENTS_SHARD_ROUTING_KEY_PREFIX = "api.events.shard.";
 
     @Bean
     public TopicExchange apiEventsExchange() {
         return new TopicExchange(API_EVENTS_EXCHANGE);
     }
 
+    /**
+     * Shard queues + bindings. Declared here as well as in the collector so events published
+     * before the collector starts are not dropped; arguments must match the collector's declaration.
+     */
     @Bean
-    public Queue apiEventsQueue() {
-        return new Queue(API_EVENTS_QUEUE, true); // durable
-    }
-
-    @Bean
-    public Binding apiEventsBinding(
-            Queue apiEventsQueue,
-            TopicExchange apiEventsExchange
+    public Declarables apiEventShardQueues(
+            TopicExchange apiEventsExchange,
+            @Value("${aare.ingest.shard-count:4}") int shardCount
     ) {
-        return BindingBuilder
-                .bind(apiEventsQueue)
-                .to(apiEventsExchange)
-                .with(API_EVENTS_ROUTING_KEY);
+        List<Declarable> declarables = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            Queue queue = QueueBuilder.durable(API_EVENTS_QUEUE_PREFIX + shard)
+                    .singleActiveConsumer() // one consumer per shard keeps per-endpoint ordering
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(apiEventsExchange)
+                    .with(API_EVENTS_SHARD_ROUTING_KEY_PREFIX + shard));
+        }
+        return new Declarables(declarables);
     }
 
     @Bean
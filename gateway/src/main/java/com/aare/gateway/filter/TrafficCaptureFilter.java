@@ -11,6 +11,7 @@ import io.opentelemetry.context.Scope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
@@ -54,11 +55,14 @@ public class TrafficCaptureFilter implements GlobalFilter, Ordered {
     private final RabbitTemplate rabbitTemplate;
     private final Tracer tracer;
     private final ObjectMapper objectMapper;
+    private final int shardCount;
 
-    public TrafficCaptureFilter(RabbitTemplate rabbitTemplate, Tracer tracer, ObjectMapper objectMapper) {
+    public TrafficCaptureFilter(RabbitTemplate rabbitTemplate, Tracer tracer, ObjectMapper objectMapper,
+                                @Value("${aare.ingest.shard-count:4}") int shardCount) {
         this.rabbitTemplate = rabbitTemplate;
         this.tracer = tracer;
         this.objectMapper = objectMapper;
+        this.shardCount = shardCount;
     }
 
     @Override
@@ -287,7 +291,7 @@ public class TrafficCaptureFilter implements GlobalFilter, Ordered {
         try {
             rabbitTemplate.convertAndSend(
                     RabbitConfig.API_EVENTS_EXCHANGE,
-                    RabbitConfig.API_EVENTS_ROUTING_KEY,
+                    RabbitConfig.API_EVENTS_SHARD_ROUTING_KEY_PREFIX + shardFor(apiEvent),
                     apiEvent
             );
             log.info("Published ApiEvent: {}", apiEvent.get("requestId"));
@@ -297,6 +301,19 @@ public class TrafficCaptureFilter implements GlobalFilter, Ordered {
         }
     }
 
+    /**
+     * Shard by endpoint (same key the analyzer uses: lower-cased "method:path") so that all events
+     * of one endpoint land on the same queue and keep their order. The analyzer's
+     * AnalysisShards#shardFor repeats this hash; TrafficCaptureFilterTest and AnalysisShardsTest
+     * pin both to the same expected shards.
+     */
+    int shardFor(Map<String, Object> apiEvent) {
+        String endpointKey = (apiEvent.get("method") + ":" + apiEvent.get("path")).toLowerCase();
+        // spread String.hashCode's low bits before taking the modulus
+        int h = endpointKey.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
     @Override
     public int getOrder() {
         return -1;
@@ -0,0 +1,34 @@
+package com.aare.gateway.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrafficCaptureFilterTest {
+
+    /**
+     * The analyzer binds its queues to the same shard routing keys and repeats this hash in
+     * AnalysisShards#shardFor; AnalysisShardsTest expects the same shards for the same endpoints.
+     */
+    @Test
+    void shardsEndpointsLikeTheAnalyzer() {
+        TrafficCaptureFilter filter = new TrafficCaptureFilter(null, null, null, 4);
+        assertEquals(0, filter.shardFor(event("GET", "/api/orders")));
+        assertEquals(1, filter.shardFor(event("POST", "/api/orders")));
+        assertEquals(2, filter.shardFor(event("GET", "/api/orders/{id}")));
+        assertEquals(2, filter.shardFor(event("GET", "/api/payment")));
+        assertEquals(1, filter.shardFor(event("DELETE", "/api/users/42")));
+        assertEquals(1, filter.shardFor(event("PUT", "/api/inventory")));
+
+        TrafficCaptureFilter sixteen = new TrafficCaptureFilter(null, null, null, 16);
+        assertEquals(4, sixteen.shardFor(event("GET", "/api/orders")));
+        assertEquals(9, sixteen.shardFor(event("POST", "/api/orders")));
+        assertEquals(13, sixteen.shardFor(event("DELETE", "/api/users/42")));
+    }
+
+    private static Map<String, Object> event(String method, String path) {
+        return Map.of("method", method, "path", path);
+    }
+}
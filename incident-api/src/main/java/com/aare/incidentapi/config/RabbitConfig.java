@@ -0,0 +1,26 @@
+package com.aare.incidentapi.config;
+
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitConfig {
+
+    // Status changes made here (ack / resolve), consumed by the analyzer's open-incident index.
+    // Routing key "incident.status.<status>", e.g. incident.status.resolved
+    public static final String INCIDENT_STATUS_EXCHANGE = "incident.status.exchange";
+    public static final String INCIDENT_STATUS_ROUTING_KEY_PREFIX = "incident.status.";
+
+    @Bean
+    public TopicExchange incidentStatusExchange() {
+        return new TopicExchange(INCIDENT_STATUS_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
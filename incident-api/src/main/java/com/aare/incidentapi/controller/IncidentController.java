@@ -4,6 +4,7 @@ import com.aare.incidentapi.model.*;
 import com.aare.incidentapi.repository.IncidentEvidenceRepository;
 import com.aare.incidentapi.repository.IncidentRepository;
 import com.aare.incidentapi.repository.RcaReportRepository;
+import com.aare.incidentapi.service.IncidentEventPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +27,9 @@ public class IncidentController {
     @Autowired
     private RcaReportRepository rcaReportRepository;
 
+    @Autowired
+    private IncidentEventPublisher incidentEventPublisher;
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Incident API is healthy");
@@ -34,17 +38,24 @@ public class IncidentController {
     @GetMapping("/incidents")
     public ResponseEntity<List<Incident>> getIncidents(
             @RequestParam(required = false) IncidentStatus status,
-            @RequestParam(required = false) IncidentType type) {
+            @RequestParam(required = false) IncidentType type,
+            @RequestParam(defaultValue = "false") boolean topLevel) {
 
+        List<Incident> incidents;
         if (status != null && type != null) {
-            return ResponseEntity.ok(incidentRepository.findByStatusAndType(status, type));
+            incidents = incidentRepository.findByStatusAndType(status, type);
         } else if (status != null) {
-            return ResponseEntity.ok(incidentRepository.findByStatus(status));
+            incidents = incidentRepository.findByStatus(status);
         } else if (type != null) {
-            return ResponseEntity.ok(incidentRepository.findByType(type));
+            incidents = incidentRepository.findByType(type);
         } else {
-            return ResponseEntity.ok(incidentRepository.findAll());
+            incidents = incidentRepository.findAll();
+        }
+        if (topLevel) {
+            // hide incidents the analyzer folded into a correlated parent incident
+            incidents = incidents.stream().filter(incident -> incident.getParentIncidentId() == null).toList();
         }
+        return ResponseEntity.ok(incidents);
     }
 
     @GetMapping("/incidents/{id}")
@@ -54,6 +65,11 @@ public class IncidentController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/incidents/{id}/children")
+    public ResponseEntity<List<Incident>> getChildIncidents(@PathVariable UUID id) {
+        return ResponseEntity.ok(incidentRepository.findByParentIncidentId(id));
+    }
+
     @GetMapping("/incidents/{id}/evidence")
     public ResponseEntity<List<IncidentEvidence>> getIncidentEvidence(@PathVariable UUID id) {
         return ResponseEntity.ok(incidentEvidenceRepository.findByIncidentId(id));
@@ -76,7 +92,16 @@ public class IncidentController {
         if (incident.getStatus() == IncidentStatus.OPEN) {
             incident.setStatus(IncidentStatus.ACKNOWLEDGED);
             incident.setAcknowledgedAt(LocalDateTime.now());
-            return ResponseEntity.ok(incidentRepository.save(incident));
+            Incident saved = incidentRepository.save(incident);
+            incidentEventPublisher.publishStatusChange(saved);
+            for (Incident child : incidentRepository.findByParentIncidentId(id)) {
+                if (child.getStatus() == IncidentStatus.OPEN) {
+                    child.setStatus(IncidentStatus.ACKNOWLEDGED);
+                    child.setAcknowledgedAt(saved.getAcknowledgedAt());
+                    incidentEventPublisher.publishStatusChange(incidentRepository.save(child));
+                }
+            }
+            return ResponseEntity.ok(saved);
         }
         return ResponseEntity.status(409).body(incident); // 409 Conflict
     }
@@ -90,6 +115,17 @@ public class IncidentController {
         Incident incident = incidentOpt.get();
         incident.setStatus(IncidentStatus.RESOLVED);
         incident.setResolvedAt(LocalDateTime.now());
-        return ResponseEntity.ok(incidentRepository.save(incident));
+        Incident saved = incidentRepository.save(incident);
+        incidentEventPublisher.publishStatusChange(saved);
+        // correlated children are hidden behind their parent, so they are resolved with it; the
+        // status events let the analyzer open new incidents on those endpoints again
+        for (Incident child : incidentRepository.findByParentIncidentId(id)) {
+            if (child.getStatus() != IncidentStatus.RESOLVED) {
+                child.setStatus(IncidentStatus.RESOLVED);
+                child.setResolvedAt(saved.getResolvedAt());
+                incidentEventPublisher.publishStatusChange(incidentRepository.save(child));
+            }
+        }
+        return ResponseEntity.ok(saved);
     }
 }
@@ -32,6 +32,13 @@ public class Incident {
     @Column(name = "detected_at")
     private LocalDateTime detectedAt;
 
+    @Column(name = "last_detected_at")
+    private LocalDateTime lastDetectedAt;
+
+    // Set on incidents folded into a correlated incident on another endpoint
+    @Column(name = "parent_incident_id")
+    private UUID parentIncidentId;
+
     @Column(name = "acknowledged_at")
     private LocalDateTime acknowledgedAt;
 
@@ -37,6 +37,10 @@ public class RcaReport {
 
     private BigDecimal confidence;
 
+    // Set when the analysis was reused from an earlier incident with the same signature
+    @Column(name = "reused_from_report_id")
+    private UUID reusedFromReportId;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -2,6 +2,8 @@ package com.aare.incidentapi.model;
 
 public enum RcaStatus {
     PENDING,
+    RULE_BASED,
+    GENERATING,
     GENERATED,
     FAILED,
     SKIPPED_NO_KEY
@@ -14,4 +14,5 @@ public interface IncidentRepository extends JpaRepository<Incident, UUID> {
     List<Incident> findByStatus(IncidentStatus status);
     List<Incident> findByType(IncidentType type);
     List<Incident> findByStatusAndType(IncidentStatus status, IncidentType type);
+    List<Incident> findByParentIncidentId(UUID parentIncidentId);
 }
@@ -0,0 +1,43 @@
+package com.aare.incidentapi.service;
+
+import com.aare.incidentapi.config.RabbitConfig;
+import com.aare.incidentapi.model.Incident;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Publishes incident status changes so the analyzer's open-incident index follows acks and
+ * resolves without querying the DB.
+ */
+@Service
+@Slf4j
+public class IncidentEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    public IncidentEventPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    public void publishStatusChange(Incident incident) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("incidentId", incident.getId().toString());
+        event.put("endpointId", incident.getEndpointId());
+        event.put("type", incident.getType().name());
+        event.put("status", incident.getStatus().name());
+        event.put("changedAt", LocalDateTime.now().toString());
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.INCIDENT_STATUS_EXCHANGE,
+                    RabbitConfig.INCIDENT_STATUS_ROUTING_KEY_PREFIX + incident.getStatus().name().toLowerCase(), event);
+        } catch (AmqpException e) {
+            // the change is already saved; the analyzer picks it up on its next resync
+            log.warn("Could not publish status change of incident {}: {}", incident.getId(), e.getMessage());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.aare.incidentapi.model.*;
 import com.aare.incidentapi.repository.IncidentEvidenceRepository;
 import com.aare.incidentapi.repository.IncidentRepository;
 import com.aare.incidentapi.repository.RcaReportRepository;
+import com.aare.incidentapi.service.IncidentEventPublisher;
 import com.aare.incidentapi.service.JwtService;
 import com.aare.incidentapi.service.UserDetailsService;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,7 +23,10 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -44,6 +48,9 @@ public class IncidentControllerTest {
     @MockBean
     private RcaReportRepository rcaReportRepository;
 
+    @MockBean
+    private IncidentEventPublisher incidentEventPublisher;
+
     // MockBeans for security components
     @MockBean
     private JwtService jwtService;
@@ -98,6 +105,33 @@ public class IncidentControllerTest {
                 .andExpect(jsonPath("$[0].type").value(testIncident.getType().toString()));
     }
 
+    @Test
+    @WithMockUser
+    void getIncidents_topLevelShouldHideCorrelatedChildren() throws Exception {
+        Incident child = new Incident();
+        child.setId(UUID.randomUUID());
+        child.setParentIncidentId(testIncident.getId());
+        when(incidentRepository.findAll()).thenReturn(List.of(testIncident, child));
+
+        mockMvc.perform(get("/api/incidents").param("topLevel", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(testIncident.getId().toString()));
+    }
+
+    @Test
+    @WithMockUser
+    void getChildIncidents_shouldReturnLinkedIncidents() throws Exception {
+        Incident child = new Incident();
+        child.setId(UUID.randomUUID());
+        child.setParentIncidentId(testIncident.getId());
+        when(incidentRepository.findByParentIncidentId(testIncident.getId())).thenReturn(List.of(child));
+
+        mockMvc.perform(get("/api/incidents/{id}/children", testIncident.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].parentIncidentId").value(testIncident.getId().toString()));
+    }
+
     @Test
     @WithMockUser
     void getIncidentById_shouldReturnIncident() throws Exception {
@@ -152,6 +186,7 @@ public class IncidentControllerTest {
         mockMvc.perform(post("/api/incidents/{id}/ack", testIncident.getId()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value(IncidentStatus.ACKNOWLEDGED.toString()));
+        verify(incidentEventPublisher).publishStatusChange(testIncident);
     }
 
     @Test
@@ -177,6 +212,29 @@ public class IncidentControllerTest {
         mockMvc.perform(post("/api/incidents/{id}/resolve", testIncident.getId()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value(IncidentStatus.RESOLVED.toString()));
+        verify(incidentEventPublisher).publishStatusChange(testIncident);
+    }
+
+    @Test
+    @WithMockUser
+    void resolveIncident_shouldResolveCorrelatedChildren() throws Exception {
+        Incident child = new Incident();
+        child.setId(UUID.randomUUID());
+        child.setEndpointId("GET:/api/downstream");
+        child.setType(IncidentType.ERROR_SPIKE);
+        child.setStatus(IncidentStatus.OPEN);
+        child.setParentIncidentId(testIncident.getId());
+        when(incidentRepository.findById(testIncident.getId())).thenReturn(Optional.of(testIncident));
+        when(incidentRepository.findByParentIncidentId(testIncident.getId())).thenReturn(List.of(child));
+        when(incidentRepository.save(any(Incident.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/api/incidents/{id}/resolve", testIncident.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value(IncidentStatus.RESOLVED.toString()));
+        assertEquals(IncidentStatus.RESOLVED, child.getStatus());
+        assertNotNull(child.getResolvedAt());
+        verify(incidentEventPublisher).publishStatusChange(testIncident);
+        verify(incidentEventPublisher).publishStatusChange(child);
     }
 
     @Test
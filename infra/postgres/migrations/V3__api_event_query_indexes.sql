@@ -0,0 +1,20 @@
+-- V3__api_event_query_indexes.sql
+-- Composite indexes for the collector's raw event query API (/api/events).
+-- Every query orders by (timestamp, id) and pages with "(timestamp, id) > (?, ?)",
+-- so each access path ends in (timestamp, id) to make pages pure index range scans.
+
+-- time range only
+CREATE INDEX IF NOT EXISTS idx_api_event_ts_id ON api_event(timestamp, id);
+
+-- endpoint + time range
+CREATE INDEX IF NOT EXISTS idx_api_event_method_path_ts_id ON api_event(method, path, timestamp, id);
+
+-- status class (2xx/4xx/5xx) + time range; the expression must match the query predicate
+CREATE INDEX IF NOT EXISTS idx_api_event_status_class_ts_id ON api_event((status_code / 100), timestamp, id);
+
+-- requestId lookups
+CREATE INDEX IF NOT EXISTS idx_api_event_request_id ON api_event(request_id);
+
+-- superseded by the composites above (same leading columns)
+DROP INDEX IF EXISTS idx_api_event_timestamp;
+DROP INDEX IF EXISTS idx_api_event_method_path;
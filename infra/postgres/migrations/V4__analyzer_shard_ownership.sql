@@ -0,0 +1,28 @@
+-- V4__analyzer_shard_ownership.sql
+-- Analyzer scale-out: membership heartbeats, per-shard leases and window-state handover
+-- (see the analyzer's ShardOwnership). All timestamps are written with the database clock.
+
+-- live analyzer instances; a member is alive while heartbeat_at is within the lease TTL
+CREATE TABLE IF NOT EXISTS analyzer_member (
+    member_id VARCHAR(255) PRIMARY KEY,
+    started_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    heartbeat_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- exclusive ownership of an analysis shard; taken over only once released or expired
+CREATE TABLE IF NOT EXISTS analyzer_shard_lease (
+    shard INTEGER PRIMARY KEY,
+    owner_id VARCHAR(255) NOT NULL,
+    expires_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- encoded endpoint windows left behind by the previous owner of a shard, merged by the next one
+CREATE TABLE IF NOT EXISTS analyzer_shard_handover (
+    id BIGSERIAL PRIMARY KEY,
+    shard INTEGER NOT NULL,
+    endpoint_id VARCHAR(255) NOT NULL,
+    state BYTEA NOT NULL,
+    handed_over_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_analyzer_shard_handover_shard ON analyzer_shard_handover(shard);
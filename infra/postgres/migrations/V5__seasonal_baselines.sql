@@ -0,0 +1,5 @@
+-- V5__seasonal_baselines.sql
+-- Analyzer seasonal baselines: the TWENTY_FOUR_HOURS row of each endpoint carries the encoded
+-- model (EWMA level + hour-of-week offsets + decayed latency distribution) behind its values.
+
+ALTER TABLE endpoint_baseline ADD COLUMN IF NOT EXISTS seasonal_state BYTEA;
@@ -0,0 +1,9 @@
+-- V6__incident_last_detected_at.sql
+-- An open incident is extended while its condition keeps firing instead of a new one being
+-- opened every few minutes; last_detected_at records the latest detection.
+
+ALTER TABLE incident ADD COLUMN IF NOT EXISTS last_detected_at TIMESTAMP WITHOUT TIME ZONE;
+
+-- the analyzer loads all open incidents at startup
+CREATE INDEX IF NOT EXISTS idx_incident_open ON incident(endpoint_id, type)
+    WHERE status NOT IN ('RESOLVED', 'CLOSED');
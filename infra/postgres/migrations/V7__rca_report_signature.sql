@@ -0,0 +1,10 @@
+-- V7__rca_report_signature.sql
+-- RCA result cache: generated reports are keyed by a normalized incident signature, and a report
+-- copied from an earlier one with the same signature records where it came from.
+
+ALTER TABLE rca_report ADD COLUMN IF NOT EXISTS signature VARCHAR(64);
+ALTER TABLE rca_report ADD COLUMN IF NOT EXISTS reused_from_report_id UUID;
+
+-- the analyzer reloads the most recent generated reports per signature at startup
+CREATE INDEX IF NOT EXISTS idx_rca_report_signature ON rca_report(created_at DESC)
+    WHERE signature IS NOT NULL AND reused_from_report_id IS NULL;
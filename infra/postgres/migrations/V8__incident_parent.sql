@@ -0,0 +1,8 @@
+-- V8__incident_parent.sql
+-- Incidents on endpoints whose error / latency signals move together are one outage: the
+-- analyzer links them to the most severe one, which is the only one listed at top level.
+
+ALTER TABLE incident ADD COLUMN IF NOT EXISTS parent_incident_id UUID REFERENCES incident(id);
+
+CREATE INDEX IF NOT EXISTS idx_incident_parent ON incident(parent_incident_id)
+    WHERE parent_incident_id IS NOT NULL;